@@ -1,9 +1,5 @@
 package com.jacekpietras.zoo.data.parser
 
-import android.content.Context
-import android.content.res.XmlResourceParser
-import android.graphics.Matrix
-import androidx.annotation.XmlRes
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.geometry.RectD
 import com.jacekpietras.geometry.polygonContains
@@ -12,7 +8,8 @@ import com.jacekpietras.zoo.domain.model.Region
 import com.jacekpietras.zoo.domain.model.RegionId
 import org.xmlpull.v1.XmlPullParser
 
-internal class SvgParser(context: Context, @XmlRes xmlRes: Int) {
+// works on plain XmlPullParser, so it can also be used outside of Android when map is compiled
+internal class SvgParser(xml: XmlPullParser) {
 
     val worldRect: RectD
     val regions: List<Pair<Region, MapItemEntity.PolygonEntity>>
@@ -25,7 +22,7 @@ internal class SvgParser(context: Context, @XmlRes xmlRes: Int) {
     private var coords = ""
 
     init {
-        with(context.resources.getXml(xmlRes)) {
+        with(xml) {
             while (eventType != XmlPullParser.END_DOCUMENT) {
                 when (eventType) {
                     XmlPullParser.START_TAG -> {
@@ -161,7 +158,8 @@ internal class SvgParser(context: Context, @XmlRes xmlRes: Int) {
             .map { it.toDouble() }
             .run { RectD(get(0), get(1), get(2), get(3)) }
 
-    private fun String.parseMatrix(): Matrix? =
+    // svg matrix(a b c d e f), kept in floats same as android.graphics.Matrix
+    private fun String.parseMatrix(): FloatArray? =
         this
             .takeIf { it.isNotEmpty() }
             ?.run {
@@ -169,22 +167,19 @@ internal class SvgParser(context: Context, @XmlRes xmlRes: Int) {
                     .replace(")", "")
                     .split(" ")
                     .map { it.toFloat() }
-                    .run {
-                        val fullArray = floatArrayOf(
-                            get(0), get(2), get(4),
-                            get(1), get(3), get(5),
-                            0f, 0f, 1f
-                        )
-                        Matrix().apply { setValues(fullArray) }
-                    }
+                    .toFloatArray()
             }
 
-    private fun List<PointD>.applyMatrix(matrix: Matrix?): List<PointD> {
+    private fun List<PointD>.applyMatrix(matrix: FloatArray?): List<PointD> {
         if (matrix == null) return this
-        val pointsArray =
-            map { listOf(it.x.toFloat(), it.y.toFloat()) }.flatten().toFloatArray()
-        matrix.mapPoints(pointsArray)
-        return pointsArray.toList().windowed(size = 2, step = 2).map { PointD(it[0], it[1]) }
+        return map {
+            val x = it.x.toFloat()
+            val y = it.y.toFloat()
+            PointD(
+                matrix[0] * x + matrix[2] * y + matrix[4],
+                matrix[1] * x + matrix[3] * y + matrix[5],
+            )
+        }
     }
 
     private inline fun <T, Y, R> Collection<Pair<T, Y>>.mapPair(transform: (T, Y) -> R): List<R> {
@@ -193,10 +188,10 @@ internal class SvgParser(context: Context, @XmlRes xmlRes: Int) {
         return destination
     }
 
-    private fun XmlResourceParser.attr(name: String): String =
+    private fun XmlPullParser.attr(name: String): String =
         getAttributeValue(null, name) ?: ""
 
-    private fun XmlResourceParser.attrD(name: String): Double =
+    private fun XmlPullParser.attrD(name: String): Double =
         getAttributeValue(null, name).toDouble()
 
     private companion object {
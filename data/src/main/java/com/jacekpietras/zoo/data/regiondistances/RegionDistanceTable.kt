@@ -0,0 +1,116 @@
+package com.jacekpietras.zoo.data.regiondistances
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.vrp.model.RegionDistances
+import com.jacekpietras.zoo.domain.model.RegionId
+import java.io.DataOutputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+
+// Binary layout, big endian:
+// magic, version,
+// region count, region ids (writeUTF),
+// point count, points (x, y),
+// distances for every pair (row major, count * count doubles),
+// path offsets for every pair (count * count + 1 ints), path point indices.
+// Pairs are directed, technical roads make path from i to j differ from path from j to i.
+internal class RegionDistanceTable(private val buffer: ByteBuffer) : RegionDistances {
+
+    private val ids: Map<String, Int>
+    private val size: Int
+    private val pointsPosition: Int
+    private val distancesPosition: Int
+    private val offsetsPosition: Int
+    private val indicesPosition: Int
+
+    init {
+        check(buffer.getInt(0) == MAGIC) { "Not a region distance table" }
+        check(buffer.getInt(4) == VERSION) { "Unsupported region distance table version" }
+
+        var position = 8
+        size = buffer.getInt(position)
+        position += 4
+        val ids = HashMap<String, Int>(size * 2)
+        repeat(size) { i ->
+            val length = buffer.getShort(position).toInt() and 0xFFFF
+            val bytes = ByteArray(length)
+            for (b in 0 until length) {
+                bytes[b] = buffer.get(position + 2 + b)
+            }
+            ids[String(bytes, Charsets.UTF_8)] = i
+            position += 2 + length
+        }
+        this.ids = ids
+        val pointCount = buffer.getInt(position)
+        pointsPosition = position + 4
+        distancesPosition = pointsPosition + pointCount * 16
+        offsetsPosition = distancesPosition + size * size * 8
+        indicesPosition = offsetsPosition + (size * size + 1) * 4
+    }
+
+    override fun getDistance(prev: RegionId, next: RegionId): Double? {
+        val i = ids[prev.id] ?: return null
+        val j = ids[next.id] ?: return null
+        return buffer.getDouble(distancesPosition + (i * size + j) * 8)
+    }
+
+    override fun getPath(prev: RegionId, next: RegionId): List<PointD>? {
+        val i = ids[prev.id] ?: return null
+        val j = ids[next.id] ?: return null
+
+        val pair = i * size + j
+        val from = buffer.getInt(offsetsPosition + pair * 4)
+        val to = buffer.getInt(offsetsPosition + (pair + 1) * 4)
+        return (from until to).map { index ->
+            val point = pointsPosition + buffer.getInt(indicesPosition + index * 4) * 16
+            PointD(buffer.getDouble(point), buffer.getDouble(point + 8))
+        }
+    }
+
+    class Writer(private val ids: List<String>) {
+
+        private val size = ids.size
+        private val distances = DoubleArray(size * size)
+        private val paths = arrayOfNulls<List<PointD>>(size * size)
+
+        fun put(prev: Int, next: Int, distance: Double, path: List<PointD>) {
+            distances[prev * size + next] = distance
+            paths[prev * size + next] = path
+        }
+
+        fun write(output: OutputStream) {
+            val pointIndices = LinkedHashMap<PointD, Int>()
+            val pathIndices = paths.map { path ->
+                path.orEmpty().map { pointIndices.getOrPut(it) { pointIndices.size } }
+            }
+
+            with(DataOutputStream(output.buffered())) {
+                writeInt(MAGIC)
+                writeInt(VERSION)
+                writeInt(size)
+                ids.forEach(::writeUTF)
+                writeInt(pointIndices.size)
+                pointIndices.keys.forEach {
+                    writeDouble(it.x)
+                    writeDouble(it.y)
+                }
+                distances.forEach(::writeDouble)
+                var offset = 0
+                writeInt(offset)
+                pathIndices.forEach {
+                    offset += it.size
+                    writeInt(offset)
+                }
+                pathIndices.forEach { path -> path.forEach(::writeInt) }
+                flush()
+            }
+        }
+    }
+
+    companion object {
+
+        const val ASSET_NAME = "region_distances.bin"
+        private const val MAGIC = 0x5A524454
+        private const val VERSION = 1
+    }
+}
@@ -47,7 +47,7 @@ internal class MapRepositoryImpl(
     override suspend fun loadMap() {
         isMapLoaded = true
         coroutineScope {
-            val parser = SvgParser(context, R.xml.map)
+            val parser = SvgParser(context.resources.getXml(R.xml.map))
             listOf(
                 async { regionsWatcher.value = parser.regions },
                 async { worldRectWatcher.value = parser.worldRect },
@@ -0,0 +1,51 @@
+package com.jacekpietras.zoo.data.repository
+
+import android.content.Context
+import com.jacekpietras.zoo.data.regiondistances.RegionDistanceTable
+import com.jacekpietras.zoo.domain.feature.vrp.model.RegionDistances
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionDistancesRepository
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.channels.FileChannel
+
+internal class RegionDistancesRepositoryImpl(
+    private val context: Context,
+) : RegionDistancesRepository {
+
+    private val mutex = Mutex()
+    private var loaded = false
+    private var regionDistances: RegionDistances? = null
+
+    // callers starting together wait for the one loading, so asset is mapped only once
+    override suspend fun getRegionDistances(): RegionDistances? =
+        mutex.withLock {
+            if (!loaded) {
+                regionDistances = withContext(Dispatchers.IO) { loadTable() }
+                loaded = true
+            }
+            regionDistances
+        }
+
+    // asset is stored uncompressed, so it can be mapped straight from apk
+    private fun loadTable(): RegionDistances? =
+        try {
+            context.assets.openFd(RegionDistanceTable.ASSET_NAME).use { descriptor ->
+                FileInputStream(descriptor.fileDescriptor).channel.use { channel ->
+                    val buffer = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        descriptor.startOffset,
+                        descriptor.declaredLength,
+                    )
+                    RegionDistanceTable(buffer)
+                }
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Region distances not available")
+            null
+        }
+}
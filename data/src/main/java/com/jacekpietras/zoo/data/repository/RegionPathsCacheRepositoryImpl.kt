@@ -0,0 +1,82 @@
+package com.jacekpietras.zoo.data.repository
+
+import android.content.Context
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.vrp.model.CachedRegionPath
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionPathsCacheRepository
+import com.jacekpietras.zoo.domain.model.RegionId
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+
+// Binary layout, big endian:
+// magic, version, app install time, pair count,
+// for every pair: prev id, next id (writeUTF), distance, point count, points (x, y).
+// Map comes with app, so paths saved by other installation of it are not used.
+// File is replaced as whole, so broken write never leaves half of it.
+internal class RegionPathsCacheRepositoryImpl(
+    private val context: Context,
+) : RegionPathsCacheRepository {
+
+    private val file: File
+        get() = File(context.filesDir, FILE_NAME)
+
+    override suspend fun load(): List<CachedRegionPath> =
+        withContext(Dispatchers.IO) {
+            if (!file.exists()) return@withContext emptyList()
+
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return@withContext emptyList()
+                if (input.readLong() != installTime()) return@withContext emptyList()
+
+                List(input.readInt()) {
+                    CachedRegionPath(
+                        prev = RegionId(input.readUTF()),
+                        next = RegionId(input.readUTF()),
+                        distance = input.readDouble(),
+                        path = List(input.readInt()) { PointD(input.readDouble(), input.readDouble()) },
+                    )
+                }
+            }
+        }
+
+    override suspend fun save(paths: List<CachedRegionPath>) {
+        withContext(Dispatchers.IO) {
+            val temporary = File(context.filesDir, "$FILE_NAME.tmp")
+            DataOutputStream(temporary.outputStream().buffered()).use { output ->
+                output.writeInt(MAGIC)
+                output.writeInt(VERSION)
+                output.writeLong(installTime())
+                output.writeInt(paths.size)
+                paths.forEach { path ->
+                    output.writeUTF(path.prev.id)
+                    output.writeUTF(path.next.id)
+                    output.writeDouble(path.distance)
+                    output.writeInt(path.path.size)
+                    path.path.forEach {
+                        output.writeDouble(it.x)
+                        output.writeDouble(it.y)
+                    }
+                }
+            }
+            // some file systems don't replace existing file on rename
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                temporary.delete()
+                throw IOException("Region paths cache not moved to $file")
+            }
+        }
+    }
+
+    private fun installTime(): Long =
+        context.packageManager.getPackageInfo(context.packageName, 0).lastUpdateTime
+
+    private companion object {
+
+        const val FILE_NAME = "region_paths_cache.bin"
+        const val MAGIC = 0x5A525043
+        const val VERSION = 1
+    }
+}
@@ -25,12 +25,16 @@ import com.jacekpietras.zoo.data.repository.GpsEventsRepositoryImpl
 import com.jacekpietras.zoo.data.repository.GpsRepositoryImpl
 import com.jacekpietras.zoo.data.repository.MapRepositoryImpl
 import com.jacekpietras.zoo.data.repository.PlanRepositoryImpl
+import com.jacekpietras.zoo.data.repository.RegionDistancesRepositoryImpl
+import com.jacekpietras.zoo.data.repository.RegionPathsCacheRepositoryImpl
 import com.jacekpietras.zoo.domain.feature.animal.repository.AnimalRepository
 import com.jacekpietras.zoo.domain.feature.favorites.repository.FavoritesRepository
 import com.jacekpietras.zoo.domain.feature.map.repository.MapRepository
 import com.jacekpietras.zoo.domain.feature.planner.repository.PlanRepository
 import com.jacekpietras.zoo.domain.feature.sensors.repository.GpsEventsRepository
 import com.jacekpietras.zoo.domain.feature.sensors.repository.GpsRepository
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionDistancesRepository
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionPathsCacheRepository
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
 import org.koin.android.ext.koin.androidContext
@@ -63,6 +67,18 @@ internal val repositoryModule = module {
         )
     }
 
+    single<RegionDistancesRepository> {
+        RegionDistancesRepositoryImpl(
+            context = androidContext(),
+        )
+    }
+
+    single<RegionPathsCacheRepository> {
+        RegionPathsCacheRepositoryImpl(
+            context = androidContext(),
+        )
+    }
+
     single<GpsRepository> {
         GpsRepositoryImpl(
             context = androidContext(),
@@ -0,0 +1,184 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+// both searches must walk the same roads, so starting from technical road is left for plain search
+internal class BidirectionalDijkstra(
+    private val graph: RoadGraph,
+    private val technicalAllowed: Boolean = false,
+    workspace: SearchWorkspace = SearchWorkspace(graph.size + 2),
+) {
+
+    // snapped points inside of edges are not part of graph, they get ids right after real nodes
+    private val startVertex = graph.size
+    private val endVertex = graph.size + 1
+
+    private val forward = workspace.forward
+    private val backward = workspace.backward
+
+    private var shortest = Double.MAX_VALUE
+    private var meeting = NO_NODE
+    private var directOnSameEdge = false
+
+    private lateinit var start: SnappedOn
+    private lateinit var end: SnappedOn
+
+    fun calculate(
+        start: SnappedOn,
+        end: SnappedOn,
+    ): List<SnappedOn> {
+        this.start = start
+        this.end = end
+        forward.reset()
+        backward.reset()
+        shortest = Double.MAX_VALUE
+        meeting = NO_NODE
+        directOnSameEdge = false
+
+        when (start) {
+            is SnappedOnEdge -> {
+                forward.init(start.near1, haversine(start.point, graph.point(start.near1)), startVertex)
+                forward.init(start.near2, haversine(start.point, graph.point(start.near2)), startVertex)
+            }
+            is SnappedOnNode -> forward.init(start.node, 0.0, NO_NODE)
+        }
+        when (end) {
+            is SnappedOnEdge -> {
+                backward.init(end.near1, haversine(end.point, graph.point(end.near1)), endVertex)
+                backward.init(end.near2, haversine(end.point, graph.point(end.near2)), endVertex)
+            }
+            is SnappedOnNode -> backward.init(end.node, 0.0, NO_NODE)
+        }
+        if (start is SnappedOnEdge && end is SnappedOnEdge && start onSameEdgeWith end) {
+            shortest = haversine(start.point, end.point)
+            directOnSameEdge = true
+        }
+        start.forEachNode(::checkMeeting)
+        end.forEachNode(::checkMeeting)
+
+        runAlgorithm()
+
+        return getPath()
+    }
+
+    private fun runAlgorithm() {
+        while (!forward.queue.isEmpty() || !backward.queue.isEmpty()) {
+            val forwardTop = if (forward.queue.isEmpty()) 0.0 else forward.queue.peekKey()
+            val backwardTop = if (backward.queue.isEmpty()) 0.0 else backward.queue.peekKey()
+            if (forwardTop + backwardTop >= shortest) break
+
+            if (backward.queue.isEmpty() || (!forward.queue.isEmpty() && forwardTop <= backwardTop)) {
+                expandForward()
+            } else {
+                expandBackward()
+            }
+        }
+    }
+
+    private fun expandForward() {
+        val v = forward.queue.poll()
+        forward.settle(v)
+        val distanceToV = forward.cost(v)
+
+        for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+            if (!technicalAllowed && graph.isTechnical(edge)) continue
+
+            val neighbor = graph.edgeTargets[edge]
+            if (forward.relax(v, neighbor, graph.edgeWeights[edge], distanceToV)) {
+                checkMeeting(neighbor)
+            }
+        }
+    }
+
+    private fun expandBackward() {
+        val v = backward.queue.poll()
+        backward.settle(v)
+        val distanceToV = backward.cost(v)
+
+        for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+            if (!technicalAllowed && graph.isTechnical(edge)) continue
+
+            val neighbor = graph.edgeTargets[edge]
+            if (backward.relax(v, neighbor, graph.edgeWeights[edge], distanceToV)) {
+                checkMeeting(neighbor)
+            }
+        }
+    }
+
+    private fun checkMeeting(v: Int) {
+        val forwardCost = forward.cost(v)
+        val backwardCost = backward.cost(v)
+        if (forwardCost == Double.MAX_VALUE || backwardCost == Double.MAX_VALUE) return
+
+        val cost = forwardCost + backwardCost
+        if (cost < shortest) {
+            shortest = cost
+            meeting = v
+            directOnSameEdge = false
+        }
+    }
+
+    private inline fun SnappedOn.forEachNode(block: (Int) -> Unit) {
+        when (this) {
+            is SnappedOnEdge -> {
+                block(near1)
+                block(near2)
+            }
+            is SnappedOnNode -> block(node)
+        }
+    }
+
+    private fun Int.toSnappedOn(): SnappedOn =
+        when (this) {
+            startVertex -> start
+            endVertex -> end
+            else -> SnappedOnNode(this, graph.point(this))
+        }
+
+    private fun getPath(): List<SnappedOn> {
+        if (directOnSameEdge) return listOf(start, end)
+        if (meeting == NO_NODE) return listOf(end)
+
+        val result = mutableListOf<Int>()
+        var current = meeting
+        while (current != NO_NODE) {
+            result.add(current)
+            current = forward.previous(current)
+        }
+        result.reverse()
+        current = backward.previous(meeting)
+        while (current != NO_NODE) {
+            result.add(current)
+            current = backward.previous(current)
+        }
+        return result.map { it.toSnappedOn() }
+    }
+
+    private fun SearchState.init(v: Int, cost: Double, from: Int) {
+        if (cost < cost(v)) {
+            update(v, cost, from)
+            queue.push(v, cost)
+        }
+    }
+
+    private fun SearchState.relax(
+        v: Int,
+        neighbor: Int,
+        weight: Double,
+        distanceToV: Double,
+    ): Boolean {
+        if (isSettled(neighbor)) return false
+
+        val newCost = distanceToV + weight
+        if (newCost < cost(neighbor)) {
+            update(neighbor, newCost, v)
+            queue.push(neighbor, newCost)
+            return true
+        }
+        return false
+    }
+}
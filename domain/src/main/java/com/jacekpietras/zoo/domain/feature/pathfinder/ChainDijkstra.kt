@@ -0,0 +1,272 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_EDGE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+// Search visits only junctions, points inside of chains are connected to both ends of their chain.
+// Previous of junction is chain that led into it, so parallel chains between same junctions stay distinct.
+internal class ChainDijkstra(
+    private val chains: ChainGraph,
+    private val goalDirected: Boolean = false,
+    private val state: SearchState = SearchState(chains.size + 1),
+) {
+
+    private val graph = chains.graph
+    private val endVertex = chains.size
+    private val queue = state.queue
+
+    private lateinit var start: SnappedOn
+    private lateinit var end: SnappedOn
+    private lateinit var target: PointD
+    private var startPlace: Place? = null
+    private var endPlace: Place? = null
+    private var endChain = NO_EDGE
+    private var direct: Pair<Place, Place>? = null
+
+    // position in chain, either on segment starting at given position or on chain node
+    private class Place(val chain: Int, val position: Int, val onSegment: Boolean)
+
+    fun canCalculate(start: SnappedOn, end: SnappedOn): Boolean =
+        chains.canStartFrom(start) && start.isCovered() && end.isCovered()
+
+    fun calculate(
+        start: SnappedOn,
+        end: SnappedOn,
+    ): List<SnappedOn> {
+        this.start = start
+        this.end = end
+        this.target = end.point
+        state.reset()
+        endChain = NO_EDGE
+        direct = null
+
+        val startJunction = start.junction()
+        val startPlace = if (startJunction == NO_NODE) start.place() else null
+        this.startPlace = startPlace
+        if (startPlace != null) {
+            seed(startPlace)
+            startPlace.reversed()?.let(::seed)
+        } else {
+            state.update(startJunction, 0.0, NO_NODE)
+            enqueue(startJunction, 0.0)
+        }
+
+        val endJunction = end.junction()
+        val endPlace = if (endJunction == NO_NODE) end.place() else null
+        this.endPlace = endPlace
+        if (startPlace != null && endPlace != null) {
+            addDirectConnection(startPlace, endPlace)
+        }
+
+        return if (endPlace != null) {
+            val reversed = endPlace.reversed()
+            runAlgorithm(
+                endVertex,
+                chains.source(endPlace.chain),
+                fromSource(endPlace, end.point),
+                endPlace.chain,
+                reversed?.let { chains.source(it.chain) } ?: NO_NODE,
+                reversed?.let { fromSource(it, end.point) } ?: 0.0,
+                reversed?.chain ?: NO_EDGE,
+            )
+        } else {
+            runAlgorithm(endJunction)
+        }
+    }
+
+    private fun seed(place: Place) {
+        val junction = chains.edgeTargets[place.chain]
+        val cost = toTarget(place, start.point)
+        if (cost < state.cost(junction)) {
+            state.update(junction, cost, seedOf(place.chain))
+            enqueue(junction, cost)
+        }
+    }
+
+    // same chain can be followed directly, in whichever direction leads from start to end
+    private fun addDirectConnection(startPlace: Place, endPlace: Place) {
+        val onStartChain = when (startPlace.chain) {
+            endPlace.chain -> endPlace
+            chains.reverse(endPlace.chain) -> endPlace.reversed()
+            else -> null
+        } ?: return
+
+        val (from, to) = when {
+            startPlace.onSegment && onStartChain.onSegment && startPlace.position == onStartChain.position -> {
+                updateEnd(haversine(start.point, end.point), NO_EDGE)
+                direct = startPlace to onStartChain
+                return
+            }
+            startPlace.next() <= onStartChain.position -> startPlace to onStartChain
+            else -> (startPlace.reversed() ?: return) to (onStartChain.reversed() ?: return)
+        }
+        val head = if (from.onSegment) haversine(start.point, graph.point(from.node(from.next()))) else 0.0
+        val tail = if (to.onSegment) haversine(end.point, graph.point(to.node(to.position))) else 0.0
+        updateEnd(head + chains.cost(from.chain, to.position) - chains.cost(from.chain, from.next()) + tail, NO_EDGE)
+        direct = from to to
+    }
+
+    // ending chains lead from their source junctions to virtual end vertex
+    private fun runAlgorithm(
+        end: Int,
+        endingFrom1: Int = NO_NODE,
+        endingWeight1: Double = 0.0,
+        endingChain1: Int = NO_EDGE,
+        endingFrom2: Int = NO_NODE,
+        endingWeight2: Double = 0.0,
+        endingChain2: Int = NO_EDGE,
+    ): List<SnappedOn> {
+        while (!queue.isEmpty()) {
+            val v = queue.poll()
+            if (v == end) break
+
+            state.settle(v)
+            val distanceToV = state.cost(v)
+
+            for (chain in chains.edgeOffsets[v] until chains.edgeOffsets[v + 1]) {
+                relax(chains.edgeTargets[chain], distanceToV + chains.edgeWeights[chain], chain)
+            }
+            if (endingFrom1 == v) {
+                updateEnd(distanceToV + endingWeight1, endingChain1)
+            }
+            if (endingFrom2 == v) {
+                updateEnd(distanceToV + endingWeight2, endingChain2)
+            }
+        }
+        return getPath(end)
+    }
+
+    private fun relax(neighbor: Int, newCost: Double, chain: Int) {
+        if (!state.isSettled(neighbor) && newCost < state.cost(neighbor)) {
+            state.update(neighbor, newCost, chain)
+            enqueue(neighbor, newCost)
+        }
+    }
+
+    private fun updateEnd(cost: Double, chain: Int) {
+        if (cost < state.cost(endVertex)) {
+            state.update(endVertex, cost, NO_NODE)
+            enqueue(endVertex, cost)
+            endChain = chain
+            direct = null
+        }
+    }
+
+    private fun enqueue(v: Int, cost: Double) {
+        queue.push(v, cost + estimate(v))
+    }
+
+    // chain is never shorter than straight line between its ends, so it keeps A* optimal
+    private fun estimate(v: Int): Double =
+        if (goalDirected && v < chains.size) {
+            val node = chains.junctionNodes[v]
+            haversine(graph.xs[node], graph.ys[node], target.x, target.y)
+        } else {
+            0.0
+        }
+
+    private fun getPath(end: Int): List<SnappedOn> {
+        if (state.cost(end) == Double.MAX_VALUE) return listOf(this.end)
+
+        val result = mutableListOf(start)
+        direct?.let { (from, to) ->
+            result.addNodes(from.chain, from.position + 1, to.last())
+            result.add(this.end)
+            return result
+        }
+
+        val lastJunction = if (end == endVertex) chains.source(endChain) else end
+        val path = mutableListOf<Int>()
+        var previous = state.previous(lastJunction)
+        while (previous != NO_NODE && !isSeed(previous)) {
+            path.add(previous)
+            previous = state.previous(chains.source(previous))
+        }
+        if (previous != NO_NODE) {
+            val seedChain = chainOfSeed(previous)
+            val place = checkNotNull(startPlace).let { if (it.chain == seedChain) it else checkNotNull(it.reversed()) }
+            result.addNodes(seedChain, place.position + 1, chains.length(seedChain))
+        }
+        path.asReversed().forEach { chain -> result.addNodes(chain, 1, chains.length(chain)) }
+
+        if (end == endVertex) {
+            val place = checkNotNull(endPlace).let { if (it.chain == endChain) it else checkNotNull(it.reversed()) }
+            result.addNodes(endChain, 1, place.last())
+            result.add(this.end)
+        } else {
+            result[result.lastIndex] = this.end
+        }
+        return result
+    }
+
+    private fun MutableList<SnappedOn>.addNodes(chain: Int, from: Int, to: Int) {
+        for (position in from..to) {
+            val node = chains.node(chain, position)
+            add(SnappedOnNode(node, graph.point(node)))
+        }
+    }
+
+    // start marks seeded junctions with chain it was reached through
+    private fun seedOf(chain: Int): Int = SEED - chain
+
+    private fun chainOfSeed(previous: Int): Int = SEED - previous
+
+    private fun isSeed(previous: Int): Boolean = previous <= SEED
+
+    private fun toTarget(place: Place, point: PointD): Double {
+        val next = place.next()
+        val head = if (place.onSegment) haversine(point, graph.point(place.node(next))) else 0.0
+        return head + chains.cost(place.chain, chains.length(place.chain)) - chains.cost(place.chain, next)
+    }
+
+    private fun fromSource(place: Place, point: PointD): Double {
+        val tail = if (place.onSegment) haversine(point, graph.point(place.node(place.position))) else 0.0
+        return chains.cost(place.chain, place.position) + tail
+    }
+
+    private fun Place.next(): Int = if (onSegment) position + 1 else position
+
+    // last chain node before place, excluding place itself
+    private fun Place.last(): Int = if (onSegment) position else position - 1
+
+    private fun Place.node(position: Int): Int = chains.node(chain, position)
+
+    private fun Place.reversed(): Place? {
+        val reverse = chains.reverse(chain)
+        if (reverse == NO_EDGE) return null
+        val length = chains.length(chain)
+        return if (onSegment) {
+            Place(reverse, length - position - 1, true)
+        } else {
+            Place(reverse, length - position, false)
+        }
+    }
+
+    private fun SnappedOn.junction(): Int =
+        when (this) {
+            is SnappedOnEdge -> NO_NODE
+            is SnappedOnNode -> chains.junctionIdOf(node)
+        }
+
+    private fun SnappedOn.place(): Place =
+        when (this) {
+            is SnappedOnEdge -> Place(chains.chainOf(near1, near2), chains.positionOf(near1, near2), true)
+            is SnappedOnNode -> Place(chains.chainOf(node), chains.positionOf(node), false)
+        }
+
+    private fun SnappedOn.isCovered(): Boolean =
+        when (this) {
+            is SnappedOnEdge -> chains.chainOf(near1, near2) != NO_EDGE
+            is SnappedOnNode -> chains.junctionIdOf(node) != NO_NODE || chains.chainOf(node) != NO_EDGE
+        }
+
+    private companion object {
+
+        const val SEED = -2
+    }
+}
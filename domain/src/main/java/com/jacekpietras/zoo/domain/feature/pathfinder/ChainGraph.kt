@@ -0,0 +1,186 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_EDGE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+// Graph of junctions only, nodes with two neighbours are collapsed into chains.
+// Every chain edge keeps its original nodes, from source junction to target junction,
+// with cost of reaching each of them from source, so paths and snapped points can be expanded back.
+internal class ChainGraph(
+    val graph: RoadGraph,
+    val technicalAllowed: Boolean,
+) {
+
+    val size: Int
+    val junctionNodes: IntArray
+    val edgeOffsets: IntArray
+    val edgeTargets: IntArray
+    val edgeWeights: DoubleArray
+
+    private val chainOffsets: IntArray
+    private val chainNodes: IntArray
+    private val chainCosts: DoubleArray
+    private val reverseEdges: IntArray
+
+    // original edge or chain node leads to its chain edge and position in it
+    private val edgeChains = IntArray(graph.edgeTargets.size) { NO_EDGE }
+    private val edgePositions = IntArray(graph.edgeTargets.size)
+    private val nodeChains = IntArray(graph.size) { NO_EDGE }
+    private val nodePositions = IntArray(graph.size)
+
+    private val touchingTechnical = BooleanArray(graph.size) { v ->
+        (graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]).any(graph::isTechnical)
+    }
+
+    init {
+        val junction = BooleanArray(graph.size) { !isChainNode(it) }
+        // closed loops without any junction need one, otherwise they would be lost
+        val reached = BooleanArray(graph.size)
+        for (v in 0 until graph.size) {
+            if (junction[v]) walkChains(v, junction) { nodes, _, _ -> nodes.forEach { reached[it] = true } }
+        }
+        for (v in 0 until graph.size) {
+            if (!junction[v] && !reached[v]) {
+                junction[v] = true
+                walkChains(v, junction) { nodes, _, _ -> nodes.forEach { reached[it] = true } }
+            }
+        }
+
+        val junctionIds = IntArray(graph.size) { NO_NODE }
+        junctionNodes = (0 until graph.size).filter { junction[it] }.toIntArray()
+        junctionNodes.forEachIndexed { id, node -> junctionIds[node] = id }
+        size = junctionNodes.size
+
+        val offsets = IntArray(size + 1)
+        val targets = mutableListOf<Int>()
+        val weights = mutableListOf<Double>()
+        val chainOffsets = mutableListOf(0)
+        val chainNodes = mutableListOf<Int>()
+        val chainCosts = mutableListOf<Double>()
+        junctionNodes.forEachIndexed { id, node ->
+            walkChains(node, junction) { nodes, costs, edges ->
+                val chain = targets.size
+                targets.add(junctionIds[nodes.last()])
+                weights.add(costs.last())
+                chainNodes.addAll(nodes)
+                chainCosts.addAll(costs)
+                chainOffsets.add(chainNodes.size)
+                edges.forEachIndexed { position, edge ->
+                    edgeChains[edge] = chain
+                    edgePositions[edge] = position
+                }
+                for (position in 1 until nodes.lastIndex) {
+                    nodeChains[nodes[position]] = chain
+                    nodePositions[nodes[position]] = position
+                }
+            }
+            offsets[id + 1] = targets.size
+        }
+        edgeOffsets = offsets
+        edgeTargets = targets.toIntArray()
+        edgeWeights = weights.toDoubleArray()
+        this.chainOffsets = chainOffsets.toIntArray()
+        this.chainNodes = chainNodes.toIntArray()
+        this.chainCosts = chainCosts.toDoubleArray()
+
+        reverseEdges = IntArray(edgeTargets.size) { chain ->
+            val last = this.chainOffsets[chain + 1] - 1
+            val edge = allowedEdge(this.chainNodes[last], this.chainNodes[last - 1])
+            if (edge == NO_EDGE) NO_EDGE else edgeChains[edge]
+        }
+    }
+
+    fun source(chain: Int): Int =
+        junctionIdOf(chainNodes[chainOffsets[chain]])
+
+    fun reverse(chain: Int): Int =
+        reverseEdges[chain]
+
+    // number of segments, chain node positions go from 0 (source) to length (target)
+    fun length(chain: Int): Int =
+        chainOffsets[chain + 1] - chainOffsets[chain] - 1
+
+    fun node(chain: Int, position: Int): Int =
+        chainNodes[chainOffsets[chain] + position]
+
+    fun cost(chain: Int, position: Int): Double =
+        chainCosts[chainOffsets[chain] + position]
+
+    fun junctionIdOf(node: Int): Int =
+        junctionNodes.binarySearch(node).let { if (it < 0) NO_NODE else it }
+
+    fun chainOf(node: Int): Int = nodeChains[node]
+
+    fun positionOf(node: Int): Int = nodePositions[node]
+
+    fun chainOf(from: Int, to: Int): Int {
+        val edge = allowedEdge(from, to)
+        return if (edge == NO_EDGE) NO_EDGE else edgeChains[edge]
+    }
+
+    fun positionOf(from: Int, to: Int): Int =
+        edgePositions[allowedEdge(from, to)]
+
+    // without technical roads, search may still leave starting point by technical road, only plain search knows when
+    fun canStartFrom(start: SnappedOn): Boolean =
+        technicalAllowed || when (start) {
+            is SnappedOnEdge -> !touchingTechnical[start.near1] && !touchingTechnical[start.near2]
+            is SnappedOnNode -> !touchingTechnical[start.node]
+        }
+
+    private fun isAllowed(edge: Int): Boolean =
+        technicalAllowed || !graph.isTechnical(edge)
+
+    private fun allowedEdge(from: Int, to: Int): Int {
+        for (edge in graph.edgeOffsets[from] until graph.edgeOffsets[from + 1]) {
+            if (graph.edgeTargets[edge] == to && isAllowed(edge)) return edge
+        }
+        return NO_EDGE
+    }
+
+    private fun isChainNode(v: Int): Boolean {
+        var first = NO_NODE
+        var second = NO_NODE
+        for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+            if (!isAllowed(edge)) continue
+            when (NO_NODE) {
+                first -> first = graph.edgeTargets[edge]
+                second -> second = graph.edgeTargets[edge]
+                else -> return false
+            }
+        }
+        return second != NO_NODE && first != second && first != v && second != v &&
+                allowedEdge(first, v) != NO_EDGE && allowedEdge(second, v) != NO_EDGE
+    }
+
+    private inline fun walkChains(
+        junction: Int,
+        isJunction: BooleanArray,
+        block: (nodes: List<Int>, costs: List<Double>, edges: List<Int>) -> Unit,
+    ) {
+        for (first in graph.edgeOffsets[junction] until graph.edgeOffsets[junction + 1]) {
+            if (!isAllowed(first)) continue
+
+            val nodes = mutableListOf(junction)
+            val costs = mutableListOf(0.0)
+            val edges = mutableListOf<Int>()
+            var edge = first
+            while (true) {
+                val next = graph.edgeTargets[edge]
+                nodes.add(next)
+                costs.add(costs.last() + graph.edgeWeights[edge])
+                edges.add(edge)
+                if (isJunction[next]) break
+
+                val previous = nodes[nodes.lastIndex - 1]
+                edge = (graph.edgeOffsets[next] until graph.edgeOffsets[next + 1])
+                    .first { isAllowed(it) && graph.edgeTargets[it] != previous }
+            }
+            block(nodes, costs, edges)
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+// Arcs are kept in CSR form, middle of shortcut is NO_NODE for original edges.
+// Upward arcs are stored at lower node and lead to higher ranked node,
+// downward arcs are stored at lower node and lead from higher ranked node into it.
+internal class ContractionHierarchy private constructor(
+    val graph: RoadGraph,
+    val technicalAllowed: Boolean,
+    private val rank: IntArray,
+    val upOffsets: IntArray,
+    val upTargets: IntArray,
+    val upWeights: DoubleArray,
+    private val upMiddles: IntArray,
+    val downOffsets: IntArray,
+    val downSources: IntArray,
+    val downWeights: DoubleArray,
+    private val downMiddles: IntArray,
+    private val touchingTechnical: BooleanArray,
+) {
+
+    // without technical roads, search may still leave starting point by technical road, only plain search knows when
+    fun canStartFrom(start: SnappedOn): Boolean =
+        technicalAllowed || when (start) {
+            is SnappedOnEdge -> !touchingTechnical[start.near1] && !touchingTechnical[start.near2]
+            is SnappedOnNode -> !touchingTechnical[start.node]
+        }
+
+    // replaces shortcut from -> to with original nodes, from is not included
+    fun unpack(from: Int, to: Int, result: MutableList<Int>) {
+        val stack = ArrayDeque<Int>()
+        stack.addLast(to)
+        var current = from
+        while (stack.isNotEmpty()) {
+            val next = stack.last()
+            val middle = middle(current, next)
+            if (middle == NO_NODE) {
+                result.add(next)
+                current = next
+                stack.removeLast()
+            } else {
+                stack.addLast(middle)
+            }
+        }
+    }
+
+    private fun middle(from: Int, to: Int): Int =
+        if (rank[from] < rank[to]) {
+            findMiddle(from, to, upOffsets, upTargets, upMiddles)
+        } else {
+            findMiddle(to, from, downOffsets, downSources, downMiddles)
+        }
+
+    private fun findMiddle(node: Int, other: Int, offsets: IntArray, others: IntArray, middles: IntArray): Int {
+        for (arc in offsets[node] until offsets[node + 1]) {
+            if (others[arc] == other) return middles[arc]
+        }
+        throw IllegalStateException("No arc between $node and $other")
+    }
+
+    private class Arc(var weight: Double, var middle: Int)
+
+    private class Builder(
+        private val graph: RoadGraph,
+        private val technicalAllowed: Boolean,
+    ) {
+
+        private val size = graph.size
+        private val outArcs = Array(size) { HashMap<Int, Arc>() }
+        private val inArcs = Array(size) { HashMap<Int, Arc>() }
+        private val contracted = BooleanArray(size)
+        private val contractedNeighbours = IntArray(size)
+        private val rank = IntArray(size)
+        private val witness = SearchState(size)
+        private val queue = IndexedHeap(size)
+
+        fun build(): ContractionHierarchy {
+            for (v in 0 until size) {
+                for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+                    if (!technicalAllowed && graph.isTechnical(edge)) continue
+                    val target = graph.edgeTargets[edge]
+                    if (target != v) {
+                        addArc(v, target, graph.edgeWeights[edge], NO_NODE)
+                    }
+                }
+            }
+
+            for (v in 0 until size) {
+                queue.push(v, priority(v))
+            }
+            var order = 0
+            while (!queue.isEmpty()) {
+                val v = queue.poll()
+                // priorities of other nodes could get outdated, lazy update postpones node until it's really the best
+                val priority = priority(v)
+                if (!queue.isEmpty() && priority > queue.peekKey()) {
+                    queue.push(v, priority)
+                    continue
+                }
+                contract(v)
+                rank[v] = order++
+            }
+
+            return toHierarchy()
+        }
+
+        private fun addArc(from: Int, to: Int, weight: Double, middle: Int) {
+            val existing = outArcs[from][to]
+            if (existing == null) {
+                val arc = Arc(weight, middle)
+                outArcs[from][to] = arc
+                inArcs[to][from] = arc
+            } else if (weight < existing.weight) {
+                existing.weight = weight
+                existing.middle = middle
+            }
+        }
+
+        private fun priority(v: Int): Double {
+            var removed = 0
+            inArcs[v].keys.forEach { if (!contracted[it]) removed++ }
+            outArcs[v].keys.forEach { if (!contracted[it]) removed++ }
+            val added = forEachShortcut(v) { _, _, _ -> }
+            return (added - removed + contractedNeighbours[v]).toDouble()
+        }
+
+        private fun contract(v: Int) {
+            val shortcuts = mutableListOf<Triple<Int, Int, Double>>()
+            forEachShortcut(v) { from, to, weight -> shortcuts.add(Triple(from, to, weight)) }
+            shortcuts.forEach { (from, to, weight) -> addArc(from, to, weight, v) }
+
+            contracted[v] = true
+            inArcs[v].keys.forEach { if (!contracted[it]) contractedNeighbours[it]++ }
+            outArcs[v].keys.forEach { if (!contracted[it]) contractedNeighbours[it]++ }
+        }
+
+        private inline fun forEachShortcut(v: Int, block: (from: Int, to: Int, weight: Double) -> Unit): Int {
+            var count = 0
+            for ((from, inArc) in inArcs[v]) {
+                if (contracted[from]) continue
+
+                var limit = 0.0
+                for ((to, outArc) in outArcs[v]) {
+                    if (!contracted[to] && to != from) {
+                        limit = maxOf(limit, inArc.weight + outArc.weight)
+                    }
+                }
+                findWitnesses(from, v, limit)
+
+                for ((to, outArc) in outArcs[v]) {
+                    if (contracted[to] || to == from) continue
+
+                    val weight = inArc.weight + outArc.weight
+                    if (witness.cost(to) > weight) {
+                        block(from, to, weight)
+                        count++
+                    }
+                }
+            }
+            return count
+        }
+
+        // local search for paths avoiding contracted node, limited so it doesn't explore whole graph
+        private fun findWitnesses(from: Int, avoided: Int, limit: Double) {
+            witness.reset()
+            witness.update(from, 0.0, NO_NODE)
+            witness.queue.push(from, 0.0)
+            var settled = 0
+
+            while (!witness.queue.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+                if (witness.queue.peekKey() > limit) break
+                val u = witness.queue.poll()
+                witness.settle(u)
+                settled++
+
+                val distanceToU = witness.cost(u)
+                for ((to, arc) in outArcs[u]) {
+                    if (contracted[to] || to == avoided || witness.isSettled(to)) continue
+
+                    val cost = distanceToU + arc.weight
+                    if (cost < witness.cost(to)) {
+                        witness.update(to, cost, u)
+                        witness.queue.push(to, cost)
+                    }
+                }
+            }
+        }
+
+        private fun toHierarchy(): ContractionHierarchy {
+            val upOffsets = IntArray(size + 1)
+            val downOffsets = IntArray(size + 1)
+            for (v in 0 until size) {
+                upOffsets[v + 1] = upOffsets[v] + outArcs[v].keys.count { rank[it] > rank[v] }
+                downOffsets[v + 1] = downOffsets[v] + inArcs[v].keys.count { rank[it] > rank[v] }
+            }
+            val upTargets = IntArray(upOffsets[size])
+            val upWeights = DoubleArray(upOffsets[size])
+            val upMiddles = IntArray(upOffsets[size])
+            val downSources = IntArray(downOffsets[size])
+            val downWeights = DoubleArray(downOffsets[size])
+            val downMiddles = IntArray(downOffsets[size])
+
+            for (v in 0 until size) {
+                var up = upOffsets[v]
+                for ((to, arc) in outArcs[v]) {
+                    if (rank[to] > rank[v]) {
+                        upTargets[up] = to
+                        upWeights[up] = arc.weight
+                        upMiddles[up] = arc.middle
+                        up++
+                    }
+                }
+                var down = downOffsets[v]
+                for ((from, arc) in inArcs[v]) {
+                    if (rank[from] > rank[v]) {
+                        downSources[down] = from
+                        downWeights[down] = arc.weight
+                        downMiddles[down] = arc.middle
+                        down++
+                    }
+                }
+            }
+
+            val touchingTechnical = BooleanArray(size) { v ->
+                (graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]).any(graph::isTechnical)
+            }
+
+            return ContractionHierarchy(
+                graph = graph,
+                technicalAllowed = technicalAllowed,
+                rank = rank,
+                upOffsets = upOffsets,
+                upTargets = upTargets,
+                upWeights = upWeights,
+                upMiddles = upMiddles,
+                downOffsets = downOffsets,
+                downSources = downSources,
+                downWeights = downWeights,
+                downMiddles = downMiddles,
+                touchingTechnical = touchingTechnical,
+            )
+        }
+    }
+
+    companion object {
+
+        private const val WITNESS_SETTLED_LIMIT = 500
+
+        fun build(graph: RoadGraph, technicalAllowed: Boolean): ContractionHierarchy =
+            Builder(graph, technicalAllowed).build()
+    }
+}
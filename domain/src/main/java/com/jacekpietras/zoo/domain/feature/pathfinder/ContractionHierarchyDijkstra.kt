@@ -0,0 +1,162 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+// both searches go only upward in hierarchy and meet at highest ranked node of shortest path
+internal class ContractionHierarchyDijkstra(
+    private val hierarchy: ContractionHierarchy,
+    workspace: SearchWorkspace = SearchWorkspace(hierarchy.graph.size + 2),
+) {
+
+    private val graph = hierarchy.graph
+
+    // snapped points inside of edges are not part of graph, they get ids right after real nodes
+    private val startVertex = graph.size
+    private val endVertex = graph.size + 1
+
+    private val forward = workspace.forward
+    private val backward = workspace.backward
+
+    private var shortest = Double.MAX_VALUE
+    private var meeting = NO_NODE
+    private var directOnSameEdge = false
+
+    private lateinit var start: SnappedOn
+    private lateinit var end: SnappedOn
+
+    fun calculate(
+        start: SnappedOn,
+        end: SnappedOn,
+    ): List<SnappedOn> {
+        this.start = start
+        this.end = end
+        forward.reset()
+        backward.reset()
+        shortest = Double.MAX_VALUE
+        meeting = NO_NODE
+        directOnSameEdge = false
+
+        when (start) {
+            is SnappedOnEdge -> {
+                forward.init(start.near1, haversine(start.point, graph.point(start.near1)), startVertex)
+                forward.init(start.near2, haversine(start.point, graph.point(start.near2)), startVertex)
+            }
+            is SnappedOnNode -> forward.init(start.node, 0.0, NO_NODE)
+        }
+        when (end) {
+            is SnappedOnEdge -> {
+                backward.init(end.near1, haversine(end.point, graph.point(end.near1)), endVertex)
+                backward.init(end.near2, haversine(end.point, graph.point(end.near2)), endVertex)
+            }
+            is SnappedOnNode -> backward.init(end.node, 0.0, NO_NODE)
+        }
+        if (start is SnappedOnEdge && end is SnappedOnEdge && start onSameEdgeWith end) {
+            shortest = haversine(start.point, end.point)
+            directOnSameEdge = true
+        }
+        start.forEachNode(::checkMeeting)
+        end.forEachNode(::checkMeeting)
+
+        runAlgorithm()
+
+        return getPath()
+    }
+
+    // unlike plain bidirectional search, each side has to run until its own queue can't improve result
+    private fun runAlgorithm() {
+        while (true) {
+            val forwardActive = !forward.queue.isEmpty() && forward.queue.peekKey() < shortest
+            val backwardActive = !backward.queue.isEmpty() && backward.queue.peekKey() < shortest
+            when {
+                forwardActive && (!backwardActive || forward.queue.peekKey() <= backward.queue.peekKey()) ->
+                    expand(forward, hierarchy.upOffsets, hierarchy.upTargets, hierarchy.upWeights)
+                backwardActive ->
+                    expand(backward, hierarchy.downOffsets, hierarchy.downSources, hierarchy.downWeights)
+                else -> return
+            }
+        }
+    }
+
+    private fun expand(
+        state: SearchState,
+        offsets: IntArray,
+        targets: IntArray,
+        weights: DoubleArray,
+    ) {
+        val v = state.queue.poll()
+        state.settle(v)
+        val distanceToV = state.cost(v)
+
+        for (arc in offsets[v] until offsets[v + 1]) {
+            val neighbor = targets[arc]
+            if (state.isSettled(neighbor)) continue
+
+            val newCost = distanceToV + weights[arc]
+            if (newCost < state.cost(neighbor)) {
+                state.update(neighbor, newCost, v)
+                state.queue.push(neighbor, newCost)
+                checkMeeting(neighbor)
+            }
+        }
+    }
+
+    private fun checkMeeting(v: Int) {
+        val forwardCost = forward.cost(v)
+        val backwardCost = backward.cost(v)
+        if (forwardCost == Double.MAX_VALUE || backwardCost == Double.MAX_VALUE) return
+
+        val cost = forwardCost + backwardCost
+        if (cost < shortest) {
+            shortest = cost
+            meeting = v
+            directOnSameEdge = false
+        }
+    }
+
+    private fun getPath(): List<SnappedOn> {
+        if (directOnSameEdge) return listOf(start, end)
+        if (meeting == NO_NODE) return listOf(end)
+
+        val shortcuts = mutableListOf<Int>()
+        var current = meeting
+        while (current != NO_NODE && current != startVertex) {
+            shortcuts.add(current)
+            current = forward.previous(current)
+        }
+        shortcuts.reverse()
+        current = backward.previous(meeting)
+        while (current != NO_NODE && current != endVertex) {
+            shortcuts.add(current)
+            current = backward.previous(current)
+        }
+
+        val nodes = mutableListOf(shortcuts.first())
+        shortcuts.zipWithNext { from, to -> hierarchy.unpack(from, to, nodes) }
+
+        val result = mutableListOf<SnappedOn>()
+        if (start is SnappedOnEdge) result.add(start)
+        nodes.mapTo(result) { SnappedOnNode(it, graph.point(it)) }
+        if (end is SnappedOnEdge) result.add(end)
+        return result
+    }
+
+    private inline fun SnappedOn.forEachNode(block: (Int) -> Unit) {
+        when (this) {
+            is SnappedOnEdge -> {
+                block(near1)
+                block(near2)
+            }
+            is SnappedOnNode -> block(node)
+        }
+    }
+
+    private fun SearchState.init(v: Int, cost: Double, from: Int) {
+        if (cost < cost(v)) {
+            update(v, cost, from)
+            queue.push(v, cost)
+        }
+    }
+}
@@ -1,65 +1,66 @@
 package com.jacekpietras.zoo.domain.feature.pathfinder
 
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.Edge
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
-import java.util.PriorityQueue
 
 internal class Dijkstra(
-    private val vertices: Set<Node>,
+    private val graph: RoadGraph,
     private val technicalAllowed: Boolean = false,
+    private val goalDirected: Boolean = false,
+    private val state: SearchState = SearchState(graph.size + 2),
 ) {
 
-    private val queue = PriorityQueue(10, comparator)
-    private lateinit var costs: MutableMap<Node, Double>
-    private val previous = mutableMapOf<Node, Node?>()
+    // snapped points inside of edges are not part of graph, they get ids right after real nodes
+    private val startVertex = graph.size
+    private val endVertex = graph.size + 1
+
+    private val queue = state.queue
     private var outsideTechnical = false
 
-    // subset of vertices, for which we know true distance
-    private val visited = mutableSetOf<Node>()
+    private lateinit var start: SnappedOn
+    private lateinit var end: SnappedOn
+    private lateinit var target: PointD
 
     fun calculate(
         start: SnappedOn,
         end: SnappedOn,
-    ): List<Node> {
+    ): List<SnappedOn> {
+        this.start = start
+        this.end = end
+        this.target = end.point
+        state.reset()
+        outsideTechnical = false
+
         when (start) {
             is SnappedOnEdge -> {
                 initQueueWithEndsOfStartingEdge(start)
                 if (isCommonEdge(start, end)) {
-                    addsToQueueConnectionOnSameEdge(start, end)
+                    addsToQueueConnectionOnSameEdge()
                 }
             }
             is SnappedOnNode -> {
-                costs = mutableMapOf(start.node to 0.0)
-                queue.add(start.node to 0.0)
+                state.update(start.node, 0.0, NO_NODE)
+                enqueue(start.node, 0.0)
             }
         }
 
         return when (end) {
             is SnappedOnEdge -> {
                 if (isCommonEdge(end, start)) {
-                    addsToQueueConnectionOnSameEdge(start, end)
+                    addsToQueueConnectionOnSameEdge()
                 }
 
-                val endNode = end.toNode()
-                val technical = endNode.edges.first().technical
-                val endingEdge1 = Edge(
-                    node = endNode,
-                    technical = technical,
-                    weight = haversine(end.point, end.near1.point),
-                )
-                val endingEdge2 = Edge(
-                    node = endNode,
-                    technical = technical,
-                    weight = haversine(end.point, end.near2.point),
-                )
-
                 runAlgorithm(
-                    endNode,
-                    EndingEdge(end.near1, endingEdge1),
-                    EndingEdge(end.near2, endingEdge2),
+                    endVertex,
+                    end.near1,
+                    haversine(end.point, graph.point(end.near1)),
+                    end.near2,
+                    haversine(end.point, graph.point(end.near2)),
                 )
             }
             is SnappedOnNode -> {
@@ -68,28 +69,17 @@ internal class Dijkstra(
         }
     }
 
-    private fun SnappedOn.toNode(): Node =
+    private fun SnappedOn.toVertex(virtualVertex: Int): Int =
         when (this) {
-            is SnappedOnEdge -> {
-                val node = Node(point)
-                val technical = near1.edges.first { it.node == near2 }.technical
-                val endingEdge1 = Edge(
-                    node = near1,
-                    technical = technical,
-                    weight = haversine(point, near1.point),
-                )
-                val endingEdge2 = Edge(
-                    node = near2,
-                    technical = technical,
-                    weight = haversine(point, near2.point),
-                )
-                node.edges.add(endingEdge1)
-                node.edges.add(endingEdge2)
-                node
-            }
-            is SnappedOnNode -> {
-                node
-            }
+            is SnappedOnEdge -> virtualVertex
+            is SnappedOnNode -> node
+        }
+
+    private fun Int.toSnappedOn(): SnappedOn =
+        when (this) {
+            startVertex -> start
+            endVertex -> end
+            else -> SnappedOnNode(this, graph.point(this))
         }
 
     private fun isCommonEdge(
@@ -97,172 +87,127 @@ internal class Dijkstra(
         snapEnd: SnappedOn
     ): Boolean =
         when (snapEnd) {
-            is SnappedOnEdge -> (snapStart.near1 == snapEnd.near1 && snapStart.near2 == snapEnd.near2) ||
-                    (snapStart.near1 == snapEnd.near2 && snapStart.near2 == snapEnd.near1)
+            is SnappedOnEdge -> snapStart onSameEdgeWith snapEnd
             is SnappedOnNode -> snapStart.near1 == snapEnd.node || snapStart.near2 == snapEnd.node
         }
 
-    private fun addsToQueueConnectionOnSameEdge(
-        startSnap: SnappedOn,
-        endSnap: SnappedOn,
-    ) {
-        val costToEndOnSameEdge = haversine(startSnap.point, endSnap.point)
+    private fun addsToQueueConnectionOnSameEdge() {
+        val costToEndOnSameEdge = haversine(start.point, end.point)
 
-        val startNode = startSnap.toNode()
-        val endNode = endSnap.toNode()
+        val startNode = start.toVertex(startVertex)
+        val endNode = end.toVertex(endVertex)
 
-        costs[endNode] = costToEndOnSameEdge
-        queue.add(endNode to costToEndOnSameEdge)
-        previous[endNode] = startNode
+        state.update(endNode, costToEndOnSameEdge, startNode)
+        enqueue(endNode, costToEndOnSameEdge)
     }
 
     private fun initQueueWithEndsOfStartingEdge(start: SnappedOnEdge) {
-        val costToStart1 = haversine(start.point, start.near1.point)
-        val costToStart2 = haversine(start.point, start.near2.point)
-        val startNode = start.toNode()
+        val costToStart1 = haversine(start.point, graph.point(start.near1))
+        val costToStart2 = haversine(start.point, graph.point(start.near2))
 
-        costs = mutableMapOf(
-            start.near1 to costToStart1,
-            start.near2 to costToStart2,
-        )
+        state.update(start.near1, costToStart1, startVertex)
+        state.update(start.near2, costToStart2, startVertex)
 
-        queue.add(start.near1 to costToStart1)
-        queue.add(start.near2 to costToStart2)
-        previous[start.near1] = startNode
-        previous[start.near2] = startNode
+        enqueue(start.near1, costToStart1)
+        enqueue(start.near2, costToStart2)
     }
 
+    // ending edges lead from ends of snapped edge to virtual end vertex
     private fun runAlgorithm(
-        end: Node,
-        endingEdge1: EndingEdge? = null,
-        endingEdge2: EndingEdge? = null,
-    ): List<Node> {
-        if (technicalAllowed) {
-            withTechnical(end, endingEdge1, endingEdge2)
-        } else {
-            withoutTechnical(end, endingEdge1, endingEdge2)
-        }
-        return getPath(end)
-    }
-
-    private fun withTechnical(
-        end: Node,
-        endingEdge1: EndingEdge?,
-        endingEdge2: EndingEdge?,
-    ) {
-        while (visited.size != vertices.size) {
+        end: Int,
+        endingFrom1: Int = NO_NODE,
+        endingWeight1: Double = 0.0,
+        endingFrom2: Int = NO_NODE,
+        endingWeight2: Double = 0.0,
+    ): List<SnappedOn> {
+        while (!queue.isEmpty()) {
             // closest vertex that has not yet been visited
-            if (queue.isEmpty()) return
-            val (v: Node, distanceToV) = queue.remove()
-
-            v.edges.forEach { neighbor ->
-                runForEdgeWithTechnical(v, neighbor, distanceToV)
-            }
-            endingEdge1?.run {
-                if (from == v) {
-                    runForEdgeWithTechnical(v, edge, distanceToV)
-                }
-            }
-            endingEdge2?.run {
-                if (from == v) {
-                    runForEdgeWithTechnical(v, edge, distanceToV)
+            val v = queue.poll()
+            val distanceToV = state.cost(v)
+
+            if (v < graph.size) {
+                for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+                    if (technicalAllowed) {
+                        runForEdgeWithTechnical(v, edge, distanceToV)
+                    } else {
+                        runForEdgeWithoutTechnical(v, edge, distanceToV)
+                    }
                 }
             }
-
-            if (v == end) break
-
-            visited.add(v)
-        }
-    }
-
-    private fun withoutTechnical(
-        end: Node,
-        endingEdge1: EndingEdge?,
-        endingEdge2: EndingEdge?,
-    ) {
-        while (visited.size != vertices.size) {
-            // closest vertex that has not yet been visited
-            if (queue.isEmpty()) return
-            val (v: Node, distanceToV) = queue.remove()
-
-            v.edges.forEach { neighbor ->
-                runForEdgeWithoutTechnical(v, neighbor, distanceToV)
-            }
-            endingEdge1?.run {
-                if (from == v) {
-                    runForEdgeWithTechnical(v, edge, distanceToV)
-                }
+            if (endingFrom1 == v) {
+                relax(v, endVertex, endingWeight1, distanceToV)
             }
-            endingEdge2?.run {
-                if (from == v) {
-                    runForEdgeWithTechnical(v, edge, distanceToV)
-                }
+            if (endingFrom2 == v) {
+                relax(v, endVertex, endingWeight2, distanceToV)
             }
 
             if (v == end) break
 
-            visited.add(v)
+            state.settle(v)
         }
+        return getPath(end)
     }
 
     private fun runForEdgeWithTechnical(
-        v: Node,
-        neighbor: Edge,
+        v: Int,
+        edge: Int,
         distanceToV: Double,
     ) {
-        if (neighbor.node !in visited) {
-            val newCost = distanceToV + neighbor.weight
-
-            if (newCost < (costs[neighbor.node] ?: Double.MAX_VALUE)) {
-                costs[neighbor.node] = newCost
-                previous[neighbor.node] = v
-                queue.add(neighbor.node to newCost)
-            }
-        }
+        relax(v, graph.edgeTargets[edge], graph.edgeWeights[edge], distanceToV)
     }
 
     private fun runForEdgeWithoutTechnical(
-        v: Node,
-        neighbor: Edge,
+        v: Int,
+        edge: Int,
         distanceToV: Double,
     ) {
-        if (neighbor.node !in visited && (!outsideTechnical || !neighbor.technical)) {
-            if (!neighbor.technical) {
+        val technical = graph.isTechnical(edge)
+        if (!state.isSettled(graph.edgeTargets[edge]) && (!outsideTechnical || !technical)) {
+            if (!technical) {
                 outsideTechnical = true
             }
 
-            val newCost = distanceToV + neighbor.weight
+            relax(v, graph.edgeTargets[edge], graph.edgeWeights[edge], distanceToV)
+        }
+    }
+
+    private fun relax(
+        v: Int,
+        neighbor: Int,
+        weight: Double,
+        distanceToV: Double,
+    ) {
+        if (!state.isSettled(neighbor)) {
+            val newCost = distanceToV + weight
 
-            if (newCost < (costs[neighbor.node] ?: Double.MAX_VALUE)) {
-                costs[neighbor.node] = newCost
-                previous[neighbor.node] = v
-                queue.add(neighbor.node to newCost)
+            if (newCost < state.cost(neighbor)) {
+                state.update(neighbor, newCost, v)
+                enqueue(neighbor, newCost)
             }
         }
     }
 
-    private fun getPath(
-        end: Node,
-    ): List<Node> {
-        var current = end
-        val result = mutableListOf(end)
-        while (true) {
-            val path = previous[current] ?: return result.reversed()
-            if (path === current) return result.reversed()
-            result.add(path)
-            current = path
-        }
+    private fun enqueue(v: Int, cost: Double) {
+        queue.push(v, cost + estimate(v))
     }
 
-    private companion object {
+    // haversine is never longer than any road, so it keeps A* optimal
+    private fun estimate(v: Int): Double =
+        if (goalDirected && v < graph.size) {
+            haversine(graph.xs[v], graph.ys[v], target.x, target.y)
+        } else {
+            0.0
+        }
 
-        val comparator = Comparator<Pair<Node, Double>> { o1, o2 ->
-            o1.second.compareTo(o2.second)
+    private fun getPath(
+        end: Int,
+    ): List<SnappedOn> {
+        var current = end
+        val result = mutableListOf(end)
+        while (state.previous(current) != NO_NODE) {
+            current = state.previous(current)
+            result.add(current)
         }
+        return result.asReversed().map { it.toSnappedOn() }
     }
-
-    private class EndingEdge(
-        val from: Node,
-        val edge: Edge,
-    )
 }
@@ -0,0 +1,209 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.geometry.pow2
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.roundToInt
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+internal class EdgeGrid(
+    private val graph: RoadGraph,
+    technicalAllowed: Boolean,
+) {
+
+    val edgeFrom: IntArray
+    val edgeTo: IntArray
+
+    private val minX: Double
+    private val minY: Double
+    private val maxX: Double
+    private val maxY: Double
+    private val columns: Int
+    private val rows: Int
+    private val cellWidth: Double
+    private val cellHeight: Double
+    private val cellOffsets: IntArray
+    private val cellEdges: IntArray
+
+    init {
+        val from = mutableListOf<Int>()
+        val to = mutableListOf<Int>()
+        graph.forAllEdges { p1, p2, technical ->
+            if (technicalAllowed || !technical) {
+                from.add(p1)
+                to.add(p2)
+            }
+        }
+        edgeFrom = from.toIntArray()
+        edgeTo = to.toIntArray()
+
+        var minX = Double.MAX_VALUE
+        var minY = Double.MAX_VALUE
+        var maxX = -Double.MAX_VALUE
+        var maxY = -Double.MAX_VALUE
+        for (edge in edgeFrom.indices) {
+            minX = min(minX, min(graph.xs[edgeFrom[edge]], graph.xs[edgeTo[edge]]))
+            minY = min(minY, min(graph.ys[edgeFrom[edge]], graph.ys[edgeTo[edge]]))
+            maxX = max(maxX, max(graph.xs[edgeFrom[edge]], graph.xs[edgeTo[edge]]))
+            maxY = max(maxY, max(graph.ys[edgeFrom[edge]], graph.ys[edgeTo[edge]]))
+        }
+        this.minX = minX
+        this.minY = minY
+        this.maxX = maxX
+        this.maxY = maxY
+
+        val width = maxX - minX
+        val height = maxY - minY
+        val cells = max(1, edgeFrom.size)
+        columns = when {
+            edgeFrom.isEmpty() || width <= 0 -> 1
+            height <= 0 -> cells
+            else -> sqrt(cells * width / height).roundToInt().coerceIn(1, cells)
+        }
+        rows = if (height > 0) max(1, cells / columns) else 1
+        cellWidth = if (width > 0) width / columns else 1.0
+        cellHeight = if (height > 0) height / rows else 1.0
+
+        cellOffsets = IntArray(columns * rows + 1)
+        forEachCellOfEdge { cell -> cellOffsets[cell + 1]++ }
+        for (cell in 0 until columns * rows) {
+            cellOffsets[cell + 1] += cellOffsets[cell]
+        }
+        cellEdges = IntArray(cellOffsets.last())
+        val filled = cellOffsets.copyOf()
+        forEachCellOfEdge { cell, edge -> cellEdges[filled[cell]++] = edge }
+    }
+
+    fun isEmpty(): Boolean = edgeFrom.isEmpty()
+
+    fun findNearest(source: PointD): Int {
+        if (isEmpty()) return NO_EDGE
+
+        val column = cellOf(source.x, minX, cellWidth)
+        val row = cellOf(source.y, minY, cellHeight)
+        val firstRing = max(max(-column, column - columns + 1), max(-row, row - rows + 1)).coerceAtLeast(0)
+        val lastRing = max(max(column, columns - 1 - column), max(row, rows - 1 - row))
+
+        var nearest = NO_EDGE
+        var shortest = Double.MAX_VALUE
+        for (ring in firstRing..lastRing) {
+            if (ring > 1 && lowerBoundOfDistance(source, ring - 1) > shortest) break
+
+            forEachCellInRing(column, row, ring) { cell ->
+                for (i in cellOffsets[cell] until cellOffsets[cell + 1]) {
+                    val edge = cellEdges[i]
+                    val distance = distanceToEdge(source, edge)
+                    if (distance < shortest || (distance == shortest && edge < nearest)) {
+                        shortest = distance
+                        nearest = edge
+                    }
+                }
+            }
+        }
+        return nearest
+    }
+
+    fun getSnappedToEdge(source: PointD, edge: Int): PointD {
+        val p1x = graph.xs[edgeFrom[edge]]
+        val p1y = graph.ys[edgeFrom[edge]]
+        val p2x = graph.xs[edgeTo[edge]]
+        val p2y = graph.ys[edgeTo[edge]]
+        val u = projection(source, p1x, p1y, p2x, p2y)
+
+        return when {
+            u < 0 -> PointD(p1x, p1y)
+            u > 1 -> PointD(p2x, p2y)
+            else -> PointD(
+                p1x + u * (p2x - p1x),
+                p1y + u * (p2y - p1y),
+            )
+        }
+    }
+
+    private fun distanceToEdge(source: PointD, edge: Int): Double {
+        val p1x = graph.xs[edgeFrom[edge]]
+        val p1y = graph.ys[edgeFrom[edge]]
+        val p2x = graph.xs[edgeTo[edge]]
+        val p2y = graph.ys[edgeTo[edge]]
+        val u = projection(source, p1x, p1y, p2x, p2y)
+
+        return when {
+            u < 0 -> haversine(source.x, source.y, p1x, p1y)
+            u > 1 -> haversine(source.x, source.y, p2x, p2y)
+            else -> haversine(source.x, source.y, p1x + u * (p2x - p1x), p1y + u * (p2y - p1y))
+        }
+    }
+
+    private fun projection(source: PointD, p1x: Double, p1y: Double, p2x: Double, p2y: Double): Double =
+        ((source.x - p1x) * (p2x - p1x) + (source.y - p1y) * (p2y - p1y)) /
+                ((p2x - p1x).pow2 + (p2y - p1y).pow2)
+
+    // every edge in cell at given ring is at least (ring - 1) full cells away in one of axes
+    private fun lowerBoundOfDistance(source: PointD, cellsAway: Int): Double {
+        val maxLatitude = max(max(abs(minY), abs(maxY)), abs(source.y)).coerceAtMost(90.0)
+        val minLongitudeScale = cos(Math.toRadians(maxLatitude))
+        val byLatitude = EARTH_RADIUS * Math.toRadians(cellsAway * cellHeight)
+        val byLongitude = 2 * EARTH_RADIUS * minLongitudeScale *
+                sin(Math.toRadians((cellsAway * cellWidth).coerceAtMost(180.0)) / 2)
+        return min(byLatitude, byLongitude) * PRECISION_MARGIN
+    }
+
+    private inline fun forEachCellInRing(column: Int, row: Int, ring: Int, block: (cell: Int) -> Unit) {
+        val top = row - ring
+        val bottom = row + ring
+        val left = column - ring
+        val right = column + ring
+
+        for (c in max(left, 0)..min(right, columns - 1)) {
+            if (top in 0 until rows) block(top * columns + c)
+            if (ring > 0 && bottom in 0 until rows) block(bottom * columns + c)
+        }
+        for (r in max(top + 1, 0)..min(bottom - 1, rows - 1)) {
+            if (left in 0 until columns) block(r * columns + left)
+            if (ring > 0 && right in 0 until columns) block(r * columns + right)
+        }
+    }
+
+    private inline fun forEachCellOfEdge(block: (cell: Int, edge: Int) -> Unit) {
+        for (edge in edgeFrom.indices) {
+            val x1 = graph.xs[edgeFrom[edge]]
+            val y1 = graph.ys[edgeFrom[edge]]
+            val x2 = graph.xs[edgeTo[edge]]
+            val y2 = graph.ys[edgeTo[edge]]
+            val fromColumn = cellOf(min(x1, x2), minX, cellWidth).coerceIn(0, columns - 1)
+            val toColumn = cellOf(max(x1, x2), minX, cellWidth).coerceIn(0, columns - 1)
+            val fromRow = cellOf(min(y1, y2), minY, cellHeight).coerceIn(0, rows - 1)
+            val toRow = cellOf(max(y1, y2), minY, cellHeight).coerceIn(0, rows - 1)
+            for (row in fromRow..toRow) {
+                for (column in fromColumn..toColumn) {
+                    block(row * columns + column, edge)
+                }
+            }
+        }
+    }
+
+    private inline fun forEachCellOfEdge(block: (cell: Int) -> Unit) {
+        forEachCellOfEdge { cell, _ -> block(cell) }
+    }
+
+    private fun cellOf(value: Double, min: Double, cellSize: Double): Int =
+        floor((value - min) / cellSize)
+            .coerceIn(-MAX_CELLS_AWAY, MAX_CELLS_AWAY)
+            .toInt()
+
+    companion object {
+
+        const val NO_EDGE = -1
+
+        private const val EARTH_RADIUS = 6372800.0
+        private const val PRECISION_MARGIN = 0.999
+        private const val MAX_CELLS_AWAY = 1_000_000.0
+    }
+}
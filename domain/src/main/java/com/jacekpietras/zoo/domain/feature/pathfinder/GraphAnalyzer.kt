@@ -2,35 +2,57 @@ package com.jacekpietras.zoo.domain.feature.pathfinder
 
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SearchMode
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.ShortestPaths
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 
-internal class GraphAnalyzer {
+internal class GraphAnalyzer(
+    private val searchMode: SearchMode = SearchMode.A_STAR,
+) {
 
-    private var nodes: Set<Node>? = null
-    private val snapper = PointSnapper()
+    // everything derived from graph is built before it is published, so readers on other threads see it complete
+    @Volatile
+    private var snapshot: Snapshot? = null
+    private var hierarchiesBuilding: Job? = null
 
     fun initialize(roads: List<PathEntity>, technical: List<PathEntity>) {
-        nodes = NodeSetFactory(roads, technical).create()
+        val snapshot = Snapshot(RoadGraph.from(NodeSetFactory(roads, technical).create()), searchMode)
+        this.snapshot = snapshot
+        // hierarchies take longer to build than first routes can wait, until then junction search answers
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHIES) {
+            hierarchiesBuilding = CoroutineScope(Dispatchers.Default).launch { snapshot.buildHierarchies() }
+        }
     }
 
-    fun isInitialized(): Boolean = nodes != null
+    internal suspend fun waitForHierarchies() {
+        hierarchiesBuilding?.join()
+    }
 
-    suspend fun getTerminalPoints(): List<PointD> =
-        waitForNodes()
-            .asSequence()
-            .filter { it.edges.size > 2 }
-            .map(Node::point)
-            .toList()
+    fun isInitialized(): Boolean = snapshot != null
+
+    suspend fun getTerminalPoints(): List<PointD> {
+        val graph = waitForGraph()
+        return (0 until graph.size)
+            .filter { graph.degree(it) > 2 }
+            .map(graph::point)
+    }
 
     suspend fun getSnappedPointOnEdge(
         point: PointD,
         technicalAllowed: Boolean,
     ): SnappedOnEdge =
-        snapper.getSnappedOnEdge(
-            waitForNodes(),
+        waitForSnapshot().snapper.getSnappedOnEdge(
             point,
             technicalAllowed
         )
@@ -39,53 +61,320 @@ internal class GraphAnalyzer {
         endPoint: SnappedOnEdge,
         startPoint: SnappedOnEdge,
         technicalAllowed: Boolean = false,
-    ): List<Node> =
-        getShortestPathJob(
+    ): List<SnappedOn> =
+        waitForSnapshot().findPath(
             start = startPoint,
             end = endPoint,
             technicalAllowed = technicalAllowed,
         )
 
+    // pairs are start to end, results are in the same order
+    suspend fun getShortestPathsWithContext(
+        pairs: List<Pair<SnappedOnEdge, SnappedOnEdge>>,
+        technicalAllowed: Boolean = false,
+    ): List<List<SnappedOn>> {
+        val snapshot = waitForSnapshot()
+        return pairs.mapConcurrently { (start, end) ->
+            snapshot.findPath(
+                start = start,
+                end = end,
+                technicalAllowed = technicalAllowed,
+            )
+        }
+    }
+
     internal suspend fun getShortestPath(
         endPoint: PointD,
         startPoint: PointD?,
         technicalAllowedAtStart: Boolean = true,
         technicalAllowedAtEnd: Boolean = false,
     ): List<PointD> {
-        val nodes = waitForNodes()
-
         if (startPoint == null) return listOf(endPoint)
-        if (nodes.isEmpty()) return listOf(endPoint)
 
-        val snapStart = snapper.getSnappedOn(nodes, startPoint, technicalAllowed = technicalAllowedAtStart)
-        val snapEnd = snapper.getSnappedOn(nodes, endPoint, technicalAllowed = technicalAllowedAtEnd)
+        return waitForSnapshot().findPath(
+            start = startPoint,
+            end = endPoint,
+            technicalAllowedAtStart = technicalAllowedAtStart,
+            technicalAllowedAtEnd = technicalAllowedAtEnd,
+        )
+    }
+
+    // pairs are start to end, results are in the same order
+    internal suspend fun getShortestPaths(
+        pairs: List<Pair<PointD, PointD>>,
+        technicalAllowedAtStart: Boolean = true,
+        technicalAllowedAtEnd: Boolean = false,
+    ): List<List<PointD>> {
+        val snapshot = waitForSnapshot()
+        return pairs.mapConcurrently { (start, end) ->
+            snapshot.findPath(
+                start = start,
+                end = end,
+                technicalAllowedAtStart = technicalAllowedAtStart,
+                technicalAllowedAtEnd = technicalAllowedAtEnd,
+            )
+        }
+    }
 
-        if (snapStart == snapEnd) return listOf(snapEnd.point)
+    internal suspend fun getShortestPaths(
+        startPoint: PointD,
+        endPoints: List<PointD>,
+        technicalAllowedAtStart: Boolean = true,
+        technicalAllowedAtEnd: Boolean = false,
+    ): ShortestPaths =
+        searchOneToMany(
+            from = startPoint,
+            to = endPoints,
+            technicalAllowedAtFrom = technicalAllowedAtStart,
+            technicalAllowedAtTo = technicalAllowedAtEnd,
+            technicalAllowed = technicalAllowedAtEnd,
+            reversed = false,
+        )
 
-        return getShortestPathJob(
-            start = snapStart,
-            end = snapEnd,
+    // paths from every start into one end, every road has edges both ways,
+    // so search from end over reversed edges is the same search, only paths are turned around
+    internal suspend fun getShortestPathsTo(
+        endPoint: PointD,
+        startPoints: List<PointD>,
+        technicalAllowedAtStart: Boolean = true,
+        technicalAllowedAtEnd: Boolean = false,
+    ): ShortestPaths =
+        searchOneToMany(
+            from = endPoint,
+            to = startPoints,
+            technicalAllowedAtFrom = technicalAllowedAtEnd,
+            technicalAllowedAtTo = technicalAllowedAtStart,
             technicalAllowed = technicalAllowedAtEnd,
-        ).map(Node::point)
-    }
+            reversed = true,
+        )
 
-    private suspend fun getShortestPathJob(
-        start: SnappedOn,
-        end: SnappedOn,
-        technicalAllowed: Boolean = false,
-    ): List<Node> =
-        Dijkstra(
-            vertices = waitForNodes(),
+    private suspend fun searchOneToMany(
+        from: PointD,
+        to: List<PointD>,
+        technicalAllowedAtFrom: Boolean,
+        technicalAllowedAtTo: Boolean,
+        technicalAllowed: Boolean,
+        reversed: Boolean,
+    ): ShortestPaths {
+        val snapshot = waitForSnapshot()
+        val graph = snapshot.graph
+
+        if (graph.isEmpty()) {
+            return ShortestPaths(DoubleArray(to.size)) { i -> listOf(if (reversed) from else to[i]) }
+        }
+
+        val snapper = snapshot.snapper
+        val snapFrom = snapper.getSnappedOn(from, technicalAllowed = technicalAllowedAtFrom)
+        val snapTo = to.map { snapper.getSnappedOn(it, technicalAllowed = technicalAllowedAtTo) }
+
+        val dijkstra = OneToManyDijkstra(
+            graph = graph,
+            ends = snapTo,
             technicalAllowed = technicalAllowed,
-        ).calculate(
-            start = start,
-            end = end,
+            state = snapshot.oneToManyState(snapTo.size),
         )
+        val costs = dijkstra.calculate(snapFrom)
 
-    internal suspend fun waitForNodes(): Set<Node> {
-        while (nodes == null) {
+        // not reachable ends are returned as single point path, same as in single search
+        val distances = DoubleArray(snapTo.size) { i ->
+            if (snapFrom == snapTo[i] || costs[i] == Double.MAX_VALUE) 0.0 else costs[i]
+        }
+        // state belongs to thread and next search on it overwrites it, so only links are copied out of it
+        val path = dijkstra.copyPaths()
+        return ShortestPaths(distances) { i ->
+            when {
+                snapFrom == snapTo[i] -> listOf(snapTo[i].point)
+                !reversed -> path(i).map(SnappedOn::point)
+                costs[i] == Double.MAX_VALUE -> listOf(snapFrom.point)
+                else -> path(i).map(SnappedOn::point).asReversed()
+            }
+        }
+    }
+
+    // one chunk per core, each search takes workspace of thread it runs on
+    private suspend fun <T, R> List<T>.mapConcurrently(block: (T) -> R): List<R> {
+        if (size <= 1) return map(block)
+
+        val chunkSize = (size + WORKERS - 1) / WORKERS
+        return withContext(Dispatchers.Default) {
+            chunked(chunkSize)
+                .map { chunk -> async { chunk.map(block) } }
+                .awaitAll()
+                .flatten()
+        }
+    }
+
+    internal suspend fun waitForGraph(): RoadGraph =
+        waitForSnapshot().graph
+
+    private suspend fun waitForSnapshot(): Snapshot {
+        while (snapshot == null) {
             delay(100)
         }
-        return checkNotNull(nodes)
+        return checkNotNull(snapshot)
+    }
+
+    private class Snapshot(
+        val graph: RoadGraph,
+        private val searchMode: SearchMode,
+    ) {
+
+        val snapper = PointSnapper(graph)
+        private val workspaces = SearchWorkspacePool(graph.size)
+        private val roadChains = if (searchMode.usesChains()) {
+            ChainGraph(graph, technicalAllowed = false)
+        } else {
+            null
+        }
+        private val fullChains = if (searchMode.usesChains()) {
+            ChainGraph(graph, technicalAllowed = true)
+        } else {
+            null
+        }
+
+        private val touchingTechnical = BooleanArray(graph.size) { v ->
+            (graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]).any(graph::isTechnical)
+        }
+
+        // published after snapshot, each one when it is built
+        @Volatile
+        private var roadHierarchy: ContractionHierarchy? = null
+        @Volatile
+        private var fullHierarchy: ContractionHierarchy? = null
+
+        fun buildHierarchies() {
+            roadHierarchy = ContractionHierarchy.build(graph, technicalAllowed = false)
+            fullHierarchy = ContractionHierarchy.build(graph, technicalAllowed = true)
+        }
+
+        // snapped ends inside of edges get vertices after real nodes and start
+        fun oneToManyState(ends: Int): SearchState =
+            workspaces.get().oneToMany(graph.size + 1 + ends)
+
+        fun findPath(
+            start: PointD,
+            end: PointD,
+            technicalAllowedAtStart: Boolean,
+            technicalAllowedAtEnd: Boolean,
+        ): List<PointD> {
+            if (graph.isEmpty()) return listOf(end)
+
+            val snapStart = snapper.getSnappedOn(start, technicalAllowed = technicalAllowedAtStart)
+            val snapEnd = snapper.getSnappedOn(end, technicalAllowed = technicalAllowedAtEnd)
+
+            if (snapStart == snapEnd) return listOf(snapEnd.point)
+
+            return findPath(
+                start = snapStart,
+                end = snapEnd,
+                technicalAllowed = technicalAllowedAtEnd,
+            ).map(SnappedOn::point)
+        }
+
+        fun findPath(
+            start: SnappedOn,
+            end: SnappedOn,
+            technicalAllowed: Boolean = false,
+        ): List<SnappedOn> {
+            val workspace = workspaces.get()
+            return when (searchMode) {
+                SearchMode.DIJKSTRA -> Dijkstra(
+                    graph = graph,
+                    technicalAllowed = technicalAllowed,
+                    state = workspace.forward,
+                ).calculate(
+                    start = start,
+                    end = end,
+                )
+                SearchMode.A_STAR -> Dijkstra(
+                    graph = graph,
+                    technicalAllowed = technicalAllowed,
+                    goalDirected = technicalAllowed || !start.touchesTechnical(),
+                    state = workspace.forward,
+                ).calculate(
+                    start = start,
+                    end = end,
+                )
+                SearchMode.JUNCTION_A_STAR -> findPathOnJunctions(start, end, technicalAllowed, workspace)
+                SearchMode.BIDIRECTIONAL -> if (technicalAllowed || !start.touchesTechnical()) {
+                    BidirectionalDijkstra(
+                        graph = graph,
+                        technicalAllowed = technicalAllowed,
+                        workspace = workspace,
+                    ).calculate(
+                        start = start,
+                        end = end,
+                    )
+                } else {
+                    Dijkstra(
+                        graph = graph,
+                        technicalAllowed = technicalAllowed,
+                        state = workspace.forward,
+                    ).calculate(
+                        start = start,
+                        end = end,
+                    )
+                }
+                SearchMode.CONTRACTION_HIERARCHIES -> {
+                    val hierarchy = if (technicalAllowed) fullHierarchy else roadHierarchy
+                    if (hierarchy != null && hierarchy.canStartFrom(start)) {
+                        ContractionHierarchyDijkstra(
+                            hierarchy = hierarchy,
+                            workspace = workspace,
+                        ).calculate(
+                            start = start,
+                            end = end,
+                        )
+                    } else {
+                        findPathOnJunctions(start, end, technicalAllowed, workspace)
+                    }
+                }
+            }
+        }
+
+        private fun findPathOnJunctions(
+            start: SnappedOn,
+            end: SnappedOn,
+            technicalAllowed: Boolean,
+            workspace: SearchWorkspace,
+        ): List<SnappedOn> {
+            val chainDijkstra = ChainDijkstra(
+                chains = checkNotNull(if (technicalAllowed) fullChains else roadChains),
+                goalDirected = true,
+                state = workspace.forward,
+            )
+            return if (chainDijkstra.canCalculate(start, end)) {
+                chainDijkstra.calculate(
+                    start = start,
+                    end = end,
+                )
+            } else {
+                Dijkstra(
+                    graph = graph,
+                    technicalAllowed = technicalAllowed,
+                    goalDirected = technicalAllowed || !start.touchesTechnical(),
+                    state = workspace.forward,
+                ).calculate(
+                    start = start,
+                    end = end,
+                )
+            }
+        }
+
+        private fun SearchMode.usesChains(): Boolean =
+            this == SearchMode.JUNCTION_A_STAR || this == SearchMode.CONTRACTION_HIERARCHIES
+
+        // without technical roads, search may still leave starting point by technical road,
+        // where it stops being allowed depends on order of visiting, only plain search defines it
+        private fun SnappedOn.touchesTechnical(): Boolean =
+            when (this) {
+                is SnappedOnEdge -> touchingTechnical[near1] || touchingTechnical[near2]
+                is SnappedOnNode -> touchingTechnical[node]
+            }
+    }
+
+    private companion object {
+
+        val WORKERS = Runtime.getRuntime().availableProcessors()
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import com.jacekpietras.geometry.PointD
 import com.jacekpietras.geometry.haversine
 import com.jacekpietras.geometry.pow2
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
 import kotlin.math.sqrt
 
 internal inline fun Iterable<Node>.forAllEdges(block: (p1: Node, p2: Node, technical: Boolean) -> Unit) {
@@ -22,6 +23,22 @@ internal fun Iterable<Node>.allEdges(): List<Triple<Node, Node, Boolean>> {
     return result
 }
 
+internal inline fun RoadGraph.forAllEdges(block: (from: Int, to: Int, technical: Boolean) -> Unit) {
+    for (node in 0 until size) {
+        for (edge in edgeOffsets[node] until edgeOffsets[node + 1]) {
+            if (!isBackward(edge)) {
+                block(node, edgeTargets[edge], isTechnical(edge))
+            }
+        }
+    }
+}
+
+internal fun RoadGraph.allEdges(): List<Triple<Int, Int, Boolean>> {
+    val result = mutableListOf<Triple<Int, Int, Boolean>>()
+    forAllEdges { node, node2, technical -> result.add(Triple(node, node2, technical)) }
+    return result
+}
+
 internal fun cartesian(a: Node, b: Node): Double =
     sqrt((a.x - b.x).pow2 + (a.y - b.y).pow2)
 
@@ -0,0 +1,92 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+internal class IndexedHeap(capacity: Int) {
+
+    private val heap = IntArray(capacity)
+    private val keys = DoubleArray(capacity)
+    private val positions = IntArray(capacity) { ABSENT }
+
+    var size = 0
+        private set
+
+    fun isEmpty(): Boolean = size == 0
+
+    fun peek(): Int = heap[0]
+
+    fun peekKey(): Double = keys[heap[0]]
+
+    fun contains(v: Int): Boolean = positions[v] != ABSENT
+
+    fun key(v: Int): Double = keys[v]
+
+    // inserts vertex or lowers its key, higher keys are ignored
+    fun push(v: Int, key: Double) {
+        val position = positions[v]
+        if (position == ABSENT) {
+            keys[v] = key
+            heap[size] = v
+            positions[v] = size
+            size++
+            siftUp(size - 1)
+        } else if (key < keys[v]) {
+            keys[v] = key
+            siftUp(position)
+        }
+    }
+
+    fun poll(): Int {
+        val top = heap[0]
+        size--
+        positions[top] = ABSENT
+        if (size > 0) {
+            move(heap[size], 0)
+            siftDown(0)
+        }
+        return top
+    }
+
+    fun clear() {
+        for (i in 0 until size) {
+            positions[heap[i]] = ABSENT
+        }
+        size = 0
+    }
+
+    private fun siftUp(from: Int) {
+        val v = heap[from]
+        val key = keys[v]
+        var i = from
+        while (i > 0) {
+            val parent = (i - 1) ushr 1
+            if (keys[heap[parent]] <= key) break
+            move(heap[parent], i)
+            i = parent
+        }
+        move(v, i)
+    }
+
+    private fun siftDown(from: Int) {
+        val v = heap[from]
+        val key = keys[v]
+        var i = from
+        while (true) {
+            var child = 2 * i + 1
+            if (child >= size) break
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) child++
+            if (key <= keys[heap[child]]) break
+            move(heap[child], i)
+            i = child
+        }
+        move(v, i)
+    }
+
+    private fun move(v: Int, position: Int) {
+        heap[position] = v
+        positions[v] = position
+    }
+
+    private companion object {
+
+        const val ABSENT = -1
+    }
+}
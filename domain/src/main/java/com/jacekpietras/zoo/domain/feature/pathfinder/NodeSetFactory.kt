@@ -4,6 +4,11 @@ import com.jacekpietras.geometry.PointD
 import com.jacekpietras.geometry.haversine
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
 
 internal class NodeSetFactory(
     roads: List<MapItemEntity.PathEntity>,
@@ -11,6 +16,7 @@ internal class NodeSetFactory(
 ) {
 
     private val nodes = mutableSetOf<Node>()
+    private val nodesByPoint = mutableMapOf<PointD, Node>()
 
     init {
         nodes.clear()
@@ -42,55 +48,95 @@ internal class NodeSetFactory(
     }
 
     private fun checkNodesOnEdges() {
-        nodes.forEach { node ->
-            checkNodesOnEdges(node)
-        }
-    }
+        if (nodes.isEmpty()) return
+        val grid = NodeGrid(nodes)
 
-    private fun checkNodesOnEdges(first: Node) {
-        nodes.forAllEdges { secnd, third, technical ->
-            if (secnd != first && third != first && isOnEdge(first, secnd, third)) {
-                if (first.edges.none { edge -> edge.node == secnd }) {
-                    first.connect(secnd, technical, backward = false)
-                    secnd.connect(first, technical, backward = true)
-                }
-                if (first.edges.none { edge -> edge.node == third }) {
-                    first.connect(third, technical, backward = false)
-                    third.connect(first, technical, backward = true)
-                }
+        nodes.allEdges().forEach { (secnd, third, technical) ->
+            val onEdge = grid.findOnEdge(secnd, third)
+            if (onEdge.isNotEmpty()) {
                 secnd.disconnect(third)
                 third.disconnect(secnd)
 
-                checkNodesOnEdges(first)
-                return
+                (listOf(secnd) + onEdge.sortedBy { cartesian(secnd, it) } + third)
+                    .zipWithNext { prev, next ->
+                        if (next.edges.none { edge -> edge.node == prev }) {
+                            next.connect(prev, technical, backward = false)
+                            prev.connect(next, technical, backward = true)
+                        }
+                    }
             }
         }
     }
 
-    private fun addToGraph(point: PointD): Node {
+    private fun addToGraph(point: PointD): Node =
+        nodesByPoint.getOrPut(point) {
+            Node(point).also(nodes::add)
+        }
+
+    private fun calcDistances() {
         nodes.forEach { node ->
-            if (node.point == point) {
-                return node
+            node.edges.forEach { edge ->
+                edge.weight = haversine(node.x, node.y, edge.x, edge.y)
             }
         }
-        val newNode = Node(point)
-        nodes.add(newNode)
-        return newNode
     }
 
-    private fun notConnected(p1: Node, p2: Node): Boolean {
-        p1.edges.forEach { if (it.node.point == p2.point) return false }
-        return true
-    }
+    private class NodeGrid(nodes: Collection<Node>) {
+
+        private val minX = nodes.minOf { it.x }
+        private val minY = nodes.minOf { it.y }
+        private val columns: Int
+        private val rows: Int
+        private val cellWidth: Double
+        private val cellHeight: Double
+        private val cells: Array<MutableList<Node>>
+
+        init {
+            val width = nodes.maxOf { it.x } - minX
+            val height = nodes.maxOf { it.y } - minY
+            columns = when {
+                width <= 0 -> 1
+                height <= 0 -> nodes.size
+                else -> sqrt(nodes.size * width / height).roundToInt().coerceIn(1, nodes.size)
+            }
+            rows = if (height > 0) max(1, nodes.size / columns) else 1
+            cellWidth = if (width > 0) width / columns else 1.0
+            cellHeight = if (height > 0) height / rows else 1.0
+            cells = Array(columns * rows) { mutableListOf() }
+
+            nodes.forEach { node ->
+                cells[row(node.y) * columns + column(node.x)].add(node)
+            }
+        }
 
-    private fun isOnEdge(point: Node, edge1: Node, edge2: Node): Boolean =
-        cartesian(edge1, point) + cartesian(edge2, point) - cartesian(edge1, edge2) < 0.000000001
+        fun findOnEdge(edge1: Node, edge2: Node): List<Node> {
+            val margin = sqrt(TOLERANCE * (2 * cartesian(edge1, edge2) + TOLERANCE)) / 2
+            val result = mutableListOf<Node>()
 
-    private fun calcDistances() {
-        nodes.forEach { node ->
-            node.edges.forEach { edge ->
-                edge.weight = haversine(node.x, node.y, edge.x, edge.y)
+            for (row in row(min(edge1.y, edge2.y) - margin)..row(max(edge1.y, edge2.y) + margin)) {
+                for (column in column(min(edge1.x, edge2.x) - margin)..column(max(edge1.x, edge2.x) + margin)) {
+                    cells[row * columns + column].forEach { point ->
+                        if (point != edge1 && point != edge2 && isOnEdge(point, edge1, edge2)) {
+                            result.add(point)
+                        }
+                    }
+                }
             }
+            return result
         }
+
+        private fun column(x: Double): Int =
+            floor((x - minX) / cellWidth).toInt().coerceIn(0, columns - 1)
+
+        private fun row(y: Double): Int =
+            floor((y - minY) / cellHeight).toInt().coerceIn(0, rows - 1)
+
+        private fun isOnEdge(point: Node, edge1: Node, edge2: Node): Boolean =
+            cartesian(edge1, point) + cartesian(edge2, point) - cartesian(edge1, edge2) < TOLERANCE
+    }
+
+    private companion object {
+
+        const val TOLERANCE = 0.000000001
     }
-}
\ No newline at end of file
+}
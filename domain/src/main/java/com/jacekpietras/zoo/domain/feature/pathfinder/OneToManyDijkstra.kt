@@ -0,0 +1,196 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+
+internal class OneToManyDijkstra(
+    private val graph: RoadGraph,
+    private val ends: List<SnappedOn>,
+    private val technicalAllowed: Boolean = false,
+    // state is kept after calculation, so paths can be read later
+    private val state: SearchState = SearchState(graph.size + 1 + ends.size),
+) {
+
+    // snapped points inside of edges are not part of graph, they get ids right after real nodes
+    private val startVertex = graph.size
+    private val endVertices = IntArray(ends.size) { i ->
+        when (val end = ends[i]) {
+            is SnappedOnEdge -> graph.size + 1 + i
+            is SnappedOnNode -> end.node
+        }
+    }
+
+    // sorted, so settled vertex is checked to be end without boxing, ends on the same node are counted once
+    private val sortedEndVertices = endVertices.copyOf().apply { sort() }
+    private val distinctEnds = sortedEndVertices.indices.count { it == 0 || sortedEndVertices[it] != sortedEndVertices[it - 1] }
+
+    private val queue = state.queue
+    private var outsideTechnical = false
+
+    // node and index of end on its edge packed into one long, sorted by node
+    private val endingEdges = LongArray(ends.count { it is SnappedOnEdge } * 2).also { edges ->
+        var k = 0
+        ends.forEachIndexed { i, end ->
+            if (end is SnappedOnEdge) {
+                edges[k++] = pack(end.near1, i)
+                edges[k++] = pack(end.near2, i)
+            }
+        }
+        edges.sort()
+    }
+    private val endingWeights1 = DoubleArray(ends.size) { i ->
+        (ends[i] as? SnappedOnEdge)?.let { haversine(it.point, graph.point(it.near1)) } ?: 0.0
+    }
+    private val endingWeights2 = DoubleArray(ends.size) { i ->
+        (ends[i] as? SnappedOnEdge)?.let { haversine(it.point, graph.point(it.near2)) } ?: 0.0
+    }
+
+    private lateinit var start: SnappedOn
+
+    fun calculate(start: SnappedOn): DoubleArray {
+        this.start = start
+        state.reset()
+        outsideTechnical = false
+
+        when (start) {
+            is SnappedOnEdge -> {
+                initQueue(start.near1, haversine(start.point, graph.point(start.near1)), startVertex)
+                initQueue(start.near2, haversine(start.point, graph.point(start.near2)), startVertex)
+            }
+            is SnappedOnNode -> initQueue(start.node, 0.0, NO_NODE)
+        }
+        ends.forEachIndexed { i, end ->
+            if (isCommonEdge(start, end)) {
+                initQueue(endVertices[i], haversine(start.point, end.point), start.toVertex())
+            }
+        }
+
+        runAlgorithm()
+
+        return DoubleArray(ends.size) { i -> state.cost(endVertices[i]) }
+    }
+
+    // paths can be read after state is used by next search, from copy of links between vertices
+    fun copyPaths(): (end: Int) -> List<SnappedOn> {
+        val previous = state.copyPrevious(graph.size + 1 + ends.size)
+        val start = start
+        return { end -> getPath(end, start, previous) }
+    }
+
+    private fun getPath(end: Int, start: SnappedOn, previous: IntArray): List<SnappedOn> {
+        var current = endVertices[end]
+        val result = mutableListOf(current)
+        while (previous[current] != NO_NODE) {
+            current = previous[current]
+            result.add(current)
+        }
+        return result.asReversed().map { it.toSnappedOn(end, start) }
+    }
+
+    private fun runAlgorithm() {
+        var remaining = distinctEnds
+
+        while (!queue.isEmpty()) {
+            val v = queue.poll()
+            val distanceToV = state.cost(v)
+
+            if (v < graph.size) {
+                for (edge in graph.edgeOffsets[v] until graph.edgeOffsets[v + 1]) {
+                    if (technicalAllowed) {
+                        relax(v, graph.edgeTargets[edge], graph.edgeWeights[edge], distanceToV)
+                    } else {
+                        runForEdgeWithoutTechnical(v, edge, distanceToV)
+                    }
+                }
+                var k = firstEndingEdge(v)
+                while (k < endingEdges.size && (endingEdges[k] ushr 32).toInt() == v) {
+                    val i = endingEdges[k].toInt()
+                    val end = ends[i] as SnappedOnEdge
+                    val weight = if (end.near1 == v) endingWeights1[i] else endingWeights2[i]
+                    relax(v, endVertices[i], weight, distanceToV)
+                    k++
+                }
+            }
+
+            state.settle(v)
+            if (sortedEndVertices.binarySearch(v) >= 0) remaining--
+            if (remaining <= 0) break
+        }
+    }
+
+    private fun firstEndingEdge(v: Int): Int {
+        val key = pack(v, 0)
+        var low = 0
+        var high = endingEdges.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (endingEdges[mid] < key) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    private fun pack(node: Int, end: Int): Long =
+        (node.toLong() shl 32) or end.toLong()
+
+    private fun runForEdgeWithoutTechnical(
+        v: Int,
+        edge: Int,
+        distanceToV: Double,
+    ) {
+        val technical = graph.isTechnical(edge)
+        if (!state.isSettled(graph.edgeTargets[edge]) && (!outsideTechnical || !technical)) {
+            if (!technical) {
+                outsideTechnical = true
+            }
+
+            relax(v, graph.edgeTargets[edge], graph.edgeWeights[edge], distanceToV)
+        }
+    }
+
+    private fun relax(
+        v: Int,
+        neighbor: Int,
+        weight: Double,
+        distanceToV: Double,
+    ) {
+        if (!state.isSettled(neighbor)) {
+            val newCost = distanceToV + weight
+
+            if (newCost < state.cost(neighbor)) {
+                state.update(neighbor, newCost, v)
+                queue.push(neighbor, newCost)
+            }
+        }
+    }
+
+    private fun initQueue(v: Int, cost: Double, previous: Int) {
+        if (cost < state.cost(v)) {
+            state.update(v, cost, previous)
+            queue.push(v, cost)
+        }
+    }
+
+    private fun isCommonEdge(start: SnappedOn, end: SnappedOn): Boolean =
+        when {
+            start is SnappedOnEdge && end is SnappedOnEdge -> start onSameEdgeWith end
+            start is SnappedOnEdge && end is SnappedOnNode -> start.near1 == end.node || start.near2 == end.node
+            start is SnappedOnNode && end is SnappedOnEdge -> end.near1 == start.node || end.near2 == start.node
+            else -> false
+        }
+
+    private fun SnappedOn.toVertex(): Int =
+        when (this) {
+            is SnappedOnEdge -> startVertex
+            is SnappedOnNode -> node
+        }
+
+    private fun Int.toSnappedOn(end: Int, start: SnappedOn): SnappedOn =
+        when {
+            this == startVertex -> start
+            this == endVertices[end] -> ends[end]
+            else -> SnappedOnNode(this, graph.point(this))
+        }
+}
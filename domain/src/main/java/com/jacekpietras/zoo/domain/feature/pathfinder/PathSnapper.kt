@@ -1,10 +1,9 @@
 package com.jacekpietras.zoo.domain.feature.pathfinder
 
 import com.jacekpietras.geometry.PointD
-import com.jacekpietras.geometry.haversine
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Intervals
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
 import com.jacekpietras.zoo.domain.model.VisitedRoadEdge
 import kotlin.math.max
@@ -19,19 +18,22 @@ internal class PathSnapper(
             .mergeVisitedParts()
             .toVisitedEdges()
 
-    suspend fun snapToEdgeParts(path: MapItemEntity.PathEntity): List<VisitedRoadEdgePart> =
-        path.vertices
+    suspend fun snapToEdgeParts(path: MapItemEntity.PathEntity): List<VisitedRoadEdgePart> {
+        val graph = graphAnalyzer.waitForGraph()
+        return path.vertices
             .snapPointsToRoad()
-            .fillMissingCorners()
-            .connectIfPossible()
+            .fillMissingCorners(graph)
+            .connectIfPossible(graph)
             .filterDuplicatesInRow()
-            .connectPointsIntoEdges()
+            .connectPointsIntoEdges(graph)
             .normalizeEdgeDirection()
+    }
 
     private suspend fun List<PointD>.snapPointsToRoad(): List<SnappedOnEdge> =
         map { graphAnalyzer.getSnappedPointOnEdge(it, false) }
 
-    private suspend fun List<SnappedOnEdge>.fillMissingCorners(): List<List<SnappedOnEdge>> =
+    // points on not neighbouring edges are left unconnected, path is split between them
+    private fun List<SnappedOnEdge>.fillMissingCorners(graph: RoadGraph): List<List<SnappedOnEdge>> =
         zipWithNext { start, end ->
             when {
                 start onSameEdgeWith end -> {
@@ -39,45 +41,15 @@ internal class PathSnapper(
                 }
                 start hasCommonNodeWith end -> {
                     val commonNode = checkNotNull(start.commonNode(end))
-                    listOf(start, SnappedOnEdge(commonNode.point, commonNode, commonNode), end)
+                    listOf(start, SnappedOnEdge(graph.point(commonNode), commonNode, commonNode), end)
                 }
                 else -> {
-                    graphAnalyzer.getShortestPathWithContext(
-                        startPoint = start,
-                        endPoint = end,
-                    )
-                        .filterOutNotFoundRoutes()
-                        ?.filterCrossingTechnical()
-                        ?.filterOutLongerThan(length = 30)
-                        ?.map { SnappedOnEdge(it.point, it, it) }
-                        ?.map {
-                            when (it.point) {
-                                start.point -> start
-                                end.point -> end
-                                else -> it
-                            }
-                        }
+                    null
                 }
             }
-        }.filterNotNull().filter(List<SnappedOnEdge>::isNotEmpty)
-
-    private fun List<Node>.filterOutNotFoundRoutes(): List<Node>? =
-        takeIf { it.size != 1 }
-
-    private fun List<Node>.filterCrossingTechnical(): List<Node>? {
-        zipWithNext { prev, next ->
-            prev.edges.firstOrNull { it.node == next && !it.technical } ?: return null
-        }
-        return this
-    }
-
-    private fun List<Node>.filterOutLongerThan(length: Int): List<Node>? {
-        val sum = zipWithNext { prev, next -> haversine(prev.point.x, prev.point.y, next.point.x, next.point.y) }
-            .sum()
-        return this.takeIf { sum < length }
-    }
+        }.filterNotNull()
 
-    private fun List<List<SnappedOnEdge>>.connectIfPossible(): List<List<SnappedOnEdge>> {
+    private fun List<List<SnappedOnEdge>>.connectIfPossible(graph: RoadGraph): List<List<SnappedOnEdge>> {
         val result = mutableListOf<List<SnappedOnEdge>>()
         var temp = mutableListOf<SnappedOnEdge>()
 
@@ -91,7 +63,7 @@ internal class PathSnapper(
                 }
                 temp.last() hasCommonNodeWith list.first() -> {
                     val commonNode = checkNotNull(temp.last().commonNode(list.first()))
-                    temp.add(SnappedOnEdge(commonNode.point, commonNode, commonNode))
+                    temp.add(SnappedOnEdge(graph.point(commonNode), commonNode, commonNode))
                     temp.addAll(list)
                 }
                 else -> {
@@ -110,7 +82,7 @@ internal class PathSnapper(
     private fun List<List<SnappedOnEdge>>.filterDuplicatesInRow(): List<List<SnappedOnEdge>> =
         map { it.filterWithPrev { prev, next -> prev.point != next.point } }
 
-    private fun getPercentOfSegment(begin: Node, end: Node, point: PointD): Double {
+    private fun getPercentOfSegment(begin: PointD, end: PointD, point: PointD): Double {
         val diffX = end.x - begin.x
         val percent = if (diffX != 0.0) {
             (point.x - begin.x) / diffX
@@ -126,18 +98,20 @@ internal class PathSnapper(
         return percent
     }
 
-    private fun List<List<SnappedOnEdge>>.connectPointsIntoEdges(): List<VisitedRoadEdgePart> =
+    private fun List<List<SnappedOnEdge>>.connectPointsIntoEdges(graph: RoadGraph): List<VisitedRoadEdgePart> =
         map { continuous ->
             continuous.zipWithNext { prev, next ->
-                val nodes = (prev.getUniqueNodes() + next.getUniqueNodes()).toList()
+                val nodes = (prev.getUniqueNodes(graph) + next.getUniqueNodes(graph)).toList()
                 check(nodes.size == 2) { "there is no line between $prev -> $next" }
 
-                val prevPercent = getPercentOfSegment(nodes[0], nodes[1], prev.point)
-                val nextPercent = getPercentOfSegment(nodes[0], nodes[1], next.point)
+                val from = graph.point(nodes[0])
+                val to = graph.point(nodes[1])
+                val prevPercent = getPercentOfSegment(from, to, prev.point)
+                val nextPercent = getPercentOfSegment(from, to, next.point)
 
                 VisitedRoadEdgePart(
-                    from = nodes[0].point,
-                    to = nodes[1].point,
+                    from = from,
+                    to = to,
                     range = min(prevPercent, nextPercent)..max(prevPercent, nextPercent),
                 )
             }
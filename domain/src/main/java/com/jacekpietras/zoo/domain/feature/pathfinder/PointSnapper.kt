@@ -1,167 +1,57 @@
 package com.jacekpietras.zoo.domain.feature.pathfinder
 
 import com.jacekpietras.geometry.PointD
-import com.jacekpietras.geometry.pow2
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.EdgeGrid.Companion.NO_EDGE
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
 
-internal class PointSnapper {
+internal class PointSnapper(
+    private val graph: RoadGraph,
+) {
+
+    private val allEdges = EdgeGrid(graph, technicalAllowed = true)
+    private val nonTechnicalEdges = EdgeGrid(graph, technicalAllowed = false)
 
     fun getSnappedOn(
-        nodes: Iterable<Node>,
         source: PointD,
         technicalAllowed: Boolean,
-    ): SnappedOn =
-        if (technicalAllowed) {
-            getSnappedOnWithTechnical(nodes, source)
-        } else {
-            getSnappedOnWithoutTechnical(nodes, source)
-        }
-
-    private fun getSnappedOnWithTechnical(
-        nodes: Iterable<Node>,
-        source: PointD,
     ): SnappedOn {
-        var result: SnappedOn? = null
-        var shortest: Double = Double.MAX_VALUE
-
-        nodes.forAllEdges { p1, p2, _ ->
-            if (p1.point == source) {
-                return SnappedOnNode(p1)
-            }
-            if (p2.point == source) {
-                return SnappedOnNode(p2)
-            }
-            val found = getSnappedToEdge(source, p1.point, p2.point)
-            val foundToSource = haversine(source, found)
-            if (foundToSource < shortest) {
-                if (p1.point == found) {
-                    result = SnappedOnNode(p1)
-                    shortest = foundToSource
-                } else if (p2.point == found) {
-                    result = SnappedOnNode(p2)
-                    shortest = foundToSource
-                } else {
-                    result = SnappedOnEdge(found, p1, p2)
-                    shortest = foundToSource
-                }
-                if (shortest == 0.0) {
-                    return checkNotNull(result)
-                }
-            }
+        val grid = gridFor(technicalAllowed)
+        val edge = grid.findNearest(source)
+        check(edge != NO_EDGE) { "No edge to snap on" }
+
+        val p1 = grid.edgeFrom[edge]
+        val p2 = grid.edgeTo[edge]
+        if (graph.isAt(p1, source)) {
+            return SnappedOnNode(p1, source)
         }
-
-        return checkNotNull(result)
-    }
-
-    private fun getSnappedOnWithoutTechnical(
-        nodes: Iterable<Node>,
-        source: PointD,
-    ): SnappedOn {
-        var result: SnappedOn? = null
-        var shortest: Double = Double.MAX_VALUE
-
-        nodes.forAllEdges { p1, p2, technical ->
-            if (!technical) {
-                if (p1.point == source) {
-                    return SnappedOnNode(p1)
-                }
-                if (p2.point == source) {
-                    return SnappedOnNode(p2)
-                }
-                val found = getSnappedToEdge(source, p1.point, p2.point)
-                val foundToSource = haversine(source, found)
-                if (foundToSource < shortest) {
-                    if (p1.point == found) {
-                        result = SnappedOnNode(p1)
-                        shortest = foundToSource
-                    } else if (p2.point == found) {
-                        result = SnappedOnNode(p2)
-                        shortest = foundToSource
-                    } else {
-                        result = SnappedOnEdge(found, p1, p2)
-                        shortest = foundToSource
-                    }
-                    if (shortest == 0.0) {
-                        return checkNotNull(result)
-                    }
-                }
-            }
+        if (graph.isAt(p2, source)) {
+            return SnappedOnNode(p2, source)
+        }
+        val found = grid.getSnappedToEdge(source, edge)
+        return when {
+            graph.isAt(p1, found) -> SnappedOnNode(p1, found)
+            graph.isAt(p2, found) -> SnappedOnNode(p2, found)
+            else -> SnappedOnEdge(found, p1, p2)
         }
-
-        return checkNotNull(result)
     }
 
     fun getSnappedOnEdge(
-        nodes: Iterable<Node>,
         source: PointD,
         technicalAllowed: Boolean,
-    ): SnappedOnEdge =
-        if (technicalAllowed) {
-            getSnappedOnEdgeWithTechnical(nodes, source)
-        } else {
-            getSnappedOnEdgeWithoutTechnical(nodes, source)
-        }
-
-    private fun getSnappedOnEdgeWithTechnical(
-        nodes: Iterable<Node>,
-        source: PointD,
-    ): SnappedOnEdge {
-        var result: SnappedOnEdge? = null
-        var shortest: Double = Double.MAX_VALUE
-
-        nodes.forAllEdges { p1, p2, _ ->
-            val found = getSnappedToEdge(source, p1.point, p2.point)
-            val foundToSource = haversine(source, found)
-            if (foundToSource < shortest) {
-                shortest = foundToSource
-                result = SnappedOnEdge(found, p1, p2)
-                if (shortest == 0.0) {
-                    return checkNotNull(result)
-                }
-            }
-        }
-
-        return checkNotNull(result)
-    }
-
-    private fun getSnappedOnEdgeWithoutTechnical(
-        nodes: Iterable<Node>,
-        source: PointD,
     ): SnappedOnEdge {
-        var result: SnappedOnEdge? = null
-        var shortest: Double = Double.MAX_VALUE
-
-        nodes.forAllEdges { p1, p2, technical ->
-            if (!technical) {
-                val found = getSnappedToEdge(source, p1.point, p2.point)
-                val foundToSource = haversine(source, found)
-                if (foundToSource < shortest) {
-                    shortest = foundToSource
-                    result = SnappedOnEdge(found, p1, p2)
-                    if (shortest == 0.0) {
-                        return checkNotNull(result)
-                    }
-                }
-            }
-        }
+        val grid = gridFor(technicalAllowed)
+        val edge = grid.findNearest(source)
+        check(edge != NO_EDGE) { "No edge to snap on" }
 
-        return checkNotNull(result)
+        return SnappedOnEdge(grid.getSnappedToEdge(source, edge), grid.edgeFrom[edge], grid.edgeTo[edge])
     }
 
-    private fun getSnappedToEdge(source: PointD, p1: PointD, p2: PointD): PointD {
-        val u = ((source.x - p1.x) * (p2.x - p1.x) + (source.y - p1.y) * (p2.y - p1.y)) /
-                ((p2.x - p1.x).pow2 + (p2.y - p1.y).pow2)
+    private fun gridFor(technicalAllowed: Boolean): EdgeGrid =
+        if (technicalAllowed) allEdges else nonTechnicalEdges
 
-        return when {
-            u < 0 -> p1
-            u > 1 -> p2
-            else -> PointD(
-                p1.x + u * (p2.x - p1.x),
-                p1.y + u * (p2.y - p1.y),
-            )
-        }
-    }
+    private fun RoadGraph.isAt(node: Int, point: PointD): Boolean =
+        xs[node] == point.x && ys[node] == point.y
 }
@@ -0,0 +1,69 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph.Companion.NO_NODE
+
+internal class SearchState(val capacity: Int) {
+
+    val queue = IndexedHeap(capacity)
+
+    // values are valid only when stamped with current generation, so reset does not touch arrays
+    private var generation = 0
+    private val stamps = IntArray(capacity)
+    private val settledStamps = IntArray(capacity)
+    private val costs = DoubleArray(capacity)
+    private val previous = IntArray(capacity)
+
+    fun reset() {
+        queue.clear()
+        if (generation == Int.MAX_VALUE) {
+            stamps.fill(0)
+            settledStamps.fill(0)
+            generation = 0
+        }
+        generation++
+    }
+
+    fun cost(v: Int): Double =
+        if (stamps[v] == generation) costs[v] else Double.MAX_VALUE
+
+    fun previous(v: Int): Int =
+        if (stamps[v] == generation) previous[v] else NO_NODE
+
+    // links of search outlive state, when it is taken by next search
+    fun copyPrevious(size: Int): IntArray =
+        IntArray(size) { previous(it) }
+
+    fun update(v: Int, cost: Double, previous: Int) {
+        stamps[v] = generation
+        costs[v] = cost
+        this.previous[v] = previous
+    }
+
+    fun isSettled(v: Int): Boolean =
+        settledStamps[v] == generation
+
+    fun settle(v: Int) {
+        settledStamps[v] = generation
+    }
+}
+
+internal class SearchWorkspace(capacity: Int) {
+
+    val forward = SearchState(capacity)
+    val backward = SearchState(capacity)
+
+    // one to many search has vertex for every end, its state grows when more ends are searched at once
+    private var manyEnds: SearchState? = null
+
+    fun oneToMany(capacity: Int): SearchState =
+        manyEnds?.takeIf { it.capacity >= capacity }
+            ?: SearchState(capacity).also { manyEnds = it }
+}
+
+internal class SearchWorkspacePool(private val graphSize: Int) {
+
+    // each query runs start to end on one thread, so workspace is never shared
+    private val workspaces = ThreadLocal.withInitial { SearchWorkspace(graphSize + 2) }
+
+    fun get(): SearchWorkspace = workspaces.get()!!
+}
@@ -4,11 +4,12 @@ import com.jacekpietras.zoo.domain.feature.pathfinder.GraphAnalyzer
 import com.jacekpietras.zoo.domain.feature.pathfinder.PathListSnapper
 import com.jacekpietras.zoo.domain.feature.pathfinder.PathSnapper
 import com.jacekpietras.zoo.domain.feature.pathfinder.interactor.*
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SearchMode
 import org.koin.dsl.module
 
 val pathFinderModule = module {
     single {
-        GraphAnalyzer()
+        GraphAnalyzer(SearchMode.CONTRACTION_HIERARCHIES)
     }
     factory {
         PathSnapper(
@@ -5,4 +5,6 @@ import com.jacekpietras.geometry.PointD
 interface GetShortestPathFromUserUseCase {
 
     suspend fun run(point: PointD): List<PointD>
+
+    suspend fun run(points: List<PointD>): List<List<PointD>>
 }
@@ -17,4 +17,15 @@ internal class GetShortestPathFromUserUseCaseImpl(
             endPoint = point,
         )
     }
+
+    override suspend fun run(points: List<PointD>): List<List<PointD>> {
+        initializeGraphAnalyzerIfNeededUseCase.run()
+        val userPosition = getUserPositionUseCase.run() ?: return points.map(::listOf)
+        // all paths start at user, so one search finds all of them
+        val paths = graphAnalyzer.getShortestPaths(
+            startPoint = userPosition,
+            endPoints = points,
+        )
+        return List(paths.size, paths::path)
+    }
 }
@@ -0,0 +1,78 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder.model
+
+import com.jacekpietras.geometry.PointD
+import java.util.IdentityHashMap
+
+internal class RoadGraph(
+    val xs: DoubleArray,
+    val ys: DoubleArray,
+    val edgeOffsets: IntArray,
+    val edgeTargets: IntArray,
+    val edgeWeights: DoubleArray,
+    val edgeFlags: ByteArray,
+) {
+
+    val size: Int
+        get() = xs.size
+
+    fun isEmpty(): Boolean = size == 0
+
+    fun point(node: Int): PointD =
+        PointD(xs[node], ys[node])
+
+    fun degree(node: Int): Int =
+        edgeOffsets[node + 1] - edgeOffsets[node]
+
+    fun isTechnical(edge: Int): Boolean =
+        edgeFlags[edge].toInt() and TECHNICAL != 0
+
+    fun isBackward(edge: Int): Boolean =
+        edgeFlags[edge].toInt() and BACKWARD != 0
+
+    fun findEdge(from: Int, to: Int): Int {
+        for (edge in edgeOffsets[from] until edgeOffsets[from + 1]) {
+            if (edgeTargets[edge] == to) return edge
+        }
+        return NO_EDGE
+    }
+
+    companion object {
+
+        const val NO_NODE = -1
+        const val NO_EDGE = -1
+        const val TECHNICAL = 1
+        const val BACKWARD = 2
+
+        fun from(nodes: Collection<Node>): RoadGraph {
+            val ids = IdentityHashMap<Node, Int>(nodes.size)
+            nodes.forEachIndexed { i, node -> ids[node] = i }
+
+            val xs = DoubleArray(nodes.size)
+            val ys = DoubleArray(nodes.size)
+            val edgeOffsets = IntArray(nodes.size + 1)
+            val edgeCount = nodes.sumOf { it.edges.size }
+            val edgeTargets = IntArray(edgeCount)
+            val edgeWeights = DoubleArray(edgeCount)
+            val edgeFlags = ByteArray(edgeCount)
+
+            var edge = 0
+            nodes.forEachIndexed { i, node ->
+                xs[i] = node.x
+                ys[i] = node.y
+                edgeOffsets[i] = edge
+                node.edges.forEach {
+                    edgeTargets[edge] = checkNotNull(ids[it.node]) { "Edge leads outside of graph ${it.node}" }
+                    edgeWeights[edge] = it.weight
+                    edgeFlags[edge] = flagsOf(it).toByte()
+                    edge++
+                }
+            }
+            edgeOffsets[nodes.size] = edge
+
+            return RoadGraph(xs, ys, edgeOffsets, edgeTargets, edgeWeights, edgeFlags)
+        }
+
+        private fun flagsOf(edge: Edge): Int =
+            (if (edge.technical) TECHNICAL else 0) or (if (edge.backward) BACKWARD else 0)
+    }
+}
@@ -0,0 +1,10 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder.model
+
+internal enum class SearchMode {
+    DIJKSTRA,
+    A_STAR,
+    JUNCTION_A_STAR,
+    BIDIRECTIONAL,
+    // hierarchies are built in background after initialization, until then queries run as JUNCTION_A_STAR
+    CONTRACTION_HIERARCHIES,
+}
@@ -0,0 +1,21 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder.model
+
+import com.jacekpietras.geometry.PointD
+
+// paths are built only when asked for, usually few of them are needed and all of them are measured
+internal class ShortestPaths(
+    private val distances: DoubleArray,
+    private val buildPath: (end: Int) -> List<PointD>,
+) {
+
+    private val paths = arrayOfNulls<List<PointD>>(distances.size)
+
+    val size: Int
+        get() = distances.size
+
+    fun distance(end: Int): Double =
+        distances[end]
+
+    fun path(end: Int): List<PointD> =
+        paths[end] ?: buildPath(end).also { paths[end] = it }
+}
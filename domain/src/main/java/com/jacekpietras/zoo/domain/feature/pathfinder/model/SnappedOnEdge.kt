@@ -8,25 +8,25 @@ sealed class SnappedOn(
 
     internal data class SnappedOnEdge(
         override val point: PointD,
-        val near1: Node,
-        val near2: Node,
+        val near1: Int,
+        val near2: Int,
     ) : SnappedOn(point) {
 
         infix fun onSameEdgeWith(right: SnappedOnEdge): Boolean =
             (this.near1 == right.near1 && this.near2 == right.near2) ||
                     (this.near1 == right.near2 && this.near2 == right.near1)
 
-        fun getUniqueNodes(): Set<Node> =
+        fun getUniqueNodes(graph: RoadGraph): Set<Int> =
             when (point) {
-                near1.point -> setOf(near1)
-                near2.point -> setOf(near2)
+                graph.point(near1) -> setOf(near1)
+                graph.point(near2) -> setOf(near2)
                 else -> setOf(near1, near2)
             }
 
         infix fun hasCommonNodeWith(right: SnappedOnEdge): Boolean =
             commonNode(right) != null
 
-        fun commonNode(right: SnappedOnEdge): Node? {
+        fun commonNode(right: SnappedOnEdge): Int? {
             if (this.near1 == right.near1) return this.near1
             if (this.near1 == right.near2) return this.near1
             if (this.near2 == right.near1) return this.near2
@@ -36,6 +36,7 @@ sealed class SnappedOn(
     }
 
     internal data class SnappedOnNode(
-        val node: Node,
-    ) : SnappedOn(node.point)
-}
\ No newline at end of file
+        val node: Int,
+        override val point: PointD,
+    ) : SnappedOn(point)
+}
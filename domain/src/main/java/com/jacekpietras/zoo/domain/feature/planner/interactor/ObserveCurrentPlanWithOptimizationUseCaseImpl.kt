@@ -8,6 +8,7 @@ import com.jacekpietras.zoo.domain.feature.planner.model.Stage
 import com.jacekpietras.zoo.domain.feature.planner.repository.PlanRepository
 import com.jacekpietras.zoo.domain.feature.sensors.repository.GpsRepository
 import com.jacekpietras.zoo.domain.feature.vrp.StageVRPSolver
+import com.jacekpietras.zoo.domain.feature.vrp.model.VrpBudget
 import com.jacekpietras.zoo.domain.feature.vrp.model.VrpResult
 import com.jacekpietras.zoo.domain.model.Region
 import kotlinx.coroutines.CoroutineScope
@@ -39,36 +40,46 @@ internal class ObserveCurrentPlanWithOptimizationUseCaseImpl(
 
     override fun run(): Flow<VrpResult> =
         Storage<List<Stage>>(emptyList()).let { calculation ->
-            Storage<Job?>(null).let { job ->
-                observeCurrentPlanUseCase.run()
-                    .requireSomePlan()
-                    .distinctUntilChanged { _, new ->
-                        new.stages == calculation.take().filter { it !is Stage.InUserPosition } && new.stages.size > 2
-                    }
-                    .moveExitToEnd()
-                    .combineWithUserPosition()
-                    .refreshPeriodically(MINUTE, skipWhen = { job.take() != null })
-                    .onEach { job.purge() }
-                    .pushAndDo(
-                        fast = ::emitPlanWithoutCalculations,
-                        long = { plan, collector ->
-                            with(CoroutineScope(Dispatchers.Default)) {
-                                launch {
-                                    printMeasure {
-                                        val (seen, notSeen) = plan.stages.partition(::isSeen)
-                                        val result = vrpSolver
-                                            .findShortPathAndStages(notSeen)
-                                            .addSeen(seen)
-                                        job.save(null)
-                                        collector.emitOrNothing(result)
-                                        saveBetterPlan(plan, result.stages)
-                                    }
-                                }.let(job::save)
-                            }
-                        },
-                    )
-                    .onEach { calculation.save(it.stages) }
-                    .distinctUntilChanged()
+            Storage<List<Stage>?>(null).let { best ->
+                Storage<Job?>(null).let { job ->
+                    observeCurrentPlanUseCase.run()
+                        .requireSomePlan()
+                        .distinctUntilChanged { _, new ->
+                            new.stages == calculation.take().filter { it !is Stage.InUserPosition } && new.stages.size > 2
+                        }
+                        .moveExitToEnd()
+                        .combineWithUserPosition()
+                        .refreshPeriodically(MINUTE, skipWhen = { job.take() != null })
+                        .onEach { job.purge() }
+                        .pushAndDo(
+                            fast = ::emitPlanWithoutCalculations,
+                            long = { plan, collector ->
+                                with(CoroutineScope(Dispatchers.Default)) {
+                                    launch {
+                                        printMeasure {
+                                            val (seen, notSeen) = plan.stages.partition(::isSeen)
+                                            var result: VrpResult? = null
+                                            // every better tour is shown at once, restarted search continues from the best one
+                                            vrpSolver
+                                                .findShortPathAndStagesProgressively(
+                                                    stages = notSeen,
+                                                    budget = VrpBudget.Time(OPTIMIZATION_BUDGET),
+                                                    warmStart = best.take(),
+                                                )
+                                                .collect { progress ->
+                                                    best.save(progress.stages)
+                                                    result = progress.addSeen(seen).also { collector.emitOrNothing(it) }
+                                                }
+                                            job.save(null)
+                                            result?.let { saveBetterPlan(plan, it.stages) }
+                                        }
+                                    }.let(job::save)
+                                }
+                            },
+                        )
+                        .onEach { calculation.save(it.stages) }
+                        .distinctUntilChanged()
+                }
             }
         }
 
@@ -213,5 +224,6 @@ internal class ObserveCurrentPlanWithOptimizationUseCaseImpl(
         const val EMPTY_PLAN_ID = "EMPTY"
         const val MINUTE = 60 * 1000L
         const val GPS_MIN_INTERVAL = 5 * 1000L
+        const val OPTIMIZATION_BUDGET = 5 * 1000L
     }
 }
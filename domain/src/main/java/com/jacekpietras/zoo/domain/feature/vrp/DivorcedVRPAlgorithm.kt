@@ -1,82 +1,97 @@
 package com.jacekpietras.zoo.domain.feature.vrp
 
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+
 internal class DivorcedVRPAlgorithm<T : Any>(
-    private val algorithm: VRPAlgorithm<T>,
-    private val dummy: T,
-) : VRPWithFixedStagesAlgorithm<T> {
+    private val algorithm: MatrixVRPAlgorithm<T>,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
-        immutablePositions: List<Int>?
-    ): List<T> {
-        immutablePositions?.verifyMutablePositionsInMiddle(points.size)
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray {
+        immutablePositions?.verifyMutablePositionsInMiddle(tour.size)
 
         val firstIsFixed = immutablePositions?.contains(0) == true
-        val lastIsFixed = immutablePositions?.contains(points.lastIndex) == true
-
-        val first = if (firstIsFixed) points.first() else null
-        val last = if (lastIsFixed) points.last() else null
+        val lastIsFixed = immutablePositions?.contains(tour.lastIndex) == true
 
-        val distanceCalculationWithoutFixed: suspend (T, T) -> Double = { a, b ->
-            when {
-                a === dummy -> 0.0
-                b === dummy -> 0.0
-                else -> distanceCalculation(a, b)
-            }
-        }
+        val first = if (firstIsFixed) tour.first() else NONE
+        val last = if (lastIsFixed) tour.last() else NONE
 
-        //       r        0         0         r
-        //  sth <-> last <-> dummy <-> first <-> sth
-        //           sth <->       <-> sth
-        //               max       max
-        val distanceCalculationWithFixed: suspend (T, T) -> Double = { a, b ->
-            when {
-                a === dummy && b === first -> 0.0
-                a === dummy && b === last -> 0.0
-                a === first && b === dummy -> 0.0
-                a === last && b === dummy -> 0.0
-                a === first && b === last -> MAX
-                a === last && b === first -> MAX
-                a === dummy -> MAX
-                b === dummy -> MAX
-                else -> distanceCalculation(a, b)
-            }
-        }
-
-        val composedDistanceCalculation = if (firstIsFixed || lastIsFixed) {
-            distanceCalculationWithFixed
+        // dummy gets index right after real points
+        val dummy = matrix.size
+        val composedMatrix = if (firstIsFixed || lastIsFixed) {
+            matrix.withFixed(dummy, first, last)
         } else {
-            distanceCalculationWithoutFixed
+            matrix.withoutFixed(dummy)
         }
 
-        val tour = algorithm
+        val result = algorithm
             .run(
-                points = points + dummy,
-                distanceCalculation = composedDistanceCalculation,
+                matrix = composedMatrix,
+                tour = tour + dummy,
             )
 
-        var connected = tour.shiftStartTo()
-        if (connected.first() === last || connected.last() === first) {
-            connected = connected.reversed()
+        var connected = result.shiftStartTo(dummy)
+        if (connected.first() == last || connected.last() == first) {
+            connected = connected.reversedArray()
         }
-        if (first != null && first !== connected.first()) {
+        if (first != NONE && first != connected.first()) {
             throw IllegalStateException("Fixed first element is not at the beginning")
         }
-        if (last != null && last !== connected.last()) {
+        if (last != NONE && last != connected.last()) {
             throw IllegalStateException("Fixed last element is not at the end")
         }
 
         return connected
     }
 
-    private fun List<T>.shiftStartTo(): List<T> {
+    private fun DistanceMatrix.withoutFixed(dummy: Int): DistanceMatrix =
+        composed { a, b ->
+            when {
+                a == dummy -> 0.0
+                b == dummy -> 0.0
+                else -> this[a, b]
+            }
+        }
+
+    //       r        0         0         r
+    //  sth <-> last <-> dummy <-> first <-> sth
+    //           sth <->       <-> sth
+    //               max       max
+    private fun DistanceMatrix.withFixed(dummy: Int, first: Int, last: Int): DistanceMatrix =
+        composed { a, b ->
+            when {
+                a == dummy && b == first -> 0.0
+                a == dummy && b == last -> 0.0
+                a == first && b == dummy -> 0.0
+                a == last && b == dummy -> 0.0
+                a == first && b == last -> MAX
+                a == last && b == first -> MAX
+                a == dummy -> MAX
+                b == dummy -> MAX
+                else -> this[a, b]
+            }
+        }
+
+    private inline fun DistanceMatrix.composed(distance: (Int, Int) -> Double): DistanceMatrix {
+        val composed = DistanceMatrix(size + 1)
+        for (a in 0..size) {
+            for (b in 0..size) {
+                if (a != b) composed[a, b] = distance(a, b)
+            }
+        }
+        return composed
+    }
+
+    private fun IntArray.shiftStartTo(dummy: Int): IntArray {
         val indexOfDummy = indexOfFirst { it == dummy }
-        val begin = subList(0, indexOfDummy)
+        val begin = copyOfRange(0, indexOfDummy)
         val end = if (indexOfDummy < lastIndex) {
-            subList(indexOfDummy + 1, lastIndex)
+            copyOfRange(indexOfDummy + 1, lastIndex)
         } else {
-            emptyList()
+            IntArray(0)
         }
         return end + begin
     }
@@ -88,11 +103,9 @@ internal class DivorcedVRPAlgorithm<T : Any>(
         }
     }
 
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
-
     private companion object {
 
         const val MAX = 10000.0//Double.MAX_VALUE/2
+        const val NONE = -1
     }
 }
@@ -0,0 +1,20 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+
+// works only on indices of matrix, points are mapped to indices once, before running
+internal interface MatrixVRPAlgorithm<T : Any> : VRPAlgorithm<T> {
+
+    // tour contains indices of matrix in starting order, result contains the same indices
+    suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+    ): IntArray
+
+    override suspend fun run(
+        points: List<T>,
+        distanceCalculation: suspend (T, T) -> Double,
+    ): List<T> =
+        run(DistanceMatrix.of(points, distanceCalculation), IntArray(points.size) { it })
+            .map(points::get)
+}
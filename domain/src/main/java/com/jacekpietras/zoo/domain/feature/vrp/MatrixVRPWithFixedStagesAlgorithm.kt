@@ -0,0 +1,51 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+
+internal interface MatrixVRPWithFixedStagesAlgorithm<T : Any> : MatrixVRPAlgorithm<T>, VRPWithFixedStagesAlgorithm<T> {
+
+    // immutable positions are positions in starting tour
+    suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray
+
+    // bound is length of best tour found so far by algorithms racing with this one
+    // algorithm may give up when its tour can't beat it anymore, by default bound is not looked at
+    suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+        bound: () -> Double,
+    ): IntArray =
+        run(matrix, tour, immutablePositions)
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+    ): IntArray =
+        run(matrix, tour, null)
+
+    override suspend fun run(
+        points: List<T>,
+        distanceCalculation: suspend (T, T) -> Double,
+        immutablePositions: List<Int>?,
+    ): List<T> =
+        run(DistanceMatrix.of(points, distanceCalculation), IntArray(points.size) { it }, immutablePositions)
+            .map(points::get)
+
+    override suspend fun run(
+        points: List<T>,
+        distanceCalculation: suspend (T, T) -> Double,
+    ): List<T> =
+        run(points, distanceCalculation, null)
+}
+
+internal val NO_BOUND: () -> Double = { Double.MAX_VALUE }
+
+// improving tour rarely shortens it by more than this part, so longer tours are not worth improving
+private const val GIVE_UP_MARGIN = 0.1
+
+internal fun cannotBeat(length: Double, bound: Double): Boolean =
+    length > bound * (1 + GIVE_UP_MARGIN)
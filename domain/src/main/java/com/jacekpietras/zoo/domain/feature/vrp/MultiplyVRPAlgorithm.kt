@@ -1,37 +1,38 @@
 package com.jacekpietras.zoo.domain.feature.vrp
 
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.withContext
 
 internal class MultiplyVRPAlgorithm<T : Any>(
-    private val algorithm1: VRPWithFixedStagesAlgorithm<T>,
-    private val algorithm2: VRPWithFixedStagesAlgorithm<T>,
-) : VRPWithFixedStagesAlgorithm<T> {
+    private val algorithm1: MatrixVRPWithFixedStagesAlgorithm<T>,
+    private val algorithm2: MatrixVRPWithFixedStagesAlgorithm<T>,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?,
-    ): List<T> = withContext(Dispatchers.Default) {
+    ): IntArray = withContext(Dispatchers.Default) {
         val job1 = async {
             val tour1 = algorithm1
                 .run(
-                    points = points,
-                    distanceCalculation = distanceCalculation,
+                    matrix = matrix,
+                    tour = tour,
                     immutablePositions = immutablePositions,
                 )
-            tour1 to distance(tour1, distanceCalculation)
+            tour1 to matrix.distance(tour1)
         }
 
         val job2 = async {
             val tour2 = algorithm2
                 .run(
-                    points = points,
-                    distanceCalculation = distanceCalculation,
+                    matrix = matrix,
+                    tour = tour,
                     immutablePositions = immutablePositions,
                 )
-            tour2 to distance(tour2, distanceCalculation)
+            tour2 to matrix.distance(tour2)
         }
 
         if (job1.await().second < job2.await().second) {
@@ -40,14 +41,8 @@ internal class MultiplyVRPAlgorithm<T : Any>(
             job2.getCompleted().first
         }
     }
-
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
-
-    private suspend fun distance(points: List<T>, distanceCalculation: suspend (T, T) -> Double) =
-        points.zipWithNext { prev, next -> distanceCalculation(prev, next) }.sum()
 }
 
-internal operator fun <T : Any> VRPWithFixedStagesAlgorithm<T>.times(second: VRPWithFixedStagesAlgorithm<T>): VRPWithFixedStagesAlgorithm<T> {
+internal operator fun <T : Any> MatrixVRPWithFixedStagesAlgorithm<T>.times(second: MatrixVRPWithFixedStagesAlgorithm<T>): MatrixVRPWithFixedStagesAlgorithm<T> {
     return MultiplyVRPAlgorithm(this, second)
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.supervisorScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import timber.log.Timber
+
+// Races any number of algorithms on same starting tour, at most given number of them at once.
+// Best tour is shared between members, so whatever finished before deadline is kept,
+// and its length is bound for members still running, so they can give up when they can't beat it.
+// At deadline members still waiting are never started and running ones are cancelled,
+// so members have to check for cancellation in their loops.
+internal class PortfolioVRPAlgorithm<T : Any>(
+    private val members: List<Member<T>>,
+    private val deadlineMillis: Long,
+    parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    val statistics: Statistics = Statistics(),
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    private val permits = Semaphore(parallelism.coerceAtLeast(1))
+
+    data class Member<T : Any>(
+        val name: String,
+        val algorithm: MatrixVRPWithFixedStagesAlgorithm<T>,
+    )
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray = withContext(Dispatchers.Default) {
+        val best = Best(tour, matrix.distance(tour))
+        withTimeoutOrNull(deadlineMillis) {
+            supervisorScope {
+                members.forEach { member ->
+                    launch {
+                        try {
+                            permits.withPermit {
+                                val result = member.algorithm.run(matrix, tour, immutablePositions, best::bound)
+                                best.offer(matrix.distance(result), result, member.name)
+                            }
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            Timber.w(e, "Optimization portfolio member failed")
+                        }
+                    }
+                }
+            }
+        }
+        val (result, winner) = best.take()
+        winner?.let(statistics::recordWin)
+        result
+    }
+
+    private class Best(
+        private var tour: IntArray,
+        @Volatile private var distance: Double,
+    ) {
+
+        private var winner: String? = null
+
+        // read by members in their loops, so without lock
+        fun bound(): Double =
+            distance
+
+        @Synchronized
+        fun offer(distance: Double, tour: IntArray, name: String) {
+            if (distance < this.distance) {
+                this.distance = distance
+                this.tour = tour
+                winner = name
+            }
+        }
+
+        @Synchronized
+        fun take(): Pair<IntArray, String?> =
+            tour to winner
+    }
+
+    // wins are counted per member name, to see which members are worth keeping on real plans
+    class Statistics {
+
+        private val wins = mutableMapOf<String, Int>()
+
+        @Synchronized
+        fun recordWin(name: String) {
+            wins[name] = (wins[name] ?: 0) + 1
+            Timber.d("Optimization portfolio won by $name, wins so far $wins")
+        }
+
+        @Synchronized
+        fun wins(): Map<String, Int> =
+            wins.toMap()
+    }
+}
@@ -0,0 +1,182 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.vrp.model.CachedRegionPath
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionPathsCacheRepository
+import com.jacekpietras.zoo.domain.model.RegionId
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import timber.log.Timber
+
+// Paths between stages, shared by all solver calls.
+// Region pairs are few and never change, so all of them are kept, and can be saved for next app start.
+// Pairs with user position are mostly useless after user moves, so only recently used ones are kept.
+internal class StageDistanceCache(
+    private val repository: RegionPathsCacheRepository? = null,
+    private val pointCapacity: Int = POINT_CAPACITY,
+) {
+
+    private val regions = RegionPairMap()
+    private val points = object : LinkedHashMap<Pair<PointD, PointD>, Calculation>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<PointD, PointD>, Calculation>?): Boolean =
+            size > pointCapacity
+    }
+    private val restoreMutex = Mutex()
+    private var restored = false
+    private var unsaved = false
+
+    @Synchronized
+    fun getRegion(prev: RegionId, next: RegionId): Calculation? =
+        regions[prev, next]
+
+    fun containsRegion(prev: RegionId, next: RegionId): Boolean =
+        getRegion(prev, next) != null
+
+    // pairs are directed, technical roads are allowed only at start of search, so reversed path may differ
+    @Synchronized
+    fun putRegion(prev: RegionId, next: RegionId, distance: Double, path: List<PointD>) {
+        regions[prev, next] = Calculation(distance, path)
+        unsaved = true
+    }
+
+    @Synchronized
+    fun getPoint(prev: PointD, next: PointD): Calculation? =
+        points[prev to next]
+
+    fun containsPoint(prev: PointD, next: PointD): Boolean =
+        getPoint(prev, next) != null
+
+    @Synchronized
+    fun putPoint(prev: PointD, next: PointD, calculation: Calculation) {
+        points[prev to next] = calculation
+    }
+
+    // region pairs saved by previous app start are loaded once, before first search,
+    // concurrent callers wait for that load, and failed load is tried again by next search
+    suspend fun restore() {
+        val repository = repository ?: return
+        restoreMutex.withLock {
+            if (restored) return
+            val loaded = try {
+                repository.load()
+            } catch (e: Exception) {
+                Timber.w(e, "Region paths cache not restored")
+                return
+            }
+            synchronized(this) {
+                loaded.forEach { regions[it.prev, it.next] = Calculation(it.distance, it.path) }
+            }
+            restored = true
+            Timber.d("Region paths cache restored ${loaded.size} pairs")
+        }
+    }
+
+    suspend fun persist() {
+        val repository = repository ?: return
+        val paths = synchronized(this) {
+            if (!unsaved) return
+            unsaved = false
+            regions.toList()
+        }
+        try {
+            repository.save(paths)
+        } catch (e: Exception) {
+            Timber.w(e, "Region paths cache not saved")
+        }
+    }
+
+    // Open addressing with linear probing, key is pair of region numbers packed into one long.
+    // Region ids are numbered in order of first appearance.
+    private class RegionPairMap {
+
+        private val numbers = HashMap<RegionId, Int>()
+        private val ids = ArrayList<RegionId>()
+        private var keys = LongArray(INITIAL_CAPACITY) { EMPTY }
+        private var values = arrayOfNulls<Calculation>(INITIAL_CAPACITY)
+        private var size = 0
+
+        operator fun get(prev: RegionId, next: RegionId): Calculation? {
+            val key = key(numbers[prev] ?: return null, numbers[next] ?: return null)
+            return values[find(keys, key)]
+        }
+
+        operator fun set(prev: RegionId, next: RegionId, calculation: Calculation) {
+            val key = key(number(prev), number(next))
+            var slot = find(keys, key)
+            if (keys[slot] == EMPTY) {
+                if ((size + 1) * 2 > keys.size) {
+                    grow()
+                    slot = find(keys, key)
+                }
+                keys[slot] = key
+                size++
+            }
+            values[slot] = calculation
+        }
+
+        fun toList(): List<CachedRegionPath> =
+            keys.indices
+                .filter { keys[it] != EMPTY }
+                .map { slot ->
+                    val key = keys[slot]
+                    val calculation = values[slot]!!
+                    CachedRegionPath(
+                        prev = ids[(key ushr 32).toInt()],
+                        next = ids[key.toInt()],
+                        distance = calculation.distance,
+                        path = calculation.path,
+                    )
+                }
+
+        private fun number(id: RegionId): Int =
+            numbers.getOrPut(id) {
+                ids.add(id)
+                ids.size - 1
+            }
+
+        private fun grow() {
+            val oldKeys = keys
+            val oldValues = values
+            keys = LongArray(oldKeys.size * 2) { EMPTY }
+            values = arrayOfNulls(oldKeys.size * 2)
+            for (i in oldKeys.indices) {
+                if (oldKeys[i] != EMPTY) {
+                    val slot = find(keys, oldKeys[i])
+                    keys[slot] = oldKeys[i]
+                    values[slot] = oldValues[i]
+                }
+            }
+        }
+
+        // slot with given key, or empty slot where it belongs
+        private fun find(keys: LongArray, key: Long): Int {
+            val mask = keys.size - 1
+            var slot = mix(key) and mask
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) and mask
+            }
+            return slot
+        }
+
+        private fun key(prev: Int, next: Int): Long =
+            (prev.toLong() shl 32) or next.toLong()
+
+        // neighbouring numbers would fall into neighbouring slots and make long probe runs
+        private fun mix(key: Long): Int {
+            val h = key * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt()
+        }
+    }
+
+    private companion object {
+
+        const val POINT_CAPACITY = 1024
+        const val INITIAL_CAPACITY = 256
+        const val EMPTY = -1L
+    }
+}
+
+internal class Calculation(
+    val distance: Double,
+    val path: List<PointD>,
+)
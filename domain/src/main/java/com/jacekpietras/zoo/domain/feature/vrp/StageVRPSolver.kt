@@ -1,13 +1,19 @@
 package com.jacekpietras.zoo.domain.feature.vrp
 
 import com.jacekpietras.zoo.domain.feature.planner.model.Stage
+import com.jacekpietras.zoo.domain.feature.vrp.model.VrpBudget
 import com.jacekpietras.zoo.domain.feature.vrp.model.VrpResult
+import kotlinx.coroutines.flow.Flow
 
 internal interface StageVRPSolver {
 
-    suspend fun findShortPathAndStages(
+    // emits starting tour and then every strictly better one, until budget ends
+    // previous best tour of same stages is used as starting tour
+    fun findShortPathAndStagesProgressively(
         stages: List<Stage>,
-    ): VrpResult
+        budget: VrpBudget,
+        warmStart: List<Stage>? = null,
+    ): Flow<VrpResult>
 
     suspend fun getDistance(prev: Stage, next: Stage): Double
 }
@@ -6,81 +6,295 @@ import com.jacekpietras.zoo.domain.BuildConfig
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
 import com.jacekpietras.zoo.domain.feature.map.repository.MapRepository
 import com.jacekpietras.zoo.domain.feature.pathfinder.GraphAnalyzer
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.ShortestPaths
 import com.jacekpietras.zoo.domain.feature.planner.model.Stage
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.GeneralizedBranchAndBound
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.HeldKarpVRP
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.model.RegionDistances
+import com.jacekpietras.zoo.domain.feature.vrp.model.VrpBudget
 import com.jacekpietras.zoo.domain.feature.vrp.model.VrpResult
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionDistancesRepository
 import com.jacekpietras.zoo.domain.model.Region
 import com.jacekpietras.zoo.domain.model.RegionId
-import com.jacekpietras.zoo.domain.utils.forEachPair
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.withTimeoutOrNull
 import timber.log.Timber
 import kotlin.time.measureTime
 
 internal class StageVRPSolverImpl(
     private val graphAnalyzer: GraphAnalyzer,
     private val mapRepository: MapRepository,
+    private val regionDistancesRepository: RegionDistancesRepository,
     private val vrpAlgorithm: VRPWithFixedStagesAlgorithm<Stage>,
+    private val exactAlgorithm: VRPWithFixedStagesAlgorithm<Stage>,
+    private val generalizedAlgorithm: GeneralizedBranchAndBound,
+    private val refineAlgorithm: VRPWithFixedStagesAlgorithm<Stage>,
+    private val repairAlgorithm: VRPWithFixedStagesAlgorithm<Stage>,
+    private val cache: StageDistanceCache,
 ) : StageVRPSolver {
 
-    private var regionCalculationCache = emptyList<RegionCalculation>()
-    private val optionCreator = StageListOptionCreator()
     private lateinit var currentRegions: List<Pair<Region, MapItemEntity.PolygonEntity>>
+    private var regionDistances: RegionDistances? = null
+    @Volatile
+    private var solved: Solution? = null
 
-    override suspend fun findShortPathAndStages(
+    // cheap steps go first, so good tour is shown early and better ones replace it later
+    override fun findShortPathAndStagesProgressively(
         stages: List<Stage>,
-    ): VrpResult {
-        val pointCalculationCache = PointCalculationCache()
+        budget: VrpBudget,
+        warmStart: List<Stage>?,
+    ): Flow<VrpResult> = flow {
+        val start = System.currentTimeMillis()
         currentRegions = mapRepository.getCurrentRegions()
-        preCalculateCache(stages, pointCalculationCache)
+        regionDistances = regionDistancesRepository.getRegionDistances()
+        cache.restore()
 
-        val resultStages = findShortestStagesOption(stages, pointCalculationCache)
+        val repaired = repair(stages)
+        if (repaired != null) {
+            emit(repaired.toResult())
+            return@flow
+        }
+        preCalculateCache(stages.flatMap { it.variants() })
 
-        val pathParts = resultStages.makePath(pointCalculationCache)
-        return VrpResult(
-            stages = resultStages,
-            stops = pathParts.map(List<PointD>::last),
-            path = pathParts.flatten(),
+        val immutablePositions = stages.immutablePositions()
+        var best = warmStart?.let { stages.orderedLike(it) } ?: stages
+        var bestDistance = best.calcDistance()
+        emit(best.toResult())
+        // starting tour is repaired next time too, when nothing better is found
+        solved = Solution(best, bestDistance)
+        // pairs found later are saved by next search
+        cache.persist()
+
+        suspend fun offer(candidate: List<Stage>): Boolean {
+            val distance = candidate.calcDistance()
+            if (distance >= bestDistance - MIN_IMPROVEMENT) return false
+
+            Timber.d("Optimization progress ${bestDistance.toInt()}m -> ${distance.toInt()}m")
+            best = candidate
+            bestDistance = distance
+            solved = Solution(candidate, distance)
+            emit(best.toResult())
+            return true
+        }
+
+        // only searching is limited by budget, tour found in time is always emitted whole
+        val deadline = (budget as? VrpBudget.Time)?.let { start + it.millis }
+        suspend fun <R> limited(search: suspend () -> R): R? =
+            if (deadline == null) {
+                search()
+            } else {
+                withTimeoutOrNull(deadline - System.currentTimeMillis()) { search() }
+            }
+
+        // null when budget ended before algorithm finished
+        suspend fun improve(algorithm: VRPWithFixedStagesAlgorithm<Stage>): Boolean? =
+            limited { algorithm.run(best, { a, b -> distance(a, b) }, immutablePositions) }
+                ?.let { offer(it) }
+
+        // small plans go from warm start straight to exact solver, heuristics would only delay it
+        if (!stages.isSolvedExactly()) {
+            improve(vrpAlgorithm) ?: return@flow
+        }
+        offer(limited { findShortestStagesOption(stages) } ?: return@flow)
+
+        val rounds = if (budget is VrpBudget.Iterations) budget.rounds else Int.MAX_VALUE
+        var round = 0
+        var stalled = 0
+        while (round++ < rounds && stalled < MAX_STALLED_REFINEMENTS) {
+            val improved = improve(refineAlgorithm) ?: break
+            if (improved) stalled = 0 else stalled++
+        }
+    }
+
+    // when only user position moved, previous tour is repaired instead of searched again
+    // repaired tour is kept unless it got much longer than tour of last search
+    private suspend fun repair(stages: List<Stage>): List<Stage>? {
+        val previous = solved ?: return null
+        val ordered = stages.orderedLike(previous.stages) ?: return null
+        if (ordered == previous.stages) return null
+
+        preCalculateFromUser(ordered)
+        val repaired = repairAlgorithm.run(
+            points = ordered,
+            distanceCalculation = { a, b -> distance(a, b) },
+            immutablePositions = ordered.immutablePositions(),
         )
+        val distance = repaired.calcDistance()
+        if (distance > previous.distance * (1 + MAX_REPAIR_DEGRADATION)) {
+            Timber.d("Optimization repair too long ${previous.distance.toInt()}m -> ${distance.toInt()}m, searching again")
+            return null
+        }
+        Timber.d("Optimization repaired ${previous.distance.toInt()}m -> ${distance.toInt()}m")
+        // next repair starts from this tour, but is still compared with last search
+        solved = Solution(repaired, previous.distance)
+        return repaired
     }
 
-    private suspend fun preCalculateCache(stages: List<Stage>, pointCalculationCache: PointCalculationCache) {
+    // stage to stage paths are still cached, only paths between stages and new user position are missing,
+    // same as elsewhere distance(prev, next) comes from search started in next, so one search goes each way
+    private suspend fun preCalculateFromUser(stages: List<Stage>) {
+        val userPoint = stages.filterIsInstance<Stage.InUserPosition>().firstOrNull()?.point ?: return
+        val ends = stages
+            .filterNot { it is Stage.InUserPosition }
+            .flatMap { it.variants() }
+            .map { it.getCenter() }
+            .distinct()
+        val fromUser = graphAnalyzer.getShortestPaths(
+            userPoint,
+            ends,
+            technicalAllowedAtStart = false,
+            technicalAllowedAtEnd = false,
+        )
+        val intoUser = graphAnalyzer.getShortestPathsTo(
+            userPoint,
+            ends,
+            technicalAllowedAtStart = false,
+            technicalAllowedAtEnd = false,
+        )
+        ends.forEachIndexed { i, end ->
+            cache.putPoint(end, userPoint, Calculation(distance = fromUser.distance(i), path = fromUser.path(i).reversed()))
+            cache.putPoint(userPoint, end, Calculation(distance = intoUser.distance(i), path = intoUser.path(i).reversed()))
+        }
+    }
+
+    // previous tour is used only when it still visits same stages, and keeps regions chosen for alternatives
+    private fun List<Stage>.orderedLike(previous: List<Stage>): List<Stage>? {
+        if (size != previous.size) return null
+
+        val remaining = toMutableList()
+        val ordered = previous.map { old ->
+            val index = remaining.indexOfFirst { it.isSameAs(old) }
+            if (index == -1) return null
+            val stage = remaining.removeAt(index)
+            if (stage is Stage.Multiple && old is Stage.Multiple) stage.copy(region = old.region) else stage
+        }
+        val fixed = immutablePositions()
+        return ordered.takeIf { ordered.immutablePositions() == fixed && fixed.all { ordered[it].isSameAs(this[it]) } }
+    }
+
+    // user position moves between runs, it is still same stage
+    private fun Stage.isSameAs(other: Stage): Boolean =
+        when {
+            this is Stage.InUserPosition -> other is Stage.InUserPosition
+            this is Stage.Multiple && other is Stage.Multiple -> copy(region = other.region) == other
+            else -> this == other
+        }
+
+    private suspend fun preCalculateCache(stages: List<Stage>) {
         if (BuildConfig.DEBUG) {
             val measureCenter = measureTime {
                 stages.forEach { it.getCenter() }
             }
             Timber.d("Optimization center took $measureCenter")
+        }
+
+        val measureDijkstra = measureTime {
+            val scheduled = mutableSetOf<Pair<RegionId, RegionId>>()
+            val searches = stages.mapNotNull { next ->
+                findMissing(next, stages, scheduled)
+                    .takeIf(List<Stage>::isNotEmpty)
+                    ?.let { missing -> StageSearch(next, next.getCenter(), missing, missing.map { it.getCenter() }) }
+            }
+            // searches are independent, graph analyzer is safe to be used from many threads
+            val results = coroutineScope {
+                searches.map { search ->
+                    async(Dispatchers.Default) {
+                        graphAnalyzer.getShortestPaths(
+                            search.nextPoint,
+                            search.missingPoints,
+                            technicalAllowedAtStart = false,
+                            technicalAllowedAtEnd = false,
+                        )
+                    }
+                }.awaitAll()
+            }
+            searches.zip(results) { search, paths -> storePaths(search, paths) }
+        }
+        Timber.d("Optimization dijkstra took $measureDijkstra")
+    }
 
-            val measureDijkstra = measureTime {
-                stages.forEachPair { a, b ->
-                    calculate(a, b, pointCalculationCache)
+    // single search from stage fills cache for paths from all other stages into it
+    private fun findMissing(
+        next: Stage,
+        stages: List<Stage>,
+        scheduled: MutableSet<Pair<RegionId, RegionId>>,
+    ): List<Stage> =
+        stages
+            .filter { prev -> prev != next && !isCached(prev, next) }
+            .filter { prev ->
+                // region pairs are directed, reversed pair is scheduled by search from other stage
+                if (prev is Stage.InRegion && next is Stage.InRegion) {
+                    scheduled.add(prev.region.id to next.region.id)
+                } else {
+                    true
                 }
             }
-            Timber.d("Optimization dijkstra took $measureDijkstra")
+            .distinctBy { prev -> prev.getCenter() }
+
+    private fun storePaths(
+        search: StageSearch,
+        paths: ShortestPaths,
+    ) {
+        val next = search.next
+        search.missing.forEachIndexed { i, prev ->
+            val list = paths.path(i)
+            if (prev is Stage.InRegion && next is Stage.InRegion) {
+                cache.putRegion(prev.region.id, next.region.id, paths.distance(i), list.reversed())
+            } else {
+                cache.putPoint(
+                    search.missingPoints[i],
+                    search.nextPoint,
+                    Calculation(distance = paths.distance(i), path = list.reversed()),
+                )
+            }
         }
     }
 
+    private fun isCached(prev: Stage, next: Stage): Boolean =
+        if (prev is Stage.InRegion && next is Stage.InRegion) {
+            regionDistances?.getDistance(prev.region.id, next.region.id) != null ||
+                    cache.containsRegion(prev.region.id, next.region.id)
+        } else {
+            cache.containsPoint(prev.getCenter(), next.getCenter())
+        }
+
     private suspend fun findShortestStagesOption(
         stages: List<Stage>,
-        pointCalculationCache: PointCalculationCache,
     ): List<Stage> {
         val immutablePositions = stages.immutablePositions()
+        val algorithm = if (stages.isSolvedExactly()) {
+            exactAlgorithm
+        } else {
+            vrpAlgorithm
+        }
         var minDistance = Double.MAX_VALUE
         var resultStages = stages
 
         val measure = measureTime {
-            optionCreator.run(
-                toCheck = stages,
-                onOptionFound = { stageOption ->
-                    val newStages = vrpAlgorithm.run(
-                        points = stageOption,
-                        distanceCalculation = { a, b -> calculate(a, b, pointCalculationCache).distance },
-                        immutablePositions = immutablePositions,
-                    )
-                    val distance = newStages.calcDistance(pointCalculationCache)
-                    if (minDistance > distance) {
-                        minDistance = distance
-                        resultStages = newStages
-                    }
-                }
+            val chosen = if (stages.any { it.hasAlternatives() }) {
+                chooseAlternatives(stages, immutablePositions)
+            } else {
+                stages
+            }
+            val ordered = algorithm.run(
+                points = chosen,
+                distanceCalculation = { a, b -> distance(a, b) },
+                immutablePositions = immutablePositions,
             )
+            // heuristics may not improve order found together with alternatives
+            listOf(chosen, ordered).forEach { newStages ->
+                val distance = newStages.calcDistance()
+                if (minDistance > distance) {
+                    minDistance = distance
+                    resultStages = newStages
+                }
+            }
         }
 
         Timber.d("Optimization record ${minDistance.toInt()}m, took $measure")
@@ -88,6 +302,35 @@ internal class StageVRPSolverImpl(
         return resultStages
     }
 
+    // every stage with alternatives is cluster of its variants, all combinations are searched at once
+    private suspend fun chooseAlternatives(
+        stages: List<Stage>,
+        immutablePositions: List<Int>,
+    ): List<Stage> {
+        val variants = stages.map { it.variants() }
+        val points = variants.flatten()
+        var offset = 0
+        val clusters = variants.map { stageVariants ->
+            IntArray(stageVariants.size) { offset + it }.also { offset += stageVariants.size }
+        }
+        val matrix = DistanceMatrix.of(points) { a, b -> distance(a, b) }
+        return generalizedAlgorithm.run(matrix, clusters, immutablePositions).map(points::get)
+    }
+
+    private fun Stage.hasAlternatives(): Boolean =
+        this is Stage.Multiple && alternatives.size > 1
+
+    private fun Stage.variants(): List<Stage> =
+        if (this is Stage.Multiple && hasAlternatives()) {
+            alternatives.map { copy(region = it) }
+        } else {
+            listOf(this)
+        }
+
+    // small plans are solved exactly, heuristics are only for bigger ones
+    private fun List<Stage>.isSolvedExactly(): Boolean =
+        size - immutablePositions().size <= HeldKarpVRP.MAX_MUTABLE
+
     private fun List<Stage>.immutablePositions() =
         mapIndexed { i, stage ->
             when (stage) {
@@ -96,32 +339,54 @@ internal class StageVRPSolverImpl(
             }
         }.filterNotNull()
 
-    private suspend fun List<Stage>.makePath(pointCalculationCache: PointCalculationCache) =
-        zipWithNext { prev, next -> calculate(prev, next, pointCalculationCache).path }
+    private suspend fun List<Stage>.toResult(): VrpResult {
+        val pathParts = makePath()
+        return VrpResult(
+            stages = this,
+            stops = pathParts.map(List<PointD>::last),
+            path = pathParts.flatten(),
+        )
+    }
+
+    private suspend fun List<Stage>.makePath() =
+        zipWithNext { prev, next -> calculate(prev, next).path }
 
-    private suspend fun List<Stage>.calcDistance(pointCalculationCache: PointCalculationCache) =
-        zipWithNext { prev, next -> calculate(prev, next, pointCalculationCache).distance }.sum()
+    private suspend fun List<Stage>.calcDistance() =
+        zipWithNext { prev, next -> distance(prev, next) }.sum()
 
-    override suspend fun getDistance(prev: Stage, next: Stage): Double =
-        calculate(prev, next, PointCalculationCache()).distance
+    override suspend fun getDistance(prev: Stage, next: Stage): Double {
+        regionDistances = regionDistancesRepository.getRegionDistances()
+        cache.restore()
+        return distance(prev, next)
+    }
+
+    // precalculated table answers region pairs without touching graph
+    private suspend fun distance(prev: Stage, next: Stage): Double =
+        if (prev is Stage.InRegion && next is Stage.InRegion) {
+            regionDistances?.getDistance(prev.region.id, next.region.id)
+                ?: calculate(prev, next).distance
+        } else {
+            calculate(prev, next).distance
+        }
 
-    private suspend fun calculate(prev: Stage, next: Stage, pointCalculationCache: PointCalculationCache): Calculation =
+    private suspend fun calculate(prev: Stage, next: Stage): Calculation =
         if (prev is Stage.InRegion && next is Stage.InRegion) {
-            findRegionCalculation(makeKey(prev.region.id, next.region.id))
+            cache.getRegion(prev.region.id, next.region.id)
+                ?: findPrecalculated(prev.region.id, next.region.id)
                 ?: calculateRegion(prev.region.id, next.region.id)
         } else {
             val prevPoint = prev.getCenter()
             val nextPoint = next.getCenter()
-            pointCalculationCache[prevPoint to nextPoint]
-                ?: calculatePoint(prevPoint, nextPoint, pointCalculationCache)
+            cache.getPoint(prevPoint, nextPoint)
+                ?: calculatePoint(prevPoint, nextPoint)
         }
 
-    private fun findRegionCalculation(key: String) =
-        regionCalculationCache.binarySearchBy(key, selector = RegionCalculation::key)
-            .let(regionCalculationCache::getOrNull)
-
-    private fun makeKey(prev: RegionId, next: RegionId): String =
-        prev.id + "?" + next.id
+    private fun findPrecalculated(prev: RegionId, next: RegionId): Calculation? {
+        val distances = regionDistances ?: return null
+        val distance = distances.getDistance(prev, next) ?: return null
+        val path = distances.getPath(prev, next)?.takeIf(List<PointD>::isNotEmpty) ?: return null
+        return Calculation(distance, path)
+    }
 
     private suspend fun calculateRegion(prev: RegionId, next: RegionId): Calculation {
         val prevPoint = prev.getCenter()
@@ -132,28 +397,13 @@ internal class StageVRPSolverImpl(
             technicalAllowedAtStart = false,
             technicalAllowedAtEnd = false,
         )
-        val distance = list.toLengthInMeters()
-        val calculationAsc = RegionCalculation(
-            key = makeKey(prev, next),
-            distance = distance,
-            path = list.reversed(),
-        )
-        val calculationDesc = RegionCalculation(
-            key = makeKey(next, prev),
-            distance = distance,
-            path = list,
-        )
-
-        regionCalculationCache = (regionCalculationCache + calculationAsc + calculationDesc)
-            .sortedBy(RegionCalculation::key)
-
-        return calculationAsc
+        return Calculation(list.toLengthInMeters(), list.reversed())
+            .also { cache.putRegion(prev, next, it.distance, it.path) }
     }
 
     private suspend fun calculatePoint(
         prevPoint: PointD,
         nextPoint: PointD,
-        pointCalculationCache: PointCalculationCache
     ): Calculation {
         val path = graphAnalyzer
             .getShortestPath(
@@ -166,7 +416,7 @@ internal class StageVRPSolverImpl(
         return Calculation(
             distance = path.toLengthInMeters(),
             path = path,
-        ).also { pointCalculationCache[prevPoint to nextPoint] = it }
+        ).also { cache.putPoint(prevPoint, nextPoint, it) }
     }
 
     private fun Stage.getCenter(): PointD =
@@ -181,17 +431,23 @@ internal class StageVRPSolverImpl(
 
     private fun List<PointD>.toLengthInMeters(): Double =
         zipWithNext().sumOf { (p1, p2) -> haversine(p1.x, p1.y, p2.x, p2.y) }
-}
 
-private typealias PointCalculationCache = LinkedHashMap<Pair<PointD, PointD>, Calculation>
+    private companion object {
+
+        const val MIN_IMPROVEMENT = 1.0E-8
+        const val MAX_STALLED_REFINEMENTS = 3
+        const val MAX_REPAIR_DEGRADATION = 0.1
+    }
+}
 
-private class RegionCalculation(
-    val key: String,
-    distance: Double,
-    path: List<PointD>,
-) : Calculation(distance, path)
+private class StageSearch(
+    val next: Stage,
+    val nextPoint: PointD,
+    val missing: List<Stage>,
+    val missingPoints: List<PointD>,
+)
 
-private open class Calculation(
+private class Solution(
+    val stages: List<Stage>,
     val distance: Double,
-    val path: List<PointD>,
-)
\ No newline at end of file
+)
@@ -1,33 +1,44 @@
 package com.jacekpietras.zoo.domain.feature.vrp
 
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+
 internal class SumVRPAlgorithm<T : Any>(
-    private val algorithm1: VRPWithFixedStagesAlgorithm<T>,
-    private val algorithm2: VRPWithFixedStagesAlgorithm<T>,
-) : VRPWithFixedStagesAlgorithm<T> {
+    private val algorithm1: MatrixVRPWithFixedStagesAlgorithm<T>,
+    private val algorithm2: MatrixVRPWithFixedStagesAlgorithm<T>,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray =
+        run(matrix, tour, immutablePositions, NO_BOUND)
 
+    // second algorithm is not started when first one gave tour too long to beat bound
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?,
-    ): List<T> {
-        val tour = algorithm1
+        bound: () -> Double,
+    ): IntArray {
+        val tour1 = algorithm1
             .run(
-                points = points,
-                distanceCalculation = distanceCalculation,
+                matrix = matrix,
+                tour = tour,
                 immutablePositions = immutablePositions,
+                bound = bound,
             )
+        if (cannotBeat(matrix.distance(tour1), bound())) return tour1
         return algorithm2
             .run(
-                points = tour,
-                distanceCalculation = distanceCalculation,
+                matrix = matrix,
+                tour = tour1,
                 immutablePositions = immutablePositions,
+                bound = bound,
             )
     }
-
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
 }
 
-internal operator fun <T : Any> VRPWithFixedStagesAlgorithm<T>.plus(second: VRPWithFixedStagesAlgorithm<T>): VRPWithFixedStagesAlgorithm<T> {
+internal operator fun <T : Any> MatrixVRPWithFixedStagesAlgorithm<T>.plus(second: MatrixVRPWithFixedStagesAlgorithm<T>): MatrixVRPWithFixedStagesAlgorithm<T> {
     return SumVRPAlgorithm(this, second)
-}
\ No newline at end of file
+}
@@ -0,0 +1,349 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.plus
+import com.jacekpietras.zoo.domain.feature.vrp.times
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.coroutineContext
+import kotlin.random.Random
+
+// Generalized TSP, every cluster is visited once through one of its points.
+// Path is built position by position, with one cluster and one of its points chosen at each step, closest first.
+// Branch is cut when its cost with cheapest possible entry into every remaining cluster is not better than best path.
+// Search starts from best of few locally improved paths, from greedy and random choices of points.
+// First levels of search are split into independent branches, searched in parallel with shared best path.
+// After visiting given number of nodes best path found so far is returned.
+internal class GeneralizedBranchAndBound(
+    private val maxNodes: Long = 500_000,
+    private val restarts: Int = 8,
+    private val random: Random = Random.Default,
+) {
+
+    // clusters are in starting order, immutable positions keep their clusters
+    // returns chosen point for each position
+    suspend fun run(
+        matrix: DistanceMatrix,
+        clusters: List<IntArray>,
+        immutablePositions: List<Int>?,
+    ): IntArray {
+        if (clusters.isEmpty()) return IntArray(0)
+
+        return withContext(Dispatchers.Default) {
+            val problem = Problem(matrix, clusters, immutablePositions.orEmpty())
+            val best = Best()
+            // good path from start lets search cut more branches, and is kept when search is stopped early
+            val starts = listOf(problem.greedy()) + List(restarts) { problem.randomChoice(Random(random.nextLong())) }
+            starts.map { start -> async { problem.improve(start) } }
+                .awaitAll()
+                .forEach { best.offer(matrix.distance(it), it) }
+            val visited = AtomicLong()
+            coroutineScope {
+                problem.frontier().map { branch ->
+                    async { Search(problem, best, visited).run(branch) }
+                }.awaitAll()
+            }
+            ensureActive()
+            problem.reselect(checkNotNull(best.path))
+        }
+    }
+
+    private class Problem(
+        val matrix: DistanceMatrix,
+        val clusters: List<IntArray>,
+        private val immutablePositions: List<Int>,
+    ) {
+
+        val size = clusters.size
+        val points = clusters.sumOf { it.size }
+        val fixedClusters = IntArray(size) { NONE }.also { fixed -> immutablePositions.forEach { fixed[it] = it } }
+        private val clusterOf = IntArray(matrix.size).also { clusterOf ->
+            clusters.forEachIndexed { cluster, points -> points.forEach { clusterOf[it] = cluster } }
+        }
+
+        // cheapest edge entering cluster from point of any other cluster
+        val cheapestEntry = DoubleArray(size) { cluster ->
+            var cheapest = Double.MAX_VALUE
+            clusters.forEachIndexed { other, from ->
+                if (other != cluster) {
+                    for (a in from) {
+                        for (b in clusters[cluster]) {
+                            cheapest = minOf(cheapest, matrix[a, b])
+                        }
+                    }
+                }
+            }
+            if (cheapest == Double.MAX_VALUE) 0.0 else cheapest
+        }
+
+        // partial paths from first levels of search, enough to keep all cores busy
+        fun frontier(): List<Branch> {
+            var frontier = listOf(Branch(IntArray(0), IntArray(0), 0.0))
+            while (frontier.size < FRONTIER_SIZE && frontier.first().clusters.size < size) {
+                frontier = frontier.flatMap { it.children() }
+            }
+            return frontier.sortedBy(Branch::cost)
+        }
+
+        private fun Branch.children(): List<Branch> {
+            val position = clusters.size
+            val last = points.lastOrNull() ?: NONE
+            val used = BooleanArray(size).also { used -> clusters.forEach { used[it] = true } }
+            return (0 until size)
+                .filter { cluster -> isCandidate(cluster, position, used) }
+                .flatMap { cluster ->
+                    this@Problem.clusters[cluster].map { point ->
+                        Branch(clusters + cluster, points + point, cost + edge(last, point))
+                    }
+                }
+        }
+
+        fun isCandidate(cluster: Int, position: Int, used: BooleanArray): Boolean {
+            val fixed = fixedClusters[position]
+            return if (fixed != NONE) cluster == fixed else fixedClusters[cluster] == NONE && !used[cluster]
+        }
+
+        fun edge(from: Int, to: Int): Double =
+            if (from == NONE) 0.0 else matrix[from, to]
+
+        // starting order with random point of every cluster
+        fun randomChoice(random: Random): IntArray =
+            IntArray(size) { clusters[it].random(random) }
+
+        fun greedy(): IntArray {
+            val path = IntArray(size)
+            val used = BooleanArray(size)
+            for (position in 0 until size) {
+                val last = if (position > 0) path[position - 1] else NONE
+                var bestCost = Double.MAX_VALUE
+                for (cluster in 0 until size) {
+                    if (!isCandidate(cluster, position, used)) continue
+                    for (point in clusters[cluster]) {
+                        if (edge(last, point) < bestCost) {
+                            bestCost = edge(last, point)
+                            path[position] = point
+                        }
+                    }
+                }
+                used[clusterOf[path[position]]] = true
+            }
+            return path
+        }
+
+        // order of chosen points and choice of points are improved in turns
+        suspend fun improve(path: IntArray): IntArray {
+            var result = path
+            var distance = matrix.distance(result)
+            while (true) {
+                val points = reinsert(result)
+                val ordered = ordering
+                    .run(DistanceMatrix.of(points.indices.toList()) { a, b -> matrix[points[a], points[b]] }, IntArray(size) { it }, immutablePositions)
+                    .let { order -> reselect(IntArray(size) { points[order[it]] }) }
+                val orderedDistance = matrix.distance(ordered)
+                if (orderedDistance >= distance - MIN_IMPROVEMENT) return result
+                result = ordered
+                distance = orderedDistance
+            }
+        }
+
+        // every cluster is taken out and put back where it fits best, through whichever of its points fits best there
+        private fun reinsert(path: IntArray): IntArray {
+            val result = path.toMutableList()
+            var changed = true
+            while (changed) {
+                changed = false
+                for (position in result.indices) {
+                    if (fixedClusters[position] != NONE) continue
+
+                    val point = result[position]
+                    val previous = result.getOrElse(position - 1) { NONE }
+                    val next = result.getOrElse(position + 1) { NONE }
+                    val removeGain = cost(previous, point, next) - link(previous, next)
+                    result.removeAt(position)
+
+                    var bestCost = removeGain - MIN_IMPROVEMENT
+                    var bestGap = NONE
+                    var bestPoint = point
+                    for (gap in 0..result.size) {
+                        if (gap == position || !isFreeBetween(position, gap)) continue
+                        val left = result.getOrElse(gap - 1) { NONE }
+                        val right = result.getOrElse(gap) { NONE }
+                        for (candidate in clusters[clusterOf[point]]) {
+                            val insertCost = cost(left, candidate, right) - link(left, right)
+                            if (insertCost < bestCost) {
+                                bestCost = insertCost
+                                bestGap = gap
+                                bestPoint = candidate
+                            }
+                        }
+                    }
+                    if (bestGap != NONE) {
+                        result.add(bestGap, bestPoint)
+                        changed = true
+                    } else {
+                        result.add(position, point)
+                    }
+                }
+            }
+            return result.toIntArray()
+        }
+
+        // moving point between positions shifts every point between them
+        private fun isFreeBetween(from: Int, to: Int): Boolean =
+            (minOf(from, to)..maxOf(from, to)).none { it < size && fixedClusters[it] != NONE }
+
+        // when search was stopped, some clusters may still be visited through worse point than their neighbours allow
+        fun reselect(path: IntArray): IntArray {
+            var changed = true
+            while (changed) {
+                changed = false
+                for (position in path.indices) {
+                    val previous = if (position > 0) path[position - 1] else NONE
+                    val next = if (position < path.lastIndex) path[position + 1] else NONE
+                    val best = clusters[clusterOf[path[position]]].minBy { point -> cost(previous, point, next) }
+                    val current = path[position]
+                    if (best != current && cost(previous, best, next) < cost(previous, current, next) - MIN_IMPROVEMENT) {
+                        path[position] = best
+                        changed = true
+                    }
+                }
+            }
+            return path
+        }
+
+        private fun cost(previous: Int, point: Int, next: Int): Double =
+            edge(previous, point) + if (next == NONE) 0.0 else matrix[point, next]
+
+        private fun link(previous: Int, next: Int): Double =
+            if (previous == NONE || next == NONE) 0.0 else matrix[previous, next]
+    }
+
+    private class Branch(
+        val clusters: IntArray,
+        val points: IntArray,
+        val cost: Double,
+    )
+
+    private class Best {
+
+        @Volatile
+        var distance = Double.MAX_VALUE
+            private set
+        var path: IntArray? = null
+            private set
+
+        @Synchronized
+        fun offer(distance: Double, path: IntArray) {
+            if (distance < this.distance) {
+                this.distance = distance
+                this.path = path.copyOf()
+            }
+        }
+    }
+
+    // depth first search from single branch, with own buffers for candidates of every level
+    private inner class Search(
+        private val problem: Problem,
+        private val best: Best,
+        private val visited: AtomicLong,
+    ) {
+
+        private val size = problem.size
+        private val path = IntArray(size)
+        private val used = BooleanArray(size)
+        private val candidatePoints = Array(size) { IntArray(problem.points) }
+        private val candidateClusters = Array(size) { IntArray(problem.points) }
+        private val candidateCosts = Array(size) { DoubleArray(problem.points) }
+        // cheapest entries of clusters not in path yet
+        private var remainingEntries = problem.cheapestEntry.sum()
+        private var localVisited = 0
+        private var stopped = false
+
+        suspend fun run(branch: Branch) {
+            branch.clusters.forEachIndexed { position, cluster ->
+                remainingEntries -= problem.cheapestEntry[cluster]
+                used[cluster] = true
+                path[position] = branch.points[position]
+            }
+            val context = coroutineContext
+            search(branch.clusters.size, branch.cost) { context.isActive }
+        }
+
+        private fun search(position: Int, cost: Double, active: () -> Boolean) {
+            if (stopped || !visit(active)) return
+            if (position == size) {
+                best.offer(cost, path)
+                return
+            }
+            // first cluster is not entered by any edge, so bound is valid only later
+            if (position > 0 && cost + remainingEntries >= best.distance) return
+
+            val count = collectCandidates(position)
+            for (i in 0 until count) {
+                val point = candidatePoints[position][i]
+                val cluster = candidateClusters[position][i]
+                val entry = problem.cheapestEntry[cluster]
+
+                used[cluster] = true
+                path[position] = point
+                remainingEntries -= entry
+                search(position + 1, cost + candidateCosts[position][i], active)
+                remainingEntries += entry
+                used[cluster] = false
+            }
+        }
+
+        // candidates of level sorted by cost of reaching them, by insertion
+        private fun collectCandidates(position: Int): Int {
+            val last = if (position > 0) path[position - 1] else NONE
+            val points = candidatePoints[position]
+            val clusters = candidateClusters[position]
+            val costs = candidateCosts[position]
+            var count = 0
+            for (cluster in 0 until size) {
+                if (!problem.isCandidate(cluster, position, used)) continue
+
+                for (point in problem.clusters[cluster]) {
+                    val cost = problem.edge(last, point)
+                    var i = count++
+                    while (i > 0 && costs[i - 1] > cost) {
+                        points[i] = points[i - 1]
+                        clusters[i] = clusters[i - 1]
+                        costs[i] = costs[i - 1]
+                        --i
+                    }
+                    points[i] = point
+                    clusters[i] = cluster
+                    costs[i] = cost
+                }
+            }
+            return count
+        }
+
+        // nodes are counted in batches, to not fight over shared counter
+        private fun visit(active: () -> Boolean): Boolean {
+            if (++localVisited == VISIT_BATCH) {
+                localVisited = 0
+                if (visited.addAndGet(VISIT_BATCH.toLong()) > maxNodes || !active()) {
+                    stopped = true
+                }
+            }
+            return !stopped
+        }
+    }
+
+    private companion object {
+
+        const val NONE = -1
+        val ordering = LocalSearchVRP<Int>() * (NearestNeighborVRP<Int>() + LocalSearchVRP())
+        const val MIN_IMPROVEMENT = 1.0E-8
+        const val VISIT_BATCH = 1024
+        val FRONTIER_SIZE = Runtime.getRuntime().availableProcessors() * 8
+    }
+}
@@ -0,0 +1,93 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+
+// Exact solution by dynamic programming over subsets of mutable points, O(2^n * n^2).
+// Mutable points fill free positions in order, so number of points in subset tells which free position is filled next.
+// Immutable points only add constant edges into and out of free positions next to them.
+internal class HeldKarpVRP<T : Any> : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray {
+        val fixed = BooleanArray(tour.size).also { fixed -> immutablePositions?.forEach { fixed[it] = true } }
+        val slots = tour.indices.filterNot { fixed[it] }.toIntArray()
+        val mutable = IntArray(slots.size) { tour[slots[it]] }
+        val n = mutable.size
+        if (n <= 1) return tour
+        check(n <= MAX_MUTABLE) { "Too many mutable points $n for exact solution" }
+
+        val before = IntArray(n) { slot -> fixedPoint(tour, fixed, slots[slot] - 1) }
+        val after = IntArray(n) { slot -> fixedPoint(tour, fixed, slots[slot] + 1) }
+
+        return withContext(Dispatchers.Default) {
+            val states = 1 shl n
+            val costs = DoubleArray(states * n) { Double.MAX_VALUE }
+            val previous = ByteArray(states * n)
+
+            for (point in 0 until n) {
+                costs[(1 shl point) * n + point] = enter(matrix, before[0], NONE, mutable[point]) + leave(matrix, after[0], mutable[point])
+            }
+            for (mask in 1 until states) {
+                if (mask and 0xFF == 0) ensureActive()
+
+                val slot = Integer.bitCount(mask)
+                if (slot == n) continue
+                for (last in 0 until n) {
+                    val cost = costs[mask * n + last]
+                    if (cost == Double.MAX_VALUE) continue
+
+                    for (point in 0 until n) {
+                        if (mask and (1 shl point) != 0) continue
+
+                        val next = mask or (1 shl point)
+                        val nextCost = cost +
+                                enter(matrix, before[slot], mutable[last], mutable[point]) +
+                                leave(matrix, after[slot], mutable[point])
+                        if (nextCost < costs[next * n + point]) {
+                            costs[next * n + point] = nextCost
+                            previous[next * n + point] = last.toByte()
+                        }
+                    }
+                }
+            }
+
+            val result = tour.copyOf()
+            var mask = states - 1
+            var last = (0 until n).minBy { costs[mask * n + it] }
+            for (slot in n - 1 downTo 0) {
+                result[slots[slot]] = mutable[last]
+                val beforeLast = previous[mask * n + last].toInt()
+                mask = mask xor (1 shl last)
+                last = beforeLast
+            }
+            result
+        }
+    }
+
+    private fun fixedPoint(tour: IntArray, fixed: BooleanArray, position: Int): Int =
+        if (position in tour.indices && fixed[position]) tour[position] else NONE
+
+    // edge into free position, either from immutable point before it or from previous mutable one
+    private fun enter(matrix: DistanceMatrix, fixedBefore: Int, last: Int, point: Int): Double =
+        when {
+            fixedBefore != NONE -> matrix[fixedBefore, point]
+            last != NONE -> matrix[last, point]
+            else -> 0.0
+        }
+
+    private fun leave(matrix: DistanceMatrix, fixedAfter: Int, point: Int): Double =
+        if (fixedAfter != NONE) matrix[point, fixedAfter] else 0.0
+
+    companion object {
+
+        const val MAX_MUTABLE = 13
+        private const val NONE = -1
+    }
+}
@@ -0,0 +1,206 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import kotlin.math.exp
+import kotlin.math.pow
+import kotlin.random.Random
+
+// Annealing on tour array, swap and 2-opt moves are evaluated only by edges they change.
+// Without tempering single replica is cooled down for given number of iterations.
+// With tempering every replica keeps its own temperature and neighbours on temperature ladder
+// exchange their tours between rounds, until time budget ends or best tour stops improving.
+internal class IncrementalSimulatedAnnealing<T : Any>(
+    private val tempering: Tempering? = null,
+    private val iterations: Int = 100000,
+    private val random: Random = Random.Default,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    data class Tempering(
+        val budgetMillis: Long,
+        val replicas: Int = Runtime.getRuntime().availableProcessors(),
+    )
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray {
+        if (tour.size - (immutablePositions?.size ?: 0) <= 2) {
+            Timber.d("Optimization cannot be done, not enough points ${tour.size} (${immutablePositions?.size} is blocked)")
+            return tour
+        }
+
+        // moves evaluate only edges on their borders, so directed distances are averaged
+        val weights = matrix.symmetric(tour)
+        val fixed = BooleanArray(tour.size).also { fixed -> immutablePositions?.forEach { fixed[it] = true } }
+        val free = tour.indices.filterNot { fixed[it] }.toIntArray()
+        // number of immutable positions before given position
+        val fixedBefore = IntArray(tour.size + 1).also { fixedBefore ->
+            for (i in tour.indices) {
+                fixedBefore[i + 1] = fixedBefore[i] + if (fixed[i]) 1 else 0
+            }
+        }
+        val startingTemperature = weights.distance(IntArray(tour.size) { it }) / (tour.size - 1)
+
+        val best = withContext(Dispatchers.Default) {
+            if (tempering == null) {
+                val replica = Replica(weights, fixedBefore, free, startingTemperature, Random(random.nextLong()))
+                val cooling = FINAL_TEMPERATURE_RATIO.pow(1.0 / iterations)
+                var left = iterations
+                while (left > 0 && isActive) {
+                    val round = minOf(left, ROUND_ITERATIONS)
+                    replica.anneal(round, cooling)
+                    left -= round
+                }
+                replica.best
+            } else {
+                temper(tempering, weights, fixedBefore, free, startingTemperature)
+            }
+        }
+        return IntArray(tour.size) { tour[best[it]] }
+    }
+
+    private suspend fun temper(
+        tempering: Tempering,
+        weights: DistanceMatrix,
+        fixedBefore: IntArray,
+        free: IntArray,
+        startingTemperature: Double,
+    ): IntArray = coroutineScope {
+        val deadline = System.nanoTime() + tempering.budgetMillis * 1_000_000
+        val count = tempering.replicas.coerceAtLeast(2)
+        // geometric ladder, from hot to cold
+        val ladder = Array(count) { i ->
+            val temperature = startingTemperature * FINAL_TEMPERATURE_RATIO.pow(i.toDouble() / (count - 1))
+            Replica(weights, fixedBefore, free, temperature, Random(random.nextLong()))
+        }
+
+        var bestDistance = Double.MAX_VALUE
+        var stalled = 0
+        while (isActive && System.nanoTime() < deadline && stalled < MAX_STALLED_ROUNDS) {
+            ladder.map { replica -> async { replica.anneal(ROUND_ITERATIONS) } }.awaitAll()
+            exchange(ladder)
+
+            val roundBest = ladder.minOf { it.bestDistance }
+            if (roundBest < bestDistance - MIN_IMPROVEMENT) {
+                bestDistance = roundBest
+                stalled = 0
+            } else {
+                stalled++
+            }
+        }
+        ladder.minBy { it.bestDistance }.best
+    }
+
+    // replicas keep their temperatures, only tours are moved along the ladder
+    private fun exchange(ladder: Array<Replica>) {
+        for (i in 0 until ladder.size - 1) {
+            val hot = ladder[i]
+            val cold = ladder[i + 1]
+            val chance = (1 / cold.temperature - 1 / hot.temperature) * (cold.distance - hot.distance)
+            if (chance >= 0 || random.nextDouble() < exp(chance)) {
+                hot.swapTourWith(cold)
+            }
+        }
+    }
+
+    // tour is kept as positions of starting tour, fixed positions are never touched
+    private class Replica(
+        private val weights: DistanceMatrix,
+        private val fixedBefore: IntArray,
+        private val free: IntArray,
+        var temperature: Double,
+        private val random: Random,
+    ) {
+
+        private val n = fixedBefore.size - 1
+        private var path = IntArray(n) { it }
+        var distance = weights.distance(path)
+            private set
+        var best = path.copyOf()
+            private set
+        var bestDistance = distance
+            private set
+
+        fun anneal(iterations: Int, cooling: Double = 1.0) {
+            repeat(iterations) {
+                val a = free[random.nextInt(free.size)]
+                var b = free[random.nextInt(free.size - 1)]
+                if (b == a) b = free.last()
+                val from = minOf(a, b)
+                val to = maxOf(a, b)
+
+                val reversing = random.nextBoolean() && isFreeRange(from, to)
+                val delta = if (reversing) reverseDelta(from, to) else swapDelta(from, to)
+                if (delta <= 0 || random.nextDouble() < exp(-delta / temperature)) {
+                    if (reversing) reverse(from, to) else swap(from, to)
+                    distance += delta
+                    if (distance < bestDistance - MIN_IMPROVEMENT) {
+                        bestDistance = distance
+                        path.copyInto(best)
+                    }
+                }
+                temperature *= cooling
+            }
+        }
+
+        fun swapTourWith(other: Replica) {
+            val path = this.path
+            val distance = this.distance
+            this.path = other.path
+            this.distance = other.distance
+            other.path = path
+            other.distance = distance
+        }
+
+        private fun swapDelta(a: Int, b: Int): Double =
+            if (b == a + 1) {
+                cost(a - 1, b) + cost(a, b + 1) - cost(a - 1, a) - cost(b, b + 1)
+            } else {
+                cost(a - 1, b) + cost(b, a + 1) + cost(b - 1, a) + cost(a, b + 1) -
+                        cost(a - 1, a) - cost(a, a + 1) - cost(b - 1, b) - cost(b, b + 1)
+            }
+
+        private fun reverseDelta(from: Int, to: Int): Double =
+            cost(from - 1, to) + cost(from, to + 1) - cost(from - 1, from) - cost(to, to + 1)
+
+        private fun swap(a: Int, b: Int) {
+            val tmp = path[a]
+            path[a] = path[b]
+            path[b] = tmp
+        }
+
+        private fun reverse(from: Int, to: Int) {
+            var i = from
+            var j = to
+            while (i < j) {
+                swap(i, j)
+                ++i
+                --j
+            }
+        }
+
+        private fun isFreeRange(from: Int, to: Int): Boolean =
+            fixedBefore[to + 1] - fixedBefore[from] == 0
+
+        // weight between points at given positions, path is open so there is nothing outside of it
+        private fun cost(a: Int, b: Int): Double =
+            if (a < 0 || b < 0 || a >= n || b >= n) 0.0 else weights[path[a], path[b]]
+    }
+
+    private companion object {
+
+        const val FINAL_TEMPERATURE_RATIO = 0.001
+        const val ROUND_ITERATIONS = 2000
+        const val MAX_STALLED_ROUNDS = 50
+        const val MIN_IMPROVEMENT = 1.0E-8
+    }
+}
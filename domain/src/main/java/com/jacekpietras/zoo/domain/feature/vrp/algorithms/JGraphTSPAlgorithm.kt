@@ -1,27 +1,28 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 import org.jgrapht.Graph
 import org.jgrapht.alg.interfaces.HamiltonianCycleAlgorithm
 import org.jgrapht.graph.DefaultWeightedEdge
 import org.jgrapht.graph.WeightedMultigraph
 
 internal class JGraphTSPAlgorithm<T : Any>(
-    private val algorithm: HamiltonianCycleAlgorithm<T, DefaultWeightedEdge>
-) : VRPAlgorithm<T> {
+    private val algorithm: HamiltonianCycleAlgorithm<Int, DefaultWeightedEdge>
+) : MatrixVRPAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
-    ): List<T> {
-        val graph = points.toJGraph(distanceCalculation)
-        return algorithm.getTour(graph).vertexList
+        matrix: DistanceMatrix,
+        tour: IntArray,
+    ): IntArray {
+        val graph = tour.toJGraph(matrix)
+        return algorithm.getTour(graph).vertexList.toIntArray()
     }
 
-    private suspend fun <T : Any> List<T>.toJGraph(
-        distanceCalculation: suspend (T, T) -> Double,
-    ): Graph<T, DefaultWeightedEdge> {
-        val graph = WeightedMultigraph<T, DefaultWeightedEdge>(DefaultWeightedEdge::class.java)
+    private fun IntArray.toJGraph(
+        matrix: DistanceMatrix,
+    ): Graph<Int, DefaultWeightedEdge> {
+        val graph = WeightedMultigraph<Int, DefaultWeightedEdge>(DefaultWeightedEdge::class.java)
 
         this.forEach(graph::addVertex)
 
@@ -30,7 +31,7 @@ internal class JGraphTSPAlgorithm<T : Any>(
             pointsTo.remove(from)
             pointsTo.forEach { to ->
                 graph.addEdge(from, to)
-                graph.setEdgeWeight(from, to, distanceCalculation(from, to))
+                graph.setEdgeWeight(from, to, matrix[from, to])
             }
         }
 
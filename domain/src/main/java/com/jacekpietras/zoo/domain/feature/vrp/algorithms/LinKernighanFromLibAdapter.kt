@@ -1,44 +1,42 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 
-class LinKernighanFromLibAdapter<T : Any> : VRPWithFixedStagesAlgorithm<T> {
+internal class LinKernighanFromLibAdapter<T : Any> : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?
-    ): List<T> {
+    ): IntArray {
         val alg = LinKernighanFromLib(
-            points.size,
-            IntArray(points.size) { it },
-            createWeightArray(points, distanceCalculation),
+            tour.size,
+            IntArray(tour.size) { it },
+            createWeightArray(matrix, tour),
         )
         alg.runAlgorithm()
 
-        return toPointList(alg.tour, points)
+        return toTour(alg.tour, tour)
     }
 
-    private fun toPointList(tour: IntArray, points: List<T>): List<T> {
-        val n = tour.size
-        return List(n) { points[tour[it]] }
+    private fun toTour(result: IntArray, tour: IntArray): IntArray {
+        val n = result.size
+        return IntArray(n) { tour[result[it]] }
     }
 
-    private suspend fun createWeightArray(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double
+    private fun createWeightArray(
+        matrix: DistanceMatrix,
+        tour: IntArray,
     ): Array<DoubleArray> {
-        val res = Array(points.size) { DoubleArray(points.size) }
+        val res = Array(tour.size) { DoubleArray(tour.size) }
 
-        for (i in 0 until points.size - 1) {
-            for (j in i + 1 until points.size) {
-                res[i][j] = distanceCalculation(points[i], points[j])
+        for (i in 0 until tour.size - 1) {
+            for (j in i + 1 until tour.size) {
+                res[i][j] = matrix[tour[i], tour[j]]
                 res[j][i] = res[i][j]
             }
         }
         return res
     }
-
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
 }
@@ -0,0 +1,428 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.NO_BOUND
+import com.jacekpietras.zoo.domain.feature.vrp.cannotBeat
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.withContext
+
+// Lin-Kernighan chains of 2-opt moves and Or-opt moves, looking only at few nearest neighbours of each point.
+// Every run of mutable positions is separate problem, with points around it as its fixed ends.
+// Run is closed into cycle through edge between its ends, which is never removed.
+// Chain is kept up to its step with best gain, or undone when none of its steps shortens the cycle.
+// Runs are left as they are when whole tour is too long to beat bound.
+internal class LinKernighanVRP<T : Any>(
+    private val neighbours: Int = 8,
+    private val maxDepth: Int = 6,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray =
+        run(matrix, tour, immutablePositions, NO_BOUND)
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+        bound: () -> Double,
+    ): IntArray {
+        if (tour.size <= 3) return tour
+
+        return withContext(Dispatchers.Default) {
+            // chains evaluate only edges they change, so directed distances are averaged
+            val weights = matrix.symmetric(tour)
+            val directed = matrix.ordered(tour)
+            val fixed = BooleanArray(tour.size).also { fixed -> immutablePositions?.forEach { fixed[it] = true } }
+            val result = IntArray(tour.size) { it }
+            // directed length of whole tour, same as bound is measured, changed by what runs changed
+            var length = directed.distance(result)
+
+            var first = 0
+            while (first < tour.size && isActive && !cannotBeat(length, bound())) {
+                if (fixed[first]) {
+                    first++
+                    continue
+                }
+                var last = first
+                while (last + 1 < tour.size && !fixed[last + 1]) last++
+                if (last > first) {
+                    val run = Run(weights, directed, first, last)
+                    val before = run.length
+                    run.optimize(stopCondition = { !isActive || cannotBeat(length - before + run.length, bound()) })
+                    run.order().copyInto(result, destinationOffset = first)
+                    length += run.length - before
+                }
+                first = last + 1
+            }
+            IntArray(tour.size) { tour[result[it]] }
+        }
+    }
+
+    // points of run are numbered from 0, its ends are two last numbers
+    // end of run without fixed point is dummy point with no distance to anything
+    private inner class Run(
+        private val weights: DistanceMatrix,
+        private val directed: DistanceMatrix,
+        private val first: Int,
+        private val last: Int,
+    ) {
+
+        private val free = last - first + 1
+        private val left = free
+        private val right = free + 1
+        private val size = free + 2
+
+        // cycle starts at left end, goes through run in starting order and closes through right end
+        private val cycle = IntArray(size) { i ->
+            when (i) {
+                0 -> left
+                size - 1 -> right
+                else -> i - 1
+            }
+        }
+        private val positions = IntArray(size).also { positions ->
+            for (i in 0 until size) positions[cycle[i]] = i
+        }
+
+        // directed length of cycle without closing edge, read along cycle and against it
+        private var alongCycle = 0.0
+        private var againstCycle = 0.0
+
+        // directed length of run from left end to right end, with edges to its fixed ends
+        val length: Double
+            get() = if (next(left) != right) alongCycle else againstCycle
+
+        private val candidates = Array(size) { a -> nearest(a, minOf(neighbours, size - 2)) }
+
+        private val queue = ArrayDeque<Int>()
+        private val queued = BooleanArray(size)
+
+        // steps of current chain, so they can be undone
+        private val reversedFrom = IntArray(maxDepth)
+        private val reversedTo = IntArray(maxDepth)
+        private val touched = IntArray(maxDepth * 3)
+        private val alternatives = Array(maxDepth) { IntArray(BREADTH.maxOrNull() ?: 1) }
+        private val alternativeGains = Array(maxDepth) { DoubleArray(BREADTH.maxOrNull() ?: 1) }
+        private var bestGain = 0.0
+        private var bestDepth = 0
+
+        init {
+            measureCycle()
+        }
+
+        fun optimize(stopCondition: () -> Boolean) {
+            for (a in 0 until size) enqueue(a)
+            while (queue.isNotEmpty() && !stopCondition()) {
+                val a = queue.removeFirst()
+                queued[a] = false
+                if (improve(a) || improveOrOpt(a)) enqueue(a)
+            }
+        }
+
+        // positions in tour, in order of run from left end to right end
+        fun order(): IntArray {
+            val forward = next(left) != right
+            var a = left
+            return IntArray(free) {
+                a = if (forward) next(a) else previous(a)
+                first + a
+            }
+        }
+
+        private fun improve(t1: Int): Boolean {
+            for (t2 in intArrayOf(next(t1), previous(t1))) {
+                if (isClosingEdge(t1, t2)) continue
+
+                val removed = weight(t1, t2)
+                for (t3 in candidates[t2]) {
+                    val gain = removed - weight(t2, t3)
+                    // candidates are sorted, so next ones give even less
+                    if (gain <= MIN_IMPROVEMENT) break
+                    if (!isValidStep(t1, t2, t3)) continue
+
+                    bestGain = MIN_IMPROVEMENT
+                    bestDepth = 0
+                    step(t1, t2, t3, gain, depth = 0)
+                    if (bestDepth > 0) {
+                        for (i in 0 until bestDepth * 3) enqueue(touched[i])
+                        return true
+                    }
+                }
+            }
+            return false
+        }
+
+        // t1 stays as end of every step, edge added to it by one step is removed by next one
+        // step is kept only when best closing of chain is at it or after it
+        private fun step(t1: Int, t2: Int, t3: Int, gain: Double, depth: Int) {
+            val t4 = closing(t1, t2, t3)
+            move(depth, t1, t2, t3, t4)
+            touched[depth * 3] = t2
+            touched[depth * 3 + 1] = t3
+            touched[depth * 3 + 2] = t4
+
+            val stepGain = gain + weight(t3, t4)
+            val closedGain = stepGain - weight(t4, t1)
+            if (closedGain > bestGain) {
+                bestGain = closedGain
+                bestDepth = depth + 1
+            }
+            if (depth + 1 < maxDepth) {
+                // alternatives are tried only until something better is found
+                val count = collectAlternatives(t1, t4, stepGain, depth + 1)
+                for (i in 0 until count) {
+                    val next = alternatives[depth + 1][i]
+                    step(t1, t4, next, stepGain - weight(t4, next), depth + 1)
+                    if (bestDepth > 0) break
+                }
+            }
+            if (bestDepth <= depth) {
+                reverse(reversedFrom[depth], reversedTo[depth])
+            }
+        }
+
+        // neighbours which give most when chain is closed right after them, best first
+        private fun collectAlternatives(t1: Int, t2: Int, gain: Double, depth: Int): Int {
+            val result = alternatives[depth]
+            val gains = alternativeGains[depth]
+            val breadth = BREADTH.getOrElse(depth) { 1 }
+            var count = 0
+            for (t3 in candidates[t2]) {
+                val stepGain = gain - weight(t2, t3)
+                if (stepGain <= MIN_IMPROVEMENT) break
+                if (!isValidStep(t1, t2, t3)) continue
+
+                val t4 = closing(t1, t2, t3)
+                // edges removed by chain are not added back, and edges added by it are not removed
+                if (wasRemoved(t2, t3, depth) || wasAdded(t3, t4, depth)) continue
+
+                val closedGain = stepGain + weight(t3, t4)
+                if (count == breadth && closedGain <= gains[count - 1]) continue
+
+                var i = if (count < breadth) count++ else count - 1
+                while (i > 0 && gains[i - 1] < closedGain) {
+                    result[i] = result[i - 1]
+                    gains[i] = gains[i - 1]
+                    --i
+                }
+                result[i] = t3
+                gains[i] = closedGain
+            }
+            return count
+        }
+
+        // segment of few points, starting or ending with a, is moved next to one of a neighbours
+        private fun improveOrOpt(a: Int): Boolean {
+            for (length in 1..minOf(MAX_SEGMENT, size - 4)) {
+                if (improveOrOpt(a, length, startsWithA = true)) return true
+                if (length > 1 && improveOrOpt(a, length, startsWithA = false)) return true
+            }
+            return false
+        }
+
+        private fun improveOrOpt(a: Int, length: Int, startsWithA: Boolean): Boolean {
+            // points from a to other end of segment
+            val segment = IntArray(length)
+            segment[0] = a
+            for (i in 1 until length) {
+                segment[i] = if (startsWithA) next(segment[i - 1]) else previous(segment[i - 1])
+            }
+            val far = segment[length - 1]
+            val first = if (startsWithA) a else far
+            val last = if (startsWithA) far else a
+            val before = previous(first)
+            val after = next(last)
+            if (isClosingEdge(before, first) || isClosingEdge(last, after)) return false
+
+            val removeGain = weight(before, first) + weight(last, after) - weight(before, after)
+            if (removeGain <= MIN_IMPROVEMENT) return false
+            for (c in candidates[a]) {
+                if (isInSegment(c, first, length)) continue
+
+                for (d in intArrayOf(next(c), previous(c))) {
+                    if (isInSegment(d, first, length) || isClosingEdge(c, d)) continue
+
+                    val gain = removeGain - weight(c, a) - weight(far, d) + weight(c, d)
+                    if (gain > MIN_IMPROVEMENT) {
+                        moveSegment(segment, after, c, d)
+                        intArrayOf(before, after, a, far, c, d).forEach(::enqueue)
+                        return true
+                    }
+                }
+            }
+            return false
+        }
+
+        private fun isInSegment(b: Int, first: Int, length: Int): Boolean =
+            Math.floorMod(positions[b] - positions[first], size) < length
+
+        // cycle is rebuilt from point after segment, with segment put between c and d, its first point next to c
+        private fun moveSegment(segment: IntArray, after: Int, c: Int, d: Int) {
+            val rest = IntArray(size - segment.size)
+            rest[0] = after
+            for (i in 1 until rest.size) rest[i] = next(rest[i - 1])
+
+            val cBeforeD = next(c) == d
+            var i = 0
+            for (b in rest) {
+                cycle[i++] = b
+                if (cBeforeD && b == c) {
+                    for (k in segment.indices) cycle[i++] = segment[k]
+                } else if (!cBeforeD && b == d) {
+                    for (k in segment.indices.reversed()) cycle[i++] = segment[k]
+                }
+            }
+            for (position in 0 until size) positions[cycle[position]] = position
+            measureCycle()
+        }
+
+        private fun wasAdded(a: Int, b: Int, depth: Int): Boolean =
+            (0 until depth).any { isEdge(a, b, touched[it * 3], touched[it * 3 + 1]) }
+
+        // first removed edge is not on this list, but it is never among candidates of t2 anyway
+        private fun wasRemoved(a: Int, b: Int, depth: Int): Boolean =
+            (0 until depth).any { isEdge(a, b, touched[it * 3 + 1], touched[it * 3 + 2]) }
+
+        private fun isEdge(a: Int, b: Int, c: Int, d: Int): Boolean =
+            (a == c && b == d) || (a == d && b == c)
+
+        // t3 can't be already linked with t2, and edge removed next to it can't be the one closing the run
+        private fun isValidStep(t1: Int, t2: Int, t3: Int): Boolean =
+            t3 != next(t2) && t3 != previous(t2) && !isClosingEdge(t3, closing(t1, t2, t3))
+
+        // only one neighbour of t3 keeps cycle whole when edges t1-t2 and t3-t4 are replaced by t2-t3 and t4-t1
+        private fun closing(t1: Int, t2: Int, t3: Int): Int =
+            if (t2 == next(t1)) previous(t3) else next(t3)
+
+        private fun move(depth: Int, t1: Int, t2: Int, t3: Int, t4: Int) {
+            if (t2 == next(t1)) {
+                reverse(depth, positions[t2], positions[t4])
+            } else {
+                reverse(depth, positions[t1], positions[t3])
+            }
+        }
+
+        // shorter side of cycle is reversed, it gives same cycle
+        private fun reverse(depth: Int, from: Int, to: Int) {
+            val length = Math.floorMod(to - from, size) + 1
+            if (length * 2 > size) {
+                reversedFrom[depth] = (to + 1) % size
+                reversedTo[depth] = (from - 1 + size) % size
+            } else {
+                reversedFrom[depth] = from
+                reversedTo[depth] = to
+            }
+            reverse(reversedFrom[depth], reversedTo[depth])
+        }
+
+        private fun reverse(from: Int, to: Int) {
+            measure(from, to, sign = -1.0)
+            var i = from
+            var j = to
+            var swaps = Math.floorMod(to - from, size) / 2 + 1
+            while (swaps-- > 0 && i != j) {
+                val a = cycle[i]
+                val b = cycle[j]
+                cycle[i] = b
+                cycle[j] = a
+                positions[b] = i
+                positions[a] = j
+                i = (i + 1) % size
+                j = (j - 1 + size) % size
+            }
+            measure(from, to, sign = 1.0)
+        }
+
+        private fun measureCycle() {
+            alongCycle = 0.0
+            againstCycle = 0.0
+            // range of all but one position has all edges of cycle inside of it or on its borders
+            measure(from = 0, to = size - 2, sign = 1.0)
+        }
+
+        // edges inside of range and on its borders are added or taken away, only they change when range is reversed
+        private fun measure(from: Int, to: Int, sign: Double) {
+            var position = (from - 1 + size) % size
+            repeat(Math.floorMod(to - from, size) + 2) {
+                val a = cycle[position]
+                val b = cycle[(position + 1) % size]
+                alongCycle += sign * directedWeight(a, b)
+                againstCycle += sign * directedWeight(b, a)
+                position = (position + 1) % size
+            }
+        }
+
+        private fun next(a: Int): Int =
+            cycle[(positions[a] + 1) % size]
+
+        private fun previous(a: Int): Int =
+            cycle[(positions[a] - 1 + size) % size]
+
+        private fun weight(a: Int, b: Int): Double =
+            distance(weights, a, b)
+
+        // closing edge is not part of run
+        private fun directedWeight(a: Int, b: Int): Double =
+            if (isClosingEdge(a, b)) 0.0 else distance(directed, a, b)
+
+        private fun distance(matrix: DistanceMatrix, a: Int, b: Int): Double =
+            if (a == b) {
+                0.0
+            } else {
+                val from = point(a)
+                val to = point(b)
+                if (from == NONE || to == NONE) 0.0 else matrix[from, to]
+            }
+
+        private fun isClosingEdge(a: Int, b: Int): Boolean =
+            (a == left && b == right) || (a == right && b == left)
+
+        // position in tour, or none for end of tour
+        private fun point(a: Int): Int =
+            when (a) {
+                left -> if (first > 0) first - 1 else NONE
+                right -> if (last < weights.size - 1) last + 1 else NONE
+                else -> first + a
+            }
+
+        // insertion into short sorted list, without sorting all points
+        private fun nearest(a: Int, count: Int): IntArray {
+            val result = IntArray(count)
+            var found = 0
+            for (b in 0 until size) {
+                if (b == a || isClosingEdge(a, b)) continue
+                val weight = weight(a, b)
+                if (found == count && weight >= weight(a, result[found - 1])) continue
+
+                var i = if (found < count) found++ else found - 1
+                while (i > 0 && weight(a, result[i - 1]) > weight) {
+                    result[i] = result[i - 1]
+                    --i
+                }
+                result[i] = b
+            }
+            return result
+        }
+
+        private fun enqueue(a: Int) {
+            if (!queued[a]) {
+                queued[a] = true
+                queue.addLast(a)
+            }
+        }
+    }
+
+    private companion object {
+
+        const val NONE = -1
+        const val MIN_IMPROVEMENT = 1.0E-8
+        const val MAX_SEGMENT = 3
+        // number of alternatives tried at each step of chain, first step tries all candidates
+        val BREADTH = intArrayOf(1, 3, 2)
+    }
+}
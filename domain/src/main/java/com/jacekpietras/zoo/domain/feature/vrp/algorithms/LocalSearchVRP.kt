@@ -0,0 +1,243 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.NO_BOUND
+import com.jacekpietras.zoo.domain.feature.vrp.cannotBeat
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.withContext
+
+// First improvement 2-opt and Or-opt, looking only at few nearest neighbours of each point.
+// Points which didn't improve are not looked at again, until some move changes their neighbourhood.
+// Moves never cross immutable position, so immutable points keep their places.
+// Search gives up when its tour is too long to beat bound, even after improvements still possible.
+internal class LocalSearchVRP<T : Any>(
+    private val neighbours: Int = 8,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+    ): IntArray =
+        run(matrix, tour, immutablePositions, NO_BOUND)
+
+    override suspend fun run(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>?,
+        bound: () -> Double,
+    ): IntArray {
+        if (tour.size <= 3) return tour
+
+        return withContext(Dispatchers.Default) {
+            val search = Search(matrix, tour, immutablePositions.orEmpty())
+            search.run(stopCondition = { !isActive || cannotBeat(search.length, bound()) })
+            IntArray(tour.size) { tour[search.path[it]] }
+        }
+    }
+
+    // points are identified by their position in starting tour
+    private inner class Search(
+        matrix: DistanceMatrix,
+        tour: IntArray,
+        immutablePositions: List<Int>,
+    ) {
+
+        private val n = tour.size
+        val path = IntArray(n) { it }
+        private val positions = IntArray(n) { it }
+
+        // moves evaluate only edges on their borders, so directed distances are averaged
+        private val weights = matrix.symmetric(tour)
+        private val directed = matrix.ordered(tour)
+
+        // directed length of path, same as bound is measured, changed by every applied move
+        var length = directed.distance(path)
+            private set
+
+        // number of immutable positions before given position
+        private val fixedBefore = IntArray(n + 1).also { fixedBefore ->
+            val fixed = BooleanArray(n)
+            immutablePositions.forEach { fixed[it] = true }
+            for (i in 0 until n) {
+                fixedBefore[i + 1] = fixedBefore[i] + if (fixed[i]) 1 else 0
+            }
+        }
+
+        private val candidates = Array(n) { a -> nearest(a, minOf(neighbours, n - 1)) }
+
+        private val queue = ArrayDeque<Int>()
+        private val queued = BooleanArray(n)
+
+        fun run(stopCondition: () -> Boolean) {
+            for (a in 0 until n) {
+                if (isFree(a, a)) enqueue(a)
+            }
+            while (queue.isNotEmpty() && !stopCondition()) {
+                val a = queue.removeFirst()
+                queued[a] = false
+                if (improveTwoOpt(a) || improveOrOpt(a)) {
+                    enqueue(a)
+                }
+            }
+        }
+
+        private fun improveTwoOpt(a: Int): Boolean {
+            val i = positions[a]
+            for (c in candidates[a]) {
+                val j = positions[c]
+                val gain = when {
+                    // a, c ... next(a), next(c)
+                    j > i + 1 && isFree(i + 1, j) ->
+                        edge(i, i + 1) + edge(j, j + 1) - weights[a, c] - cost(path.getOrNull(i + 1), path.getOrNull(j + 1))
+                    // prev(c), prev(a) ... c, a
+                    j < i - 1 && isFree(j, i - 1) ->
+                        edge(j - 1, j) + edge(i - 1, i) - weights[c, a] - cost(path.getOrNull(j - 1), path.getOrNull(i - 1))
+                    else -> 0.0
+                }
+                if (gain > MIN_IMPROVEMENT) {
+                    if (j > i) reverse(i + 1, j) else reverse(j, i - 1)
+                    return true
+                }
+            }
+            return false
+        }
+
+        private fun improveOrOpt(a: Int): Boolean {
+            val i = positions[a]
+            for (length in 1..MAX_SEGMENT) {
+                if (improveOrOpt(a, i, i + length - 1)) return true
+                if (length > 1 && improveOrOpt(a, i - length + 1, i)) return true
+            }
+            return false
+        }
+
+        // segment ending with a is moved next to one of a neighbours, in whichever direction keeps them together
+        private fun improveOrOpt(a: Int, first: Int, last: Int): Boolean {
+            if (first < 0 || last >= n || !isFree(first, last)) return false
+
+            val far = if (path[first] == a) path[last] else path[first]
+            val removeGain = edge(first - 1, first) + edge(last, last + 1) - cost(path.getOrNull(first - 1), path.getOrNull(last + 1))
+            for (c in candidates[a]) {
+                val j = positions[c]
+                if (j in first..last) continue
+
+                // after c: c, a ... far, next(c)
+                if (j != first - 1) {
+                    val gain = removeGain - weights[c, a] - cost(far, path.getOrNull(j + 1)) + edge(j, j + 1)
+                    if (gain > MIN_IMPROVEMENT && moveSegment(first, last, gap = j, reversed = path[first] != a)) {
+                        return true
+                    }
+                }
+                // before c: prev(c), far ... a, c
+                if (j - 1 != last) {
+                    val gain = removeGain - weights[a, c] - cost(path.getOrNull(j - 1), far) + edge(j - 1, j)
+                    if (gain > MIN_IMPROVEMENT && moveSegment(first, last, gap = j - 1, reversed = path[last] != a)) {
+                        return true
+                    }
+                }
+            }
+            return false
+        }
+
+        // gap is position after which segment is inserted
+        private fun moveSegment(from: Int, to: Int, gap: Int, reversed: Boolean): Boolean {
+            val changedFrom = if (gap > to) from else gap + 1
+            val changedTo = if (gap > to) gap else to
+            if (!isFree(changedFrom, changedTo)) return false
+
+            val segment = path.copyOfRange(from, to + 1)
+            if (reversed) segment.reverse()
+
+            val before = directedLength(changedFrom, changedTo)
+            if (gap > to) {
+                path.copyInto(path, destinationOffset = from, startIndex = to + 1, endIndex = gap + 1)
+                segment.copyInto(path, destinationOffset = gap - segment.size + 1)
+            } else {
+                path.copyInto(path, destinationOffset = gap + 1 + segment.size, startIndex = gap + 1, endIndex = from)
+                segment.copyInto(path, destinationOffset = gap + 1)
+            }
+            length += directedLength(changedFrom, changedTo) - before
+            touch(changedFrom, changedTo)
+            return true
+        }
+
+        private fun reverse(from: Int, to: Int) {
+            val before = directedLength(from, to)
+            var i = from
+            var j = to
+            while (i < j) {
+                val tmp = path[j]
+                path[j] = path[i]
+                path[i] = tmp
+                ++i
+                --j
+            }
+            length += directedLength(from, to) - before
+            touch(from, to)
+        }
+
+        // edges inside of range and on its borders, only they change when range is rearranged
+        private fun directedLength(from: Int, to: Int): Double {
+            var sum = 0.0
+            for (position in maxOf(from, 1)..minOf(to + 1, n - 1)) {
+                sum += directed[path[position - 1], path[position]]
+            }
+            return sum
+        }
+
+        // positions are updated and ends of changed range get looked at again
+        private fun touch(from: Int, to: Int) {
+            for (position in from..to) {
+                positions[path[position]] = position
+            }
+            for (position in intArrayOf(from - 1, from, to, to + 1)) {
+                if (position in 0 until n && isFree(position, position)) enqueue(path[position])
+            }
+        }
+
+        // insertion into short sorted list, without sorting all points
+        private fun nearest(a: Int, count: Int): IntArray {
+            val result = IntArray(count)
+            var size = 0
+            for (b in 0 until n) {
+                if (b == a) continue
+                val weight = weights[a, b]
+                if (size == count && weight >= weights[a, result[size - 1]]) continue
+
+                var i = if (size < count) size++ else size - 1
+                while (i > 0 && weights[a, result[i - 1]] > weight) {
+                    result[i] = result[i - 1]
+                    --i
+                }
+                result[i] = b
+            }
+            return result
+        }
+
+        private fun enqueue(a: Int) {
+            if (!queued[a]) {
+                queued[a] = true
+                queue.addLast(a)
+            }
+        }
+
+        private fun isFree(from: Int, to: Int): Boolean =
+            fixedBefore[to + 1] - fixedBefore[from] == 0
+
+        // path is open, there is no edge before first and after last position
+        private fun edge(from: Int, to: Int): Double =
+            if (from < 0 || to >= n) 0.0 else weights[path[from], path[to]]
+
+        private fun cost(a: Int?, b: Int?): Double =
+            if (a == null || b == null) 0.0 else weights[a, b]
+    }
+
+    private companion object {
+
+        const val MIN_IMPROVEMENT = 1.0E-8
+        const val MAX_SEGMENT = 3
+    }
+}
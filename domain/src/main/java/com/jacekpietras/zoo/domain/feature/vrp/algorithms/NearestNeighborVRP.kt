@@ -1,54 +1,60 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.ensureActive
 import timber.log.Timber
+import kotlin.coroutines.coroutineContext
 import kotlin.random.Random
 
-internal class NearestNeighborVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
+internal class NearestNeighborVRP<T : Any>(
+    private val random: Random = Random.Default,
+) : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?,
-    ): List<T> {
-        if (points.size <= 2) {
-            Timber.d("Optimization cannot be done, not enough points ${points.size}")
-            return points
+    ): IntArray {
+        if (tour.size <= 2) {
+            Timber.d("Optimization cannot be done, not enough points ${tour.size}")
+            return tour
         }
-        if (points.size - (immutablePositions?.size ?: 0) <= 2) {
-            Timber.d("Optimization cannot be done, not enough points ${points.size} (${immutablePositions?.size} is blocked)")
-            return points
+        if (tour.size - (immutablePositions?.size ?: 0) <= 2) {
+            Timber.d("Optimization cannot be done, not enough points ${tour.size} (${immutablePositions?.size} is blocked)")
+            return tour
         }
 
-        val notVisited = points.toMutableList()
+        val notVisited = tour.toMutableList()
         immutablePositions?.sortedDescending()?.forEach(notVisited::removeAt)
 
-        val startingIndex = Random.nextInt(notVisited.size)
+        val startingIndex = random.nextInt(notVisited.size)
         var current = notVisited.removeAt(startingIndex)
         val result = mutableListOf(current)
 
         while (notVisited.isNotEmpty()) {
-            val nearestIndex = findNearest(notVisited, current, distanceCalculation)
+            coroutineContext.ensureActive()
+            val nearestIndex = findNearest(notVisited, current, matrix)
             current = notVisited.removeAt(nearestIndex)
             result.add(current)
         }
 
         immutablePositions?.sorted()?.forEach { i ->
-            result.add(i, points[i])
+            result.add(i, tour[i])
         }
 
-        return result
+        return result.toIntArray()
     }
 
-    private suspend fun findNearest(
-        points: List<T>,
-        from: T,
-        distanceCalculation: suspend (T, T) -> Double,
+    private fun findNearest(
+        points: List<Int>,
+        from: Int,
+        matrix: DistanceMatrix,
     ): Int {
         var minDistance = Double.MAX_VALUE
         var minIndex = 0
         points.forEachIndexed { i, to ->
-            val currentDistance = distanceCalculation(from, to)
+            val currentDistance = matrix[from, to]
             if (currentDistance < minDistance) {
                 minDistance = currentDistance
                 minIndex = i
@@ -57,7 +63,4 @@ internal class NearestNeighborVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
 
         return minIndex
     }
-
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
-}
\ No newline at end of file
+}
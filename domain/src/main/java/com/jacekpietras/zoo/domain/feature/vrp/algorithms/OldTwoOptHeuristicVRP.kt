@@ -1,33 +1,33 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPAlgorithm
-import com.jacekpietras.zoo.domain.utils.forEachPairIndexed
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.withContext
 
-class OldTwoOptHeuristicVRP<T : Any> : VRPAlgorithm<T> {
+internal class OldTwoOptHeuristicVRP<T : Any> : MatrixVRPAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double
-    ): List<T> {
+        matrix: DistanceMatrix,
+        tour: IntArray,
+    ): IntArray {
         return withContext(Dispatchers.Default) {
             runInner(
-                points,
-                distanceCalculation,
+                matrix,
+                tour,
                 stopCondition = { !isActive },
             )
         }
     }
 
-    private suspend fun runInner(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+    private fun runInner(
+        matrix: DistanceMatrix,
+        points: IntArray,
         stopCondition: () -> Boolean,
-    ): List<T> {
+    ): IntArray {
         val n = points.size
-        val dist = createWeightArray(points, distanceCalculation)
+        val dist = createWeightArray(matrix, points)
         val minCostImprovement = 1.0E-8
         val tour = IntArray(n + 1) { it }
         tour[n] = 0
@@ -42,7 +42,7 @@ class OldTwoOptHeuristicVRP<T : Any> : VRPAlgorithm<T> {
                     val ci1 = tour[i + 1]
                     val cj = tour[j]
                     val cj1 = tour[j + 1]
-                    val change = dist[ci][cj] + dist[ci1][cj1] - dist[ci][ci1] - dist[cj][cj1]
+                    val change = dist[ci, cj] + dist[ci1, cj1] - dist[ci, ci1] - dist[cj, cj1]
                     if (change < minChange) {
                         minChange = change
                         mini = i
@@ -57,17 +57,19 @@ class OldTwoOptHeuristicVRP<T : Any> : VRPAlgorithm<T> {
         }
     }
 
-    private suspend fun createWeightArray(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double
-    ): Array<DoubleArray> {
+    private fun createWeightArray(
+        matrix: DistanceMatrix,
+        points: IntArray,
+    ): DistanceMatrix {
         val n = points.size
-        val dist = Array(n) { DoubleArray(n) }
+        val dist = DistanceMatrix(n)
 
-        points.forEachPairIndexed { si, s, ti, t ->
-            val weight = distanceCalculation(s, t)
-            dist[si][ti] = weight
-            dist[ti][si] = weight
+        for (si in 0 until n - 1) {
+            for (ti in si + 1 until n) {
+                val weight = matrix[points[si], points[ti]]
+                dist[si, ti] = weight
+                dist[ti, si] = weight
+            }
         }
         return dist
     }
@@ -84,6 +86,6 @@ class OldTwoOptHeuristicVRP<T : Any> : VRPAlgorithm<T> {
         }
     }
 
-    private fun <T> IntArray.toPointList(points: List<T>): List<T> =
-        map { points[it] }
+    private fun IntArray.toPointList(points: IntArray): IntArray =
+        IntArray(size) { points[this[it]] }
 }
\ No newline at end of file
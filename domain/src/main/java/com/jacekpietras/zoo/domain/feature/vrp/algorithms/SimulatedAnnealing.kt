@@ -1,41 +1,41 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.withContext
 import timber.log.Timber
-import java.util.Collections
 import kotlin.math.exp
 import kotlin.random.Random
 
-internal class SimulatedAnnealing<T : Any> : VRPWithFixedStagesAlgorithm<T> {
+internal class SimulatedAnnealing<T : Any> : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?,
-    ): List<T> {
-        if (points.size <= 2) {
-            Timber.d("Optimization cannot be done, not enough points ${points.size}")
-            return points
+    ): IntArray {
+        if (tour.size <= 2) {
+            Timber.d("Optimization cannot be done, not enough points ${tour.size}")
+            return tour
         }
-        if (points.size - (immutablePositions?.size ?: 0) <= 2) {
-            Timber.d("Optimization cannot be done, not enough points ${points.size} (${immutablePositions?.size} is blocked)")
-            return points
+        if (tour.size - (immutablePositions?.size ?: 0) <= 2) {
+            Timber.d("Optimization cannot be done, not enough points ${tour.size} (${immutablePositions?.size} is blocked)")
+            return tour
         }
         return withContext(Dispatchers.Default) {
             var t = startingTemperature
             var i = 0
-            var bestDistance = points.distance(distanceCalculation)
-            var bestTravel = points
+            var bestDistance = matrix.distance(tour)
+            var bestTravel = tour
 
-            var travel = ArrayList(points)
+            var travel = tour
 
             while (t > 0.1 && i < numberOfIterations && isActive) {
                 val travelVariation = travel.makeVariation(immutablePositions)
 
-                val variationDistance = travelVariation.distance(distanceCalculation)
+                val variationDistance = matrix.distance(travelVariation)
                 if (variationDistance < bestDistance) {
                     bestDistance = variationDistance
                     bestTravel = travelVariation
@@ -51,19 +51,21 @@ internal class SimulatedAnnealing<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    private fun List<T>.makeVariation(
+    private fun IntArray.makeVariation(
         immutablePositions: List<Int>? = null,
-    ): ArrayList<T> {
+    ): IntArray {
         val minimalSizeToVariate = (immutablePositions?.size ?: 0) + 2
         if (size < minimalSizeToVariate) throw IllegalStateException("Size $size is too small to make variation with ${immutablePositions?.size} blocked positions")
-        return ArrayList(this).also {
+        return copyOf().also {
             val a = generateRandomIndex(immutablePositions)
             val b = generateRandomIndex((immutablePositions ?: emptyList()) + a)
-            Collections.swap(it, a, b)
+            val tmp = it[a]
+            it[a] = it[b]
+            it[b] = tmp
         }
     }
 
-    private fun List<T>.generateRandomIndex(ignored: List<Int>?): Int {
+    private fun IntArray.generateRandomIndex(ignored: List<Int>?): Int {
         while (true) {
             val number = Random.nextInt(size)
             if (ignored?.contains(number) != true) {
@@ -72,16 +74,10 @@ internal class SimulatedAnnealing<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    private suspend fun List<T>.distance(distanceCalculation: suspend (T, T) -> Double): Double =
-        zipWithNext { a, b -> distanceCalculation.invoke(a, b) }.sum()
-
     private companion object {
 
         const val startingTemperature = 10000.0
         const val numberOfIterations = 100000
         const val coolingRate = 0.99
     }
-
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
-}
\ No newline at end of file
+}
@@ -1,29 +1,29 @@
 package com.jacekpietras.zoo.domain.feature.vrp.algorithms
 
-import com.jacekpietras.zoo.domain.feature.vrp.VRPWithFixedStagesAlgorithm
-import com.jacekpietras.zoo.domain.utils.forEachPairIndexed
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.withContext
 
-class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
+internal class TwoOptHeuristicVRP<T : Any> : MatrixVRPWithFixedStagesAlgorithm<T> {
 
     override suspend fun run(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+        matrix: DistanceMatrix,
+        tour: IntArray,
         immutablePositions: List<Int>?
-    ): List<T> {
+    ): IntArray {
         return withContext(Dispatchers.Default) {
             if (immutablePositions.isNullOrEmpty()) {
                 runWithoutImmutable(
-                    points,
-                    distanceCalculation,
+                    matrix,
+                    tour,
                     stopCondition = { !isActive },
                 )
             } else {
                 runWithImmutable(
-                    points,
-                    distanceCalculation,
+                    matrix,
+                    tour,
                     immutablePositions,
                     stopCondition = { !isActive },
                 )
@@ -31,14 +31,14 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    private suspend fun runWithImmutable(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+    private fun runWithImmutable(
+        matrix: DistanceMatrix,
+        points: IntArray,
         immutablePositions: List<Int>?,
         stopCondition: () -> Boolean,
-    ): List<T> {
+    ): IntArray {
         val n = points.size
-        val dist = createWeightArray(points, distanceCalculation)
+        val dist = createWeightArray(matrix, points)
         val tour = IntArray(n + 2) { it }
         tour[n + 1] = 0
 
@@ -52,7 +52,7 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
                     val ci1 = tour[i + 1]
                     val cj = tour[j]
                     val cj1 = tour[j + 1]
-                    val change = dist[ci][cj] + dist[ci1][cj1] - dist[ci][ci1] - dist[cj][cj1]
+                    val change = dist[ci, cj] + dist[ci1, cj1] - dist[ci, ci1] - dist[cj, cj1]
                     if (change < minChange) {
                         if (immutablePositions == null || immutablePositions.allows(i + 1, j, n)) {
                             minChange = change
@@ -69,13 +69,13 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    private suspend fun runWithoutImmutable(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double,
+    private fun runWithoutImmutable(
+        matrix: DistanceMatrix,
+        points: IntArray,
         stopCondition: () -> Boolean,
-    ): List<T> {
+    ): IntArray {
         val n = points.size
-        val dist = createWeightArray(points, distanceCalculation)
+        val dist = createWeightArray(matrix, points)
         val tour = IntArray(n + 2) { it }
         tour[n + 1] = 0
 
@@ -89,7 +89,7 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
                     val ci1 = tour[i + 1]
                     val cj = tour[j]
                     val cj1 = tour[j + 1]
-                    val change = dist[ci][cj] + dist[ci1][cj1] - dist[ci][ci1] - dist[cj][cj1]
+                    val change = dist[ci, cj] + dist[ci1, cj1] - dist[ci, ci1] - dist[cj, cj1]
                     if (change < minChange) {
                         minChange = change
                         mini = i
@@ -104,9 +104,6 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    override suspend fun run(points: List<T>, distanceCalculation: suspend (T, T) -> Double): List<T> =
-        run(points, distanceCalculation, null)
-
     private fun List<Int>.allows(i: Int, j: Int, n: Int): Boolean {
         if ((j - i + 1) % 2 != 0) { // isOdd
             forEach {
@@ -126,17 +123,20 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         return true
     }
 
-    private suspend fun createWeightArray(
-        points: List<T>,
-        distanceCalculation: suspend (T, T) -> Double
-    ): Array<DoubleArray> {
+    // positions in tour are indices here, last one is dummy with no distance to anything
+    private fun createWeightArray(
+        matrix: DistanceMatrix,
+        points: IntArray,
+    ): DistanceMatrix {
         val n = points.size
-        val dist = Array(n + 1) { DoubleArray(n + 1) { 0.0 } }
+        val dist = DistanceMatrix(n + 1)
 
-        points.forEachPairIndexed { si, s, ti, t ->
-            val weight = distanceCalculation(s, t)
-            dist[si][ti] = weight
-            dist[ti][si] = weight
+        for (si in 0 until n - 1) {
+            for (ti in si + 1 until n) {
+                val weight = matrix[points[si], points[ti]]
+                dist[si, ti] = weight
+                dist[ti, si] = weight
+            }
         }
         return dist
     }
@@ -153,10 +153,10 @@ class TwoOptHeuristicVRP<T : Any> : VRPWithFixedStagesAlgorithm<T> {
         }
     }
 
-    private fun <T> toPointList(arr: IntArray, points: List<T>): List<T> {
+    private fun toPointList(arr: IntArray, points: IntArray): IntArray {
         val n = arr.size - 2
         val shift = arr.indexOf(n)
-        return List(n) { points[arr[(it + shift + 1) % (n + 1)]] }
+        return IntArray(n) { points[arr[(it + shift + 1) % (n + 1)]] }
     }
 
     private companion object {
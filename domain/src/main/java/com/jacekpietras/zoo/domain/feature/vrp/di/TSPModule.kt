@@ -1,20 +1,50 @@
 package com.jacekpietras.zoo.domain.feature.vrp.di
 
 import com.jacekpietras.zoo.domain.feature.planner.model.Stage
+import com.jacekpietras.zoo.domain.feature.vrp.PortfolioVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.StageDistanceCache
 import com.jacekpietras.zoo.domain.feature.vrp.StageVRPSolver
 import com.jacekpietras.zoo.domain.feature.vrp.StageVRPSolverImpl
-import com.jacekpietras.zoo.domain.feature.vrp.algorithms.TwoOptHeuristicVRP
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.GeneralizedBranchAndBound
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.HeldKarpVRP
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.IncrementalSimulatedAnnealing
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.LinKernighanVRP
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.LocalSearchVRP
 import com.jacekpietras.zoo.domain.feature.vrp.algorithms.NearestNeighborVRP
 import com.jacekpietras.zoo.domain.feature.vrp.plus
-import com.jacekpietras.zoo.domain.feature.vrp.times
 import org.koin.dsl.module
+import kotlin.random.Random
+
+private const val NEAREST_NEIGHBOR_RESTARTS = 4
+private const val PORTFOLIO_DEADLINE = 2000L
 
 val vrpModule = module {
+    single {
+        StageDistanceCache(
+            repository = getOrNull(),
+        )
+    }
+
     single<StageVRPSolver> {
         StageVRPSolverImpl(
             mapRepository = get(),
             graphAnalyzer = get(),
-            vrpAlgorithm = TwoOptHeuristicVRP<Stage>() * (NearestNeighborVRP<Stage>() + TwoOptHeuristicVRP()),
+            regionDistancesRepository = get(),
+            vrpAlgorithm = PortfolioVRPAlgorithm(
+                members = listOf(
+                    PortfolioVRPAlgorithm.Member("local", LocalSearchVRP<Stage>()),
+                    PortfolioVRPAlgorithm.Member("lin-kernighan", LinKernighanVRP<Stage>()),
+                ) +
+                        List(NEAREST_NEIGHBOR_RESTARTS) { seed ->
+                            PortfolioVRPAlgorithm.Member("nn $seed + local", NearestNeighborVRP<Stage>(Random(seed)) + LocalSearchVRP())
+                        },
+                deadlineMillis = PORTFOLIO_DEADLINE,
+            ),
+            exactAlgorithm = HeldKarpVRP(),
+            generalizedAlgorithm = GeneralizedBranchAndBound(),
+            refineAlgorithm = IncrementalSimulatedAnnealing(IncrementalSimulatedAnnealing.Tempering(budgetMillis = 300)),
+            repairAlgorithm = LocalSearchVRP(),
+            cache = get(),
         )
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.jacekpietras.zoo.domain.feature.vrp.model
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.model.RegionId
+
+// path leads from center of prev region to center of next region
+class CachedRegionPath(
+    val prev: RegionId,
+    val next: RegionId,
+    val distance: Double,
+    val path: List<PointD>,
+)
@@ -0,0 +1,62 @@
+package com.jacekpietras.zoo.domain.feature.vrp.model
+
+// distances between points by their index, kept in one flat array row by row
+internal class DistanceMatrix(val size: Int) {
+
+    private val values = DoubleArray(size * size)
+
+    operator fun get(from: Int, to: Int): Double =
+        values[from * size + to]
+
+    operator fun set(from: Int, to: Int, distance: Double) {
+        values[from * size + to] = distance
+    }
+
+    fun distance(tour: IntArray): Double {
+        var sum = 0.0
+        for (i in 0 until tour.size - 1) {
+            sum += get(tour[i], tour[i + 1])
+        }
+        return sum
+    }
+
+    // distances between points of tour by their position in it
+    fun ordered(tour: IntArray): DistanceMatrix {
+        val result = DistanceMatrix(tour.size)
+        for (a in tour.indices) {
+            for (b in tour.indices) {
+                if (a != b) result[a, b] = get(tour[a], tour[b])
+            }
+        }
+        return result
+    }
+
+    // distances between points of tour by their position in it, averaged in both directions
+    fun symmetric(tour: IntArray): DistanceMatrix {
+        val result = DistanceMatrix(tour.size)
+        for (a in tour.indices) {
+            for (b in tour.indices) {
+                if (a != b) result[a, b] = (get(tour[a], tour[b]) + get(tour[b], tour[a])) / 2
+            }
+        }
+        return result
+    }
+
+    companion object {
+
+        suspend fun <T> of(
+            points: List<T>,
+            distanceCalculation: suspend (T, T) -> Double,
+        ): DistanceMatrix {
+            val matrix = DistanceMatrix(points.size)
+            points.forEachIndexed { from, a ->
+                points.forEachIndexed { to, b ->
+                    if (from != to) {
+                        matrix[from, to] = distanceCalculation(a, b)
+                    }
+                }
+            }
+            return matrix
+        }
+    }
+}
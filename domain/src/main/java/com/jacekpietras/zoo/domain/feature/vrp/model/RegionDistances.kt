@@ -0,0 +1,12 @@
+package com.jacekpietras.zoo.domain.feature.vrp.model
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.model.RegionId
+
+interface RegionDistances {
+
+    fun getDistance(prev: RegionId, next: RegionId): Double?
+
+    // path leads from center of prev region to center of next region
+    fun getPath(prev: RegionId, next: RegionId): List<PointD>?
+}
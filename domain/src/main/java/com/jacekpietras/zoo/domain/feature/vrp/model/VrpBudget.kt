@@ -0,0 +1,9 @@
+package com.jacekpietras.zoo.domain.feature.vrp.model
+
+sealed class VrpBudget {
+
+    data class Time(val millis: Long) : VrpBudget()
+
+    // number of refinement rounds after first full search
+    data class Iterations(val rounds: Int) : VrpBudget()
+}
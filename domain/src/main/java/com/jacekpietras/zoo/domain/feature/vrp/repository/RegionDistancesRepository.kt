@@ -0,0 +1,8 @@
+package com.jacekpietras.zoo.domain.feature.vrp.repository
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.RegionDistances
+
+interface RegionDistancesRepository {
+
+    suspend fun getRegionDistances(): RegionDistances?
+}
@@ -0,0 +1,10 @@
+package com.jacekpietras.zoo.domain.feature.vrp.repository
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.CachedRegionPath
+
+interface RegionPathsCacheRepository {
+
+    suspend fun load(): List<CachedRegionPath>
+
+    suspend fun save(paths: List<CachedRegionPath>)
+}
@@ -15,7 +15,7 @@ class FindNearRegionWithDistanceUseCase(
     suspend fun run(condition: (Region) -> Boolean): Pair<List<PointD>, Double>? =
         findRegionUseCase.run(condition)
             .map { getRegionCenterPointUseCase.run(regionId = it.id) }
-            .map { getShortestPathUseCase.run(it) }
+            .let { getShortestPathUseCase.run(it) }
             .map { it to it.toLengthInMeters() }
             .minByOrNull { (_, length) -> length }
 }
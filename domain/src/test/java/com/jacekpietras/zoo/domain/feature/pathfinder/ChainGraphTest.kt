@@ -0,0 +1,79 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generatePoint
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SearchMode
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class ChainGraphTest {
+
+    @Test
+    fun `collapses nodes inside of roads`() {
+        val random = Random(5)
+        val (_, generated) = generateGraph(random, numberOfCities = 300, connections = 600)
+        val graph = RoadGraph.from(NodeSetFactory(generated.subdivided(random).toPaths(), emptyList()).create())
+
+        val chains = ChainGraph(graph, technicalAllowed = true)
+
+        assertTrue(chains.size < graph.size / 2) { "${chains.size} junctions of ${graph.size} nodes" }
+    }
+
+    @Test
+    fun `finds path as short as dijkstra with technical roads`() = runTest {
+        val random = Random(17)
+        repeat(10) {
+            val (_, generated) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val (technical, roads) = generated.subdivided(random).partition { random.nextInt(5) == 0 }
+            val dijkstra = GraphAnalyzer(SearchMode.DIJKSTRA).also { it.initialize(roads.toPaths(), technical.toPaths()) }
+            val tested = GraphAnalyzer(SearchMode.JUNCTION_A_STAR).also { it.initialize(roads.toPaths(), technical.toPaths()) }
+
+            repeat(40) {
+                val (start, end) = if (random.nextBoolean()) {
+                    generatePoint(random) to generatePoint(random)
+                } else {
+                    // both points close to the same road, so they often end up in the same chain
+                    val road = roads.random(random)
+                    road.pointNear(random) to road.pointNear(random)
+                }
+                val technicalAllowed = random.nextBoolean()
+
+                val expected = dijkstra.getShortestPath(end, start, technicalAllowed, technicalAllowed)
+                val result = tested.getShortestPath(end, start, technicalAllowed, technicalAllowed)
+
+                assertEquals(expected.first(), result.first())
+                assertEquals(expected.last(), result.last())
+                assertEquals(expected.length(), result.length(), 0.001)
+            }
+        }
+    }
+
+    private fun List<List<PointD>>.subdivided(random: Random): List<List<PointD>> =
+        map { (from, to) ->
+            val parts = 2 + random.nextInt(4)
+            (0..parts).map { i ->
+                PointD(
+                    x = from.x + (to.x - from.x) * i / parts,
+                    y = from.y + (to.y - from.y) * i / parts,
+                )
+            }
+        }
+
+    private fun List<PointD>.pointNear(random: Random): PointD {
+        val point = random(random)
+        return PointD(point.x + random.nextDouble(-0.5, 0.5), point.y + random.nextDouble(-0.5, 0.5))
+    }
+
+    private fun List<List<PointD>>.toPaths(): List<MapItemEntity.PathEntity> =
+        map(MapItemEntity::PathEntity)
+
+    private fun List<PointD>.length(): Double =
+        zipWithNext { a, b -> haversine(a.x, a.y, b.x, b.y) }.sum()
+}
@@ -0,0 +1,46 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generatePoint
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SearchMode
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class ContractionHierarchyTest {
+
+    @Test
+    fun `finds path as short as dijkstra with technical roads`() = runTest {
+        val random = Random(21)
+        repeat(10) {
+            val (_, generated) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val (technical, roads) = generated.partition { random.nextInt(5) == 0 }
+            val dijkstra = GraphAnalyzer(SearchMode.DIJKSTRA).also { it.initialize(roads.toPaths(), technical.toPaths()) }
+            val tested = GraphAnalyzer(SearchMode.CONTRACTION_HIERARCHIES).also { it.initialize(roads.toPaths(), technical.toPaths()) }
+            tested.waitForHierarchies()
+
+            repeat(20) {
+                val start = generatePoint(random)
+                val end = generatePoint(random)
+                val technicalAllowed = random.nextBoolean()
+
+                val expected = dijkstra.getShortestPath(end, start, technicalAllowed, technicalAllowed)
+                val result = tested.getShortestPath(end, start, technicalAllowed, technicalAllowed)
+
+                assertEquals(expected.first(), result.first())
+                assertEquals(expected.last(), result.last())
+                assertEquals(expected.length(), result.length(), 0.001)
+            }
+        }
+    }
+
+    private fun List<List<PointD>>.toPaths(): List<MapItemEntity.PathEntity> =
+        map(MapItemEntity::PathEntity)
+
+    private fun List<PointD>.length(): Double =
+        zipWithNext { a, b -> haversine(a.x, a.y, b.x, b.y) }.sum()
+}
@@ -0,0 +1,49 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class IndexedHeapTest {
+
+    @Test
+    fun `polls in order of keys`() {
+        val random = Random(1)
+        val heap = IndexedHeap(1000)
+        val keys = DoubleArray(1000) { random.nextDouble() }
+        keys.forEachIndexed { v, key -> heap.push(v, key) }
+
+        val result = List(1000) { keys[heap.poll()] }
+
+        assertEquals(keys.sorted(), result)
+        assertTrue(heap.isEmpty())
+    }
+
+    @Test
+    fun `decreases key of queued vertex`() {
+        val heap = IndexedHeap(3)
+        heap.push(0, 1.0)
+        heap.push(1, 2.0)
+        heap.push(2, 3.0)
+
+        heap.push(2, 0.5)
+        heap.push(0, 5.0)
+
+        assertEquals(3, heap.size)
+        assertEquals(listOf(2, 0, 1), List(3) { heap.poll() })
+    }
+
+    @Test
+    fun `clear allows to push the same vertices again`() {
+        val heap = IndexedHeap(3)
+        heap.push(0, 1.0)
+        heap.push(1, 2.0)
+
+        heap.clear()
+        heap.push(1, 3.0)
+
+        assertEquals(1, heap.size)
+        assertEquals(1, heap.poll())
+    }
+}
@@ -2,9 +2,12 @@ package com.jacekpietras.zoo.domain.feature.pathfinder
 
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.obsolete.ObsoleteNodeSetFactory
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
+import kotlin.random.Random
 
 internal class NodeSetFactoryTest {
 
@@ -259,6 +262,27 @@ internal class NodeSetFactoryTest {
         nodes[3] noEdgeExist (0 to 0)
     }
 
+    @Test
+    fun `the same graph as with checking every node against every edge`() {
+        val random = Random(3)
+        repeat(20) {
+            val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 400)
+            val paths = roads.chunked(3) { it.flatten() }.map(MapItemEntity::PathEntity)
+            val technical = paths.filterIndexed { i, _ -> i % 5 == 0 }
+
+            val result = NodeSetFactory(paths - technical.toSet(), technical).create()
+            val expected = ObsoleteNodeSetFactory(paths - technical.toSet(), technical).create()
+
+            assertEquals(expected.map { it.point }, result.map { it.point })
+            assertEquals(expected.toEdgeSet(), result.toEdgeSet())
+        }
+    }
+
+    private fun Collection<Node>.toEdgeSet() =
+        allEdges()
+            .map { (p1, p2, technical) -> setOf(p1.point, p2.point) to technical }
+            .toSet()
+
     private fun List<List<Pair<Int, Int>>>.toNodes() =
         NodeSetFactory(this.map { it.map { (x, y) -> PointD(x.toDouble(), y.toDouble()) } }
             .map(MapItemEntity::PathEntity), emptyList())
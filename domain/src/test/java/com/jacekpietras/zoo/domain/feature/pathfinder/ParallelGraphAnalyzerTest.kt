@@ -10,8 +10,10 @@ import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGra
 import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.toGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.toObsoleteGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
 import com.jacekpietras.zoo.domain.feature.pathfinder.obsolete.ObsoleteDijkstra
 import com.jacekpietras.zoo.domain.feature.pathfinder.obsolete.ObsoleteGraphAnalyzer
+import com.jacekpietras.zoo.domain.feature.pathfinder.obsolete.ObsoletePointSnapper
 import com.jacekpietras.zoo.domain.utils.measureMap
 import kotlinx.coroutines.test.runTest
 import org.junit.jupiter.api.Assertions.assertEquals
@@ -556,7 +558,7 @@ internal class ParallelGraphAnalyzerTest {
 
         val map = mutableMapOf<PointD, String>()
         if (print) {
-            printFullGraph(map, parallelGraphAnalyzer.waitForNodes())
+            printFullGraph(map, parallelGraphAnalyzer.waitForGraph())
             println("\n-------------\n")
             println("Expected: ${fullResult.joinToString { (map[it] ?: "") + "(" + it.x.toInt() + "," + it.y.toInt() + ")" }}\n")
         }
@@ -702,7 +704,7 @@ internal class ParallelGraphAnalyzerTest {
     private fun List<Duration>.average() =
         map { it.inWholeNanoseconds }.average().toDuration(DurationUnit.NANOSECONDS)
 
-    private fun printFullGraph(map: MutableMap<PointD, String>, nodes: Collection<Node>) {
+    private fun printFullGraph(map: MutableMap<PointD, String>, graph: RoadGraph) {
         var letter: String? = null
         fun toLetter(point: PointD) =
             (if (map[point] != null) {
@@ -715,10 +717,10 @@ internal class ParallelGraphAnalyzerTest {
                     }
             }) + "(" + point.x.toInt() + "," + point.y.toInt() + ")"
 
-        println(nodes.joinToString("\n") { node ->
-            toLetter(node.point) + "\nedges:\n" + node.edges.joinToString("\n") { edge ->
+        println((0 until graph.size).joinToString("\n") { node ->
+            toLetter(graph.point(node)) + "\nedges:\n" + (graph.edgeOffsets[node] until graph.edgeOffsets[node + 1]).joinToString("\n") { edge ->
                 " -> " +
-                        toLetter(edge.node.point)
+                        toLetter(graph.point(graph.edgeTargets[edge]))
             } + "\n"
         })
     }
@@ -727,11 +729,11 @@ internal class ParallelGraphAnalyzerTest {
         abs(a - b) > (a / 1_000_000)
 
     private suspend fun List<PointD>.assertExistingRoute(graph: GraphAnalyzer) {
+        val roadGraph = graph.waitForGraph()
         zipWithNext { a, b ->
-            val foundConnection = graph
-                .waitForNodes()
+            val foundConnection = roadGraph
                 .allEdges()
-                .map { it.first.point to it.second.point }
+                .map { roadGraph.point(it.first) to roadGraph.point(it.second) }
                 .any { (v1, v2) -> a == v1 && b == v2 || a == v2 && b == v1 }
             assertNotNull(foundConnection) { "Not found connection $a <-> $b" }
         }
@@ -776,7 +778,7 @@ internal class ParallelGraphAnalyzerTest {
         technicalAllowedAtStart: Boolean = true,
         technicalAllowedAtEnd: Boolean = false,
     ): List<PointD> {
-        val snapper = PointSnapper()
+        val snapper = ObsoletePointSnapper()
         val nodes = graphAnalyzer.waitForNodes()
 
         if (startPoint == null) return listOf(endPoint)
@@ -0,0 +1,61 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+internal class PathSnapperTest {
+
+    private val a = PointD(20.0, 52.0)
+    private val b = PointD(20.0001, 52.0)
+    private val c = PointD(20.0002, 52.0)
+    private val d = PointD(20.0003, 52.0)
+    private val onAB = PointD(20.00005, 52.0)
+    private val onCD = PointD(20.00025, 52.0)
+
+    // corner between points on not neighbouring edges is not guessed, only parts on both edges are visited
+    @Test
+    fun `corner between not neighbouring edges is not visited`() = runTest {
+        val snapper = PathSnapper(graphOf(roads = listOf(PathEntity(listOf(a, b, c, d)))))
+
+        val parts = snapper.snapToEdgeParts(PathEntity(listOf(onAB, onCD)))
+
+        assertTrue(parts.none { it.from == b && it.to == c })
+        assertTrue(parts.none { it.from == a && it.to == b })
+        assertTrue(parts.none { it.from == c && it.to == d })
+    }
+
+    @Test
+    fun `corner between neighbouring edges is visited through common node`() = runTest {
+        val snapper = PathSnapper(graphOf(roads = listOf(PathEntity(listOf(a, b, c)))))
+
+        val parts = snapper.snapToEdgeParts(PathEntity(listOf(onAB, PointD(20.00015, 52.0))))
+
+        val first = parts.single { it.from == a && it.to == b }
+        val second = parts.single { it.from == b && it.to == c }
+        assertEquals(0.5, first.range.start, 0.001)
+        assertEquals(1.0, first.range.endInclusive, 0.001)
+        assertEquals(0.0, second.range.start, 0.001)
+        assertEquals(0.5, second.range.endInclusive, 0.001)
+    }
+
+    @Test
+    fun `route crossing technical road is not visited`() = runTest {
+        val snapper = PathSnapper(
+            graphOf(
+                roads = listOf(PathEntity(listOf(a, b)), PathEntity(listOf(c, d))),
+                technical = listOf(PathEntity(listOf(b, c))),
+            )
+        )
+
+        val parts = snapper.snapToEdgeParts(PathEntity(listOf(onAB, onCD)))
+
+        assertTrue(parts.none { it.from == b && it.to == c })
+    }
+
+    private fun graphOf(roads: List<PathEntity>, technical: List<PathEntity> = emptyList()): GraphAnalyzer =
+        GraphAnalyzer().also { it.initialize(roads, technical) }
+}
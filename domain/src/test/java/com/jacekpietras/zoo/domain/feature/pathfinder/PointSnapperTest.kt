@@ -0,0 +1,55 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generatePoint
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.obsolete.ObsoletePointSnapper
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class PointSnapperTest {
+
+    @Test
+    fun `snapping with grid is the same as checking every edge`() {
+        val random = Random(7)
+        repeat(20) {
+            val (_, roads) = generateGraph(random, numberOfCities = 200, connections = 300)
+            val technical = roads.filterIndexed { i, _ -> i % 4 == 0 }
+            val nodes = NodeSetFactory(
+                roads.map(MapItemEntity::PathEntity),
+                technical.map(MapItemEntity::PathEntity),
+            ).create()
+            val graph = RoadGraph.from(nodes)
+            val snapper = PointSnapper(graph)
+            val obsoleteSnapper = ObsoletePointSnapper()
+
+            repeat(50) {
+                val point = generatePoint(random)
+                listOf(true, false).forEach { technicalAllowed ->
+                    val expected = obsoleteSnapper.getSnappedOnEdge(nodes, point, technicalAllowed)
+                    val result = snapper.getSnappedOnEdge(point, technicalAllowed)
+
+                    assertEquals(expected.point, result.point)
+                    assertEquals(expected.near1.point, graph.point(result.near1))
+                    assertEquals(expected.near2.point, graph.point(result.near2))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `snapping on node`() {
+        val roads = listOf(
+            listOf(PointD(0, 0), PointD(10, 0)),
+            listOf(PointD(10, 0), PointD(10, 10)),
+        )
+        val graph = RoadGraph.from(NodeSetFactory(roads.map(MapItemEntity::PathEntity), emptyList()).create())
+
+        val result = PointSnapper(graph).getSnappedOn(PointD(11, -1), technicalAllowed = false)
+
+        assertEquals(PointD(10, 0), result.point)
+    }
+}
@@ -0,0 +1,104 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generatePoint
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SearchMode
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class SearchModeTest {
+
+    @Test
+    fun `a star finds path as short as dijkstra`() = runTest {
+        compareWithDijkstra(SearchMode.A_STAR)
+    }
+
+    @Test
+    fun `a star finds path as short as dijkstra with technical roads`() = runTest {
+        compareWithDijkstraOnTechnicalRoads(SearchMode.A_STAR)
+    }
+
+    @Test
+    fun `a star on junctions finds path as short as dijkstra`() = runTest {
+        compareWithDijkstra(SearchMode.JUNCTION_A_STAR)
+    }
+
+    @Test
+    fun `bidirectional finds path as short as dijkstra`() = runTest {
+        compareWithDijkstra(SearchMode.BIDIRECTIONAL)
+    }
+
+    @Test
+    fun `bidirectional finds path as short as dijkstra with technical roads`() = runTest {
+        compareWithDijkstraOnTechnicalRoads(SearchMode.BIDIRECTIONAL)
+    }
+
+    @Test
+    fun `contraction hierarchies finds path as short as dijkstra`() = runTest {
+        compareWithDijkstra(SearchMode.CONTRACTION_HIERARCHIES)
+    }
+
+    private suspend fun compareWithDijkstra(searchMode: SearchMode) {
+        val random = Random(11)
+        repeat(10) {
+            val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val dijkstra = roads.toGraph(SearchMode.DIJKSTRA)
+            val tested = roads.toGraph(searchMode)
+            tested.waitForHierarchies()
+
+            repeat(20) {
+                val start = generatePoint(random)
+                val end = generatePoint(random)
+
+                val expected = dijkstra.getShortestPath(end, start, technicalAllowedAtEnd = true)
+                val result = tested.getShortestPath(end, start, technicalAllowedAtEnd = true)
+
+                assertEquals(expected.first(), result.first())
+                assertEquals(expected.last(), result.last())
+                assertEquals(expected.length(), result.length(), 0.001)
+            }
+        }
+    }
+
+    // technical road is walked at start, at end or only crossed in the middle
+    private suspend fun compareWithDijkstraOnTechnicalRoads(searchMode: SearchMode) {
+        val random = Random(13)
+        repeat(10) {
+            val (_, generated) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val (technical, roads) = generated.partition { random.nextInt(5) == 0 }
+            val dijkstra = roads.toGraph(SearchMode.DIJKSTRA, technical)
+            val tested = roads.toGraph(searchMode, technical)
+
+            repeat(30) { i ->
+                val onTechnical = technical.random(random).let { (a, b) -> PointD((a.x + b.x) / 2, (a.y + b.y) / 2) }
+                val technicalAtStart = i % 3 == 0
+                val technicalAtEnd = i % 3 == 1
+                val start = if (technicalAtStart) onTechnical else generatePoint(random)
+                val end = if (technicalAtEnd) onTechnical else generatePoint(random)
+
+                val expected = dijkstra.getShortestPath(end, start, technicalAtStart, technicalAtEnd)
+                val result = tested.getShortestPath(end, start, technicalAtStart, technicalAtEnd)
+
+                assertEquals(expected.first(), result.first())
+                assertEquals(expected.last(), result.last())
+                assertEquals(expected.length(), result.length(), 0.001)
+            }
+        }
+    }
+
+    private fun List<List<PointD>>.toGraph(
+        searchMode: SearchMode,
+        technical: List<List<PointD>> = emptyList(),
+    ): GraphAnalyzer =
+        GraphAnalyzer(searchMode).also {
+            it.initialize(map(MapItemEntity::PathEntity), technical.map(MapItemEntity::PathEntity))
+        }
+
+    private fun List<PointD>.length(): Double =
+        zipWithNext { a, b -> haversine(a.x, a.y, b.x, b.y) }.sum()
+}
@@ -0,0 +1,98 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generateGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.generatePoint
+import com.jacekpietras.zoo.domain.feature.pathfinder.ShortestPathInGeneratedGraphTest.Companion.toGraph
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class ShortestPathsTest {
+
+    @Test
+    fun `one search finds the same paths as search for each end`() = runTest {
+        val random = Random(5)
+        repeat(10) {
+            val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val graphAnalyzer = roads.toGraph()
+            val start = generatePoint(random)
+            val ends = List(20) { generatePoint(random) } + start
+
+            val result = graphAnalyzer.getShortestPaths(start, ends, technicalAllowedAtEnd = true)
+
+            ends.forEachIndexed { i, end ->
+                val expected = graphAnalyzer.getShortestPath(end, start, technicalAllowedAtEnd = true)
+
+                assertEquals(expected.first(), result.path(i).first())
+                assertEquals(expected.last(), result.path(i).last())
+                assertEquals(expected.length(), result.path(i).length(), 0.001)
+                assertEquals(expected.length(), result.distance(i), 0.001)
+            }
+        }
+    }
+
+    @Test
+    fun `one search finds the same paths as search from each start`() = runTest {
+        val random = Random(6)
+        repeat(10) {
+            val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val graphAnalyzer = roads.toGraph()
+            val end = generatePoint(random)
+            val starts = List(20) { generatePoint(random) } + end
+
+            val result = graphAnalyzer.getShortestPathsTo(end, starts, technicalAllowedAtEnd = true)
+
+            starts.forEachIndexed { i, start ->
+                val expected = graphAnalyzer.getShortestPath(end, start, technicalAllowedAtEnd = true)
+
+                assertEquals(expected.first(), result.path(i).first())
+                assertEquals(expected.last(), result.path(i).last())
+                assertEquals(expected.length(), result.path(i).length(), 0.001)
+                assertEquals(expected.length(), result.distance(i), 0.001)
+            }
+        }
+    }
+
+    @Test
+    fun `paths are built correctly after next search took over its state`() = runTest {
+        val random = Random(7)
+        val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 600)
+        val graphAnalyzer = roads.toGraph()
+        val start = generatePoint(random)
+        val ends = List(20) { generatePoint(random) }
+
+        val result = graphAnalyzer.getShortestPaths(start, ends, technicalAllowedAtEnd = true)
+        graphAnalyzer.getShortestPaths(generatePoint(random), ends, technicalAllowedAtEnd = true)
+
+        ends.forEachIndexed { i, end ->
+            val expected = graphAnalyzer.getShortestPath(end, start, technicalAllowedAtEnd = true)
+
+            assertEquals(expected, result.path(i))
+        }
+    }
+
+    @Test
+    fun `batch of pairs finds the same paths in input order`() = runTest {
+        val random = Random(8)
+        repeat(10) {
+            val (_, roads) = generateGraph(random, numberOfCities = 300, connections = 600)
+            val graphAnalyzer = roads.toGraph()
+            val pairs = List(50) { generatePoint(random) to generatePoint(random) }
+
+            val result = graphAnalyzer.getShortestPaths(pairs, technicalAllowedAtEnd = true)
+
+            assertEquals(pairs.size, result.size)
+            pairs.forEachIndexed { i, (start, end) ->
+                val expected = graphAnalyzer.getShortestPath(end, start, technicalAllowedAtEnd = true)
+
+                assertEquals(expected, result[i])
+            }
+        }
+    }
+
+    private fun List<PointD>.length(): Double =
+        zipWithNext { a, b -> haversine(a.x, a.y, b.x, b.y) }.sum()
+}
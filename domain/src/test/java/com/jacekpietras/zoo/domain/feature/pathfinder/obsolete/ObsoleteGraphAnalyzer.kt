@@ -5,9 +5,7 @@ package com.jacekpietras.zoo.domain.feature.pathfinder.obsolete
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
 import com.jacekpietras.zoo.domain.feature.pathfinder.NodeSetFactory
-import com.jacekpietras.zoo.domain.feature.pathfinder.PointSnapper
 import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
-import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnEdge
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
@@ -15,7 +13,7 @@ import kotlinx.coroutines.sync.withLock
 internal class ObsoleteGraphAnalyzer {
 
     private var nodes: MutableSet<Node>? = null
-    private val snapper = PointSnapper()
+    private val snapper = ObsoletePointSnapper()
     private val mutex = Mutex()
 
     fun initialize(roads: List<PathEntity>, technical: List<PathEntity>) {
@@ -36,7 +34,7 @@ internal class ObsoleteGraphAnalyzer {
     suspend fun getSnappedPointOnEdge(
         point: PointD,
         technicalAllowed: Boolean,
-    ): SnappedOnEdge =
+    ): ObsoleteSnappedOnEdge =
         mutex.withLock {
             snapper.getSnappedOnEdge(
                 waitForNodes(),
@@ -46,8 +44,8 @@ internal class ObsoleteGraphAnalyzer {
         }
 
     suspend fun getShortestPathWithContext(
-        endPoint: SnappedOnEdge,
-        startPoint: SnappedOnEdge,
+        endPoint: ObsoleteSnappedOnEdge,
+        startPoint: ObsoleteSnappedOnEdge,
         technicalAllowed: Boolean = false,
     ): List<Node> =
         mutex.withLock {
@@ -134,7 +132,7 @@ internal class ObsoleteGraphAnalyzer {
         return checkNotNull(nodes)
     }
 
-    internal suspend fun makeNode(snap: SnappedOnEdge): SnappedNode =
+    internal suspend fun makeNode(snap: ObsoleteSnappedOnEdge): SnappedNode =
         when (snap.point) {
             snap.near1.point -> SnappedNode(snap.near1)
             snap.near2.point -> SnappedNode(snap.near2)
@@ -142,7 +140,7 @@ internal class ObsoleteGraphAnalyzer {
         }
 
     private suspend fun createAndConnect(
-        snap: SnappedOnEdge,
+        snap: ObsoleteSnappedOnEdge,
     ): NewSnappedNode {
         val node = Node(snap.point)
 
@@ -0,0 +1,55 @@
+package com.jacekpietras.zoo.domain.feature.pathfinder.obsolete
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.pow2
+import com.jacekpietras.zoo.domain.feature.pathfinder.forAllEdges
+import com.jacekpietras.zoo.domain.feature.pathfinder.haversine
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.Node
+
+internal class ObsoletePointSnapper {
+
+    fun getSnappedOnEdge(
+        nodes: Iterable<Node>,
+        source: PointD,
+        technicalAllowed: Boolean,
+    ): ObsoleteSnappedOnEdge {
+        var result: ObsoleteSnappedOnEdge? = null
+        var shortest: Double = Double.MAX_VALUE
+
+        nodes.forAllEdges { p1, p2, technical ->
+            if (technicalAllowed || !technical) {
+                val found = getSnappedToEdge(source, p1.point, p2.point)
+                val foundToSource = haversine(source, found)
+                if (foundToSource < shortest) {
+                    shortest = foundToSource
+                    result = ObsoleteSnappedOnEdge(found, p1, p2)
+                    if (shortest == 0.0) {
+                        return checkNotNull(result)
+                    }
+                }
+            }
+        }
+
+        return checkNotNull(result)
+    }
+
+    private fun getSnappedToEdge(source: PointD, p1: PointD, p2: PointD): PointD {
+        val u = ((source.x - p1.x) * (p2.x - p1.x) + (source.y - p1.y) * (p2.y - p1.y)) /
+                ((p2.x - p1.x).pow2 + (p2.y - p1.y).pow2)
+
+        return when {
+            u < 0 -> p1
+            u > 1 -> p2
+            else -> PointD(
+                p1.x + u * (p2.x - p1.x),
+                p1.y + u * (p2.y - p1.y),
+            )
+        }
+    }
+}
+
+internal data class ObsoleteSnappedOnEdge(
+    val point: PointD,
+    val near1: Node,
+    val near2: Node,
+)
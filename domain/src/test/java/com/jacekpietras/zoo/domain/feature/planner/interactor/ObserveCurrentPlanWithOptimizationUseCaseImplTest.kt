@@ -22,7 +22,9 @@ import kotlinx.coroutines.test.advanceTimeBy
 import kotlinx.coroutines.test.runTest
 import org.junit.jupiter.api.Test
 import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
 import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.times
 import org.mockito.kotlin.verify
@@ -62,7 +64,7 @@ internal class ObserveCurrentPlanWithOptimizationUseCaseImplTest {
     fun `when vrp solver is producing data, then better solution is returned`() = runTest {
         whenever(mockObserveCurrentPlanUseCase.run()).thenReturn(flowOf(initialPlanFor4))
         whenever(mockGpsRepository.observeLatestPosition()).thenReturn(flowOf())
-        whenever(mockVrpSolver.findShortPathAndStages(initialStagesFor4)).doReturn(computedSolutionFor4)
+        whenever(mockVrpSolver.findShortPathAndStagesProgressively(eq(initialStagesFor4), any(), anyOrNull())).doReturn(flowOf(computedSolutionFor4))
 
         val result = useCase.run()
 
@@ -85,8 +87,10 @@ internal class ObserveCurrentPlanWithOptimizationUseCaseImplTest {
 
         whenever(mockObserveCurrentPlanUseCase.run()).thenReturn(planFlow)
         whenever(mockGpsRepository.observeLatestPosition()).thenReturn(flowOf())
-        whenever(mockVrpSolver.findShortPathAndStages(initialStagesFor4)).thenReturn(computedSolutionFor4, optimalSolutionFor4)
-        whenever(mockVrpSolver.findShortPathAndStages(initialStagesFor5)).thenReturn(computedSolutionFor5)
+        whenever(mockVrpSolver.findShortPathAndStagesProgressively(eq(initialStagesFor4), any(), anyOrNull()))
+            .thenReturn(flowOf(computedSolutionFor4), flowOf(optimalSolutionFor4))
+        whenever(mockVrpSolver.findShortPathAndStagesProgressively(eq(initialStagesFor5), any(), anyOrNull()))
+            .thenReturn(flowOf(computedSolutionFor5))
 
         val result = useCase.run()
 
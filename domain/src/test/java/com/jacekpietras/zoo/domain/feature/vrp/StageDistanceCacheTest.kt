@@ -0,0 +1,132 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.vrp.model.CachedRegionPath
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionPathsCacheRepository
+import com.jacekpietras.zoo.domain.model.RegionId
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+internal class StageDistanceCacheTest {
+
+    @Test
+    fun `region pairs are found only in searched direction after many inserts`() {
+        val cache = StageDistanceCache()
+        val regions = List(60) { RegionId("region $it") }
+
+        regions.forEachIndexed { i, prev ->
+            regions.drop(i + 1).forEach { next ->
+                cache.putRegion(prev, next, distance(prev, next), listOf(PointD(i.toDouble(), 0.0), PointD(0.0, 1.0)))
+            }
+        }
+
+        regions.forEachIndexed { i, prev ->
+            regions.drop(i + 1).forEach { next ->
+                assertEquals(distance(prev, next), cache.getRegion(prev, next)?.distance)
+                assertNull(cache.getRegion(next, prev))
+            }
+        }
+        assertNull(cache.getRegion(regions[0], RegionId("unknown")))
+        assertEquals(listOf(PointD(3.0, 0.0), PointD(0.0, 1.0)), cache.getRegion(regions[3], regions[4])?.path)
+    }
+
+    @Test
+    fun `least recently used point pairs are evicted`() {
+        val cache = StageDistanceCache(pointCapacity = 2)
+        val a = PointD(1.0, 1.0)
+        val b = PointD(2.0, 2.0)
+        val c = PointD(3.0, 3.0)
+        val d = PointD(4.0, 4.0)
+
+        cache.putPoint(a, b, Calculation(1.0, listOf(a, b)))
+        cache.putPoint(b, c, Calculation(2.0, listOf(b, c)))
+        cache.getPoint(a, b)
+        cache.putPoint(c, d, Calculation(3.0, listOf(c, d)))
+
+        assertNotNull(cache.getPoint(a, b))
+        assertNull(cache.getPoint(b, c))
+        assertNotNull(cache.getPoint(c, d))
+    }
+
+    @Test
+    fun `region pairs are restored by next cache`() = runTest {
+        val repository = InMemoryRepository()
+        val prev = RegionId("prev")
+        val next = RegionId("next")
+        val path = listOf(PointD(0.0, 0.0), PointD(1.0, 1.0))
+
+        StageDistanceCache(repository).apply {
+            restore()
+            putRegion(prev, next, 12.0, path)
+            putPoint(PointD(5.0, 5.0), PointD(6.0, 6.0), Calculation(1.0, emptyList()))
+            persist()
+        }
+        val restored = StageDistanceCache(repository).apply { restore() }
+
+        assertEquals(12.0, restored.getRegion(prev, next)?.distance)
+        assertEquals(path, restored.getRegion(prev, next)?.path)
+        assertNull(restored.getRegion(next, prev))
+        assertNull(restored.getPoint(PointD(5.0, 5.0), PointD(6.0, 6.0)))
+    }
+
+    @Test
+    fun `failed restore is tried again and successful one is not repeated`() = runTest {
+        val repository = InMemoryRepository()
+        val prev = RegionId("prev")
+        val next = RegionId("next")
+        StageDistanceCache(repository).apply {
+            putRegion(prev, next, 12.0, emptyList())
+            persist()
+        }
+        repository.failures = 1
+        val cache = StageDistanceCache(repository)
+
+        cache.restore()
+        assertNull(cache.getRegion(prev, next))
+        cache.restore()
+        cache.restore()
+
+        assertEquals(12.0, cache.getRegion(prev, next)?.distance)
+        assertEquals(2, repository.loads)
+    }
+
+    @Test
+    fun `nothing is saved when no region pair was added`() = runTest {
+        val repository = InMemoryRepository()
+        val cache = StageDistanceCache(repository)
+
+        cache.restore()
+        cache.putPoint(PointD(5.0, 5.0), PointD(6.0, 6.0), Calculation(1.0, emptyList()))
+        cache.persist()
+
+        assertEquals(0, repository.saves)
+    }
+
+    private fun distance(prev: RegionId, next: RegionId): Double =
+        (prev.id.length + next.id.length).toDouble() + prev.id.hashCode() % 7 + next.id.hashCode() % 7
+
+    private class InMemoryRepository : RegionPathsCacheRepository {
+
+        private var saved = emptyList<CachedRegionPath>()
+        var saves = 0
+        var loads = 0
+        var failures = 0
+
+        override suspend fun load(): List<CachedRegionPath> {
+            loads++
+            if (failures > 0) {
+                failures--
+                throw IllegalStateException("Cache file not readable")
+            }
+            return saved
+        }
+
+        override suspend fun save(paths: List<CachedRegionPath>) {
+            saved = paths
+            saves++
+        }
+    }
+}
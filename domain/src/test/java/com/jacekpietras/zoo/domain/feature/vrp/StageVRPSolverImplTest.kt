@@ -0,0 +1,127 @@
+package com.jacekpietras.zoo.domain.feature.vrp
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PolygonEntity
+import com.jacekpietras.zoo.domain.feature.map.repository.MapRepository
+import com.jacekpietras.zoo.domain.feature.pathfinder.GraphAnalyzer
+import com.jacekpietras.zoo.domain.feature.planner.model.Stage
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.GeneralizedBranchAndBound
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.HeldKarpVRP
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.LocalSearchVRP
+import com.jacekpietras.zoo.domain.feature.vrp.model.VrpBudget
+import com.jacekpietras.zoo.domain.feature.vrp.repository.RegionDistancesRepository
+import com.jacekpietras.zoo.domain.model.Region
+import com.jacekpietras.zoo.domain.model.RegionId
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.clearInvocations
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.spy
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+
+internal class StageVRPSolverImplTest {
+
+    private val mockMapRepository = mock<MapRepository>()
+    private val mockRegionDistancesRepository = mock<RegionDistancesRepository>()
+    private val graphAnalyzer = spy(GraphAnalyzer().apply { initialize(gridRoads(), emptyList()) })
+    private val vrpAlgorithm = spy(LocalSearchVRP<Stage>())
+
+    private val solver = StageVRPSolverImpl(
+        graphAnalyzer = graphAnalyzer,
+        mapRepository = mockMapRepository,
+        regionDistancesRepository = mockRegionDistancesRepository,
+        vrpAlgorithm = vrpAlgorithm,
+        exactAlgorithm = HeldKarpVRP(),
+        generalizedAlgorithm = GeneralizedBranchAndBound(),
+        refineAlgorithm = LocalSearchVRP(),
+        repairAlgorithm = LocalSearchVRP(),
+        cache = StageDistanceCache(),
+    )
+
+    @Test
+    fun `when only user moved, then tour is repaired with single search each way`() = runTest {
+        val regions = listOf(1 to 1, 3 to 0, 0 to 3, 3 to 3, 2 to 2).mapIndexed { i, (x, y) ->
+            Region.AnimalRegion(RegionId("region $i")) to square(x, y)
+        }
+        whenever(mockMapRepository.getCurrentRegions()).thenReturn(regions)
+        whenever(mockRegionDistancesRepository.getRegionDistances()).thenReturn(null)
+        val regionStages = regions.map { (region, _) -> Stage.InRegion(region) }
+
+        solver.findShortPathAndStagesProgressively(
+            stages = listOf(Stage.InUserPosition(gridPoint(0, 0))) + regionStages,
+            budget = VrpBudget.Iterations(0),
+            warmStart = null,
+        ).toList()
+        clearInvocations(graphAnalyzer)
+
+        val moved = Stage.InUserPosition(PointD(gridPoint(0, 0).x + STEP / 10, gridPoint(0, 0).y))
+        val results = solver.findShortPathAndStagesProgressively(
+            stages = listOf(moved) + regionStages,
+            budget = VrpBudget.Iterations(0),
+            warmStart = null,
+        ).toList()
+
+        assertEquals(1, results.size)
+        assertEquals(moved, results.single().stages.first())
+        verify(graphAnalyzer, times(1)).getShortestPaths(any<PointD>(), any(), any(), any())
+        verify(graphAnalyzer, times(1)).getShortestPathsTo(any(), any(), any(), any())
+        verify(graphAnalyzer, never()).getShortestPath(any(), anyOrNull(), any(), any())
+    }
+
+    @Test
+    fun `when plan is small, then heuristics are skipped for exact solver`() = runTest {
+        val regions = listOf(1 to 1, 3 to 0, 0 to 3, 3 to 3, 2 to 2).mapIndexed { i, (x, y) ->
+            Region.AnimalRegion(RegionId("region $i")) to square(x, y)
+        }
+        whenever(mockMapRepository.getCurrentRegions()).thenReturn(regions)
+        whenever(mockRegionDistancesRepository.getRegionDistances()).thenReturn(null)
+        val regionStages = regions.map { (region, _) -> Stage.InRegion(region) }
+
+        val results = solver.findShortPathAndStagesProgressively(
+            stages = listOf(Stage.InUserPosition(gridPoint(0, 0))) + regionStages,
+            budget = VrpBudget.Iterations(0),
+            warmStart = null,
+        ).toList()
+
+        assertEquals(regionStages.toSet(), results.last().stages.drop(1).toSet())
+        verify(vrpAlgorithm, never()).run(any(), any(), anyOrNull())
+    }
+
+    private fun gridRoads(): List<PathEntity> =
+        (0 until GRID).flatMap { i ->
+            listOf(
+                PathEntity((0 until GRID).map { gridPoint(it, i) }),
+                PathEntity((0 until GRID).map { gridPoint(i, it) }),
+            )
+        }
+
+    private fun square(x: Int, y: Int): PolygonEntity {
+        val center = gridPoint(x, y)
+        val half = STEP / 4
+        return PolygonEntity(
+            listOf(
+                PointD(center.x - half, center.y - half),
+                PointD(center.x + half, center.y - half),
+                PointD(center.x + half, center.y + half),
+                PointD(center.x - half, center.y + half),
+            )
+        )
+    }
+
+    private fun gridPoint(x: Int, y: Int): PointD =
+        PointD(20.0 + x * STEP, 52.0 + y * STEP)
+
+    private companion object {
+
+        const val GRID = 4
+        const val STEP = 0.001
+    }
+}
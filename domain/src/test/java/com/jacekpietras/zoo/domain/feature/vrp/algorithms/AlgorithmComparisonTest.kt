@@ -232,22 +232,31 @@ internal class AlgorithmComparisonTest {
             // "TwoOpt (my)" to MyTwoOptHeuristicTSP(),
             "TwoOpt (my new)" to TwoOptHeuristicVRP(),
 
+            // 2-opt and Or-opt over nearest neighbours only
+            "LocalSearch" to LocalSearchVRP(),
+
             // Lin-Kernighan, should often give optimal solution
             // ...in theory :( looks like that algorithm is incorrect
             // Probably better port from ANSI C - http://akira.ruc.dk/~keld/research/
             "Lin-Kernighan (lib)" to LinKernighanFromLibAdapter(),
+            "Lin-Kernighan" to LinKernighanVRP(),
 
             // Genetic
             // "SimulatedAnnealing" to SimulatedAnnealing(),
+            "Annealing (incremental)" to IncrementalSimulatedAnnealing(),
+            "Annealing (tempering)" to IncrementalSimulatedAnnealing(IncrementalSimulatedAnnealing.Tempering(budgetMillis = 20)),
 
             // combinations
             "2opt + anne" to TwoOptHeuristicVRP<City>() + SimulatedAnnealing(),
             "nn + 2opt" to NearestNeighborVRP<City>() + TwoOptHeuristicVRP(),
             "2opt * (nn + 2opt)" to TwoOptHeuristicVRP<City>() * (NearestNeighborVRP<City>() + TwoOptHeuristicVRP()),
+            "nn + local" to NearestNeighborVRP<City>() + LocalSearchVRP(),
+            "local * (nn + local)" to LocalSearchVRP<City>() * (NearestNeighborVRP<City>() + LocalSearchVRP()),
+            "nn + lk" to NearestNeighborVRP<City>() + LinKernighanVRP(),
         )
 
         @Suppress("unused")
-        private fun divorcedVRP(algorithm: HamiltonianCycleAlgorithm<City, DefaultWeightedEdge>) =
-            DivorcedVRPAlgorithm(JGraphTSPAlgorithm(algorithm), City(-1, -1))
+        private fun divorcedVRP(algorithm: HamiltonianCycleAlgorithm<Int, DefaultWeightedEdge>) =
+            DivorcedVRPAlgorithm(JGraphTSPAlgorithm<City>(algorithm))
     }
 }
\ No newline at end of file
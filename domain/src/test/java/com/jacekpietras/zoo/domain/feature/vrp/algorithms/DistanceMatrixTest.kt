@@ -0,0 +1,70 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.DivorcedVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.PortfolioVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.plus
+import com.jacekpietras.zoo.domain.feature.vrp.times
+import kotlinx.coroutines.test.runTest
+import org.jgrapht.alg.tour.TwoOptHeuristicTSP
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class DistanceMatrixTest {
+
+    private val cities = Random(7).let { random ->
+        List(20) { City(random.nextInt(500), random.nextInt(500)) }
+    }
+
+    @Test
+    fun `matrix keeps directed distances`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) + if (a.x < b.x) 1.0 else 0.0 }
+
+        cities.forEachIndexed { i, a ->
+            cities.forEachIndexed { j, b ->
+                val expected = if (i == j) 0.0 else a.distanceToCity(b) + if (a.x < b.x) 1.0 else 0.0
+                assertEquals(expected, matrix[i, j])
+            }
+        }
+    }
+
+    @Test
+    fun `tour distance is sum of its steps`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+
+        assertEquals(cities.distance(), matrix.distance(IntArray(cities.size) { it }), 0.0001)
+    }
+
+    @Test
+    fun `algorithms keep fixed positions of starting tour`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(3)) }
+        val immutablePositions = listOf(0, cities.lastIndex)
+
+        algorithms.forEach { algorithm ->
+            val result = algorithm.run(matrix, tour, immutablePositions)
+
+            assertEquals(tour.toSet(), result.toSet())
+            assertEquals(tour.size, result.size)
+            assertEquals(tour.first(), result.first())
+            assertEquals(tour.last(), result.last())
+        }
+    }
+
+    private val algorithms = listOf<MatrixVRPWithFixedStagesAlgorithm<City>>(
+        TwoOptHeuristicVRP(),
+        NearestNeighborVRP<City>() + TwoOptHeuristicVRP(),
+        TwoOptHeuristicVRP<City>() * SimulatedAnnealing(),
+        DivorcedVRPAlgorithm(JGraphTSPAlgorithm(TwoOptHeuristicTSP(1, java.util.Random(1)))),
+        LocalSearchVRP(),
+        LinKernighanVRP(),
+        IncrementalSimulatedAnnealing(),
+        IncrementalSimulatedAnnealing(IncrementalSimulatedAnnealing.Tempering(budgetMillis = 20, replicas = 4)),
+        PortfolioVRPAlgorithm(
+            members = List(3) { seed -> PortfolioVRPAlgorithm.Member("nn $seed + local", NearestNeighborVRP<City>(Random(seed)) + LocalSearchVRP()) },
+            deadlineMillis = 1000,
+        ),
+    )
+}
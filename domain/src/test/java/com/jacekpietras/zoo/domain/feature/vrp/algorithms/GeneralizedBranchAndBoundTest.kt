@@ -0,0 +1,80 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class GeneralizedBranchAndBoundTest {
+
+    @Test
+    fun `finds optimal path with one point of every cluster`() = runTest {
+        val random = Random(21)
+        repeat(20) {
+            val (matrix, clusters) = generate(random, numberOfClusters = 6)
+            val immutablePositions = listOf(0, 4).filter { random.nextBoolean() }
+
+            val result = GeneralizedBranchAndBound().run(matrix, clusters, immutablePositions)
+
+            assertValid(result, clusters, immutablePositions)
+            assertEquals(bruteForce(matrix, clusters, immutablePositions), matrix.distance(result), 0.0001)
+        }
+    }
+
+    @Test
+    fun `returns best found path after visiting limited number of nodes`() = runTest {
+        val random = Random(3)
+        val (matrix, clusters) = generate(random, numberOfClusters = 40)
+
+        val result = GeneralizedBranchAndBound(maxNodes = 100_000).run(matrix, clusters, listOf(0))
+
+        assertValid(result, clusters, listOf(0))
+    }
+
+    private fun generate(random: Random, numberOfClusters: Int): Pair<DistanceMatrix, List<IntArray>> {
+        val sizes = List(numberOfClusters) { 1 + random.nextInt(3) }
+        val cities = List(sizes.sum()) { City(random.nextInt(500), random.nextInt(500)) }
+        var offset = 0
+        val clusters = sizes.map { size -> IntArray(size) { offset + it }.also { offset += size } }
+        // directed distances, so reversed path is not as long as original one
+        val matrix = DistanceMatrix(cities.size)
+        cities.forEachIndexed { i, a ->
+            cities.forEachIndexed { j, b ->
+                if (i != j) matrix[i, j] = a.distanceToCity(b) + if (a.x < b.x) 50.0 else 0.0
+            }
+        }
+        return matrix to clusters
+    }
+
+    private fun assertValid(result: IntArray, clusters: List<IntArray>, immutablePositions: List<Int>) {
+        assertEquals(clusters.size, result.size)
+        val visited = result.map { point -> clusters.indexOfFirst { point in it } }
+        assertEquals(clusters.indices.toSet(), visited.toSet())
+        immutablePositions.forEach { assertTrue(result[it] in clusters[it]) }
+    }
+
+    private fun bruteForce(matrix: DistanceMatrix, clusters: List<IntArray>, immutablePositions: List<Int>): Double {
+        val slots = clusters.indices.filterNot(immutablePositions::contains)
+        var best = Double.MAX_VALUE
+        slots.permutations().forEach { permutation ->
+            val order = clusters.indices.toMutableList()
+            slots.forEachIndexed { i, slot -> order[slot] = permutation[i] }
+            order.map { clusters[it].toList() }.combinations().forEach { path ->
+                best = minOf(best, matrix.distance(path.toIntArray()))
+            }
+        }
+        return best
+    }
+
+    private fun List<Int>.permutations(): List<List<Int>> =
+        if (size <= 1) {
+            listOf(this)
+        } else {
+            flatMap { first -> (this - first).permutations().map { listOf(first) + it } }
+        }
+
+    private fun List<List<Int>>.combinations(): List<List<Int>> =
+        fold(listOf(emptyList())) { acc, options -> acc.flatMap { prefix -> options.map { prefix + it } } }
+}
@@ -0,0 +1,66 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class HeldKarpVRPTest {
+
+    @Test
+    fun `finds optimal tour with fixed positions`() = runTest {
+        val random = Random(9)
+        repeat(20) {
+            val cities = List(8) { City(random.nextInt(500), random.nextInt(500)) }
+            // directed distances, so reversed tour is not as long as original one
+            val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) + if (a.x < b.x) 50.0 else 0.0 }
+            val tour = IntArray(cities.size) { it }.apply { shuffle(random) }
+            val immutablePositions = listOf(0, 3, 7).filter { random.nextBoolean() }
+
+            val result = HeldKarpVRP<City>().run(matrix, tour, immutablePositions)
+
+            assertEquals(tour.toSet(), result.toSet())
+            immutablePositions.forEach { assertEquals(tour[it], result[it]) }
+            assertEquals(bruteForce(matrix, tour, immutablePositions), matrix.distance(result), 0.0001)
+        }
+    }
+
+    @Test
+    fun `is not worse than heuristics`() = runTest {
+        val random = Random(4)
+        val cities = List(HeldKarpVRP.MAX_MUTABLE + 1) { City(random.nextInt(500), random.nextInt(500)) }
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+        val immutablePositions = listOf(0)
+
+        val result = matrix.distance(HeldKarpVRP<City>().run(matrix, tour, immutablePositions))
+
+        listOf(
+            TwoOptHeuristicVRP<City>(),
+            LocalSearchVRP(),
+            IncrementalSimulatedAnnealing(),
+        ).forEach { algorithm ->
+            assertTrue(result <= matrix.distance(algorithm.run(matrix, tour, immutablePositions)) + 0.0001)
+        }
+    }
+
+    private fun bruteForce(matrix: DistanceMatrix, tour: IntArray, immutablePositions: List<Int>): Double {
+        val slots = tour.indices.filterNot(immutablePositions::contains)
+        var best = Double.MAX_VALUE
+        slots.map(tour::get).permutations().forEach { permutation ->
+            val candidate = tour.copyOf()
+            slots.forEachIndexed { i, slot -> candidate[slot] = permutation[i] }
+            best = minOf(best, matrix.distance(candidate))
+        }
+        return best
+    }
+
+    private fun List<Int>.permutations(): List<List<Int>> =
+        if (size <= 1) {
+            listOf(this)
+        } else {
+            flatMap { first -> (this - first).permutations().map { listOf(first) + it } }
+        }
+}
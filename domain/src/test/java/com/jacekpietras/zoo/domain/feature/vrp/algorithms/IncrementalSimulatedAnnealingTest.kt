@@ -0,0 +1,60 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.algorithms.IncrementalSimulatedAnnealing.Tempering
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+import kotlin.system.measureTimeMillis
+
+internal class IncrementalSimulatedAnnealingTest {
+
+    private val cities = Random(5).let { random ->
+        List(60) { City(random.nextInt(1000), random.nextInt(1000)) }
+    }
+
+    @Test
+    fun `keeps immutable positions in the middle of plan`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(3)) }
+        val immutablePositions = listOf(0, 20, 21, 40, cities.lastIndex)
+
+        listOf(
+            IncrementalSimulatedAnnealing<City>(random = Random(1)),
+            IncrementalSimulatedAnnealing(Tempering(budgetMillis = 50, replicas = 4), random = Random(1)),
+        ).forEach { algorithm ->
+            val result = algorithm.run(matrix, tour, immutablePositions)
+
+            assertEquals(tour.toSet(), result.toSet())
+            immutablePositions.forEach { assertEquals(tour[it], result[it]) }
+            assertTrue(matrix.distance(result) < matrix.distance(tour))
+        }
+    }
+
+    @Test
+    fun `tempering ends within time budget`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+
+        val time = measureTimeMillis {
+            IncrementalSimulatedAnnealing<City>(Tempering(budgetMillis = 100, replicas = 4)).run(matrix, tour, null)
+        }
+
+        assertTrue(time < 1000) { "took $time ms" }
+    }
+
+    @Test
+    fun `finds tour close to optimal one`() = runTest {
+        val small = cities.take(HeldKarpVRP.MAX_MUTABLE + 1)
+        val matrix = DistanceMatrix.of(small) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(small.size) { it }
+        val immutablePositions = listOf(0)
+
+        val optimal = matrix.distance(HeldKarpVRP<City>().run(matrix, tour, immutablePositions))
+        val result = matrix.distance(IncrementalSimulatedAnnealing<City>(random = Random(1)).run(matrix, tour, immutablePositions))
+
+        assertTrue(result <= optimal * 1.05) { "$result, optimal $optimal" }
+    }
+}
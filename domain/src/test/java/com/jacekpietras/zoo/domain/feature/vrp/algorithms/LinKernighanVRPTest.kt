@@ -0,0 +1,85 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.plus
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class LinKernighanVRPTest {
+
+    private val cities = Random(13).let { random ->
+        List(300) { City(random.nextInt(1000), random.nextInt(1000)) }
+    }
+
+    @Test
+    fun `keeps first and last stage`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(3)) }
+        val immutablePositions = listOf(0, cities.lastIndex)
+
+        val result = LinKernighanVRP<City>().run(matrix, tour, immutablePositions)
+
+        assertEquals(tour.toSet(), result.toSet())
+        assertEquals(tour.size, result.size)
+        immutablePositions.forEach { assertEquals(tour[it], result[it]) }
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+    }
+
+    @Test
+    fun `keeps immutable positions in the middle of plan`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(5)) }
+        val immutablePositions = listOf(1, 42, 43, 150, cities.lastIndex - 1)
+
+        val result = LinKernighanVRP<City>().run(matrix, tour, immutablePositions)
+
+        assertEquals(tour.toSet(), result.toSet())
+        immutablePositions.forEach { assertEquals(tour[it], result[it]) }
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+    }
+
+    @Test
+    fun `small plan is solved optimally`() = runTest {
+        val small = cities.take(9)
+        val matrix = DistanceMatrix.of(small) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(small.size) { it }
+
+        val expected = HeldKarpVRP<City>().run(matrix, tour, listOf(0))
+        val result = LinKernighanVRP<City>().run(matrix, tour, listOf(0))
+
+        assertEquals(matrix.distance(expected), matrix.distance(result), 0.0001)
+    }
+
+    @Test
+    fun `large plans are shorter than after local search`() = runTest {
+        var expected = 0.0
+        var result = 0.0
+        for (seed in 1..5) {
+            val cities = Random(seed).let { random ->
+                List(300) { City(random.nextInt(1000), random.nextInt(1000)) }
+            }
+            val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+            val tour = IntArray(cities.size) { it }
+
+            expected += matrix.distance((NearestNeighborVRP<City>(Random(1)) + LocalSearchVRP()).run(matrix, tour, null))
+            result += matrix.distance((NearestNeighborVRP<City>(Random(1)) + LinKernighanVRP()).run(matrix, tour, null))
+        }
+
+        assertTrue(result < expected) { "$result vs $expected" }
+    }
+
+    @Test
+    fun `bound is compared with directed length of tour`() = runTest {
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(4)) }
+        val lastCity = cities[tour.last()]
+        // leaving last city is never walked, but averaged in both directions it would make tour look too long
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) + if (a == lastCity) 1_000_000.0 else 0.0 }
+
+        val result = LinKernighanVRP<City>().run(matrix, tour, listOf(0, cities.lastIndex), bound = { matrix.distance(tour) })
+
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+    }
+}
@@ -0,0 +1,55 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.plus
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class LocalSearchVRPTest {
+
+    private val cities = Random(11).let { random ->
+        List(300) { City(random.nextInt(1000), random.nextInt(1000)) }
+    }
+
+    @Test
+    fun `keeps immutable positions in the middle of plan`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(3)) }
+        val immutablePositions = listOf(0, 42, 43, 150, cities.lastIndex)
+
+        val result = LocalSearchVRP<City>().run(matrix, tour, immutablePositions)
+
+        assertEquals(tour.toSet(), result.toSet())
+        assertEquals(tour.size, result.size)
+        immutablePositions.forEach { assertEquals(tour[it], result[it]) }
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+    }
+
+    @Test
+    fun `large plan is as good as full 2-opt`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+
+        val expected = (NearestNeighborVRP<City>() + TwoOptHeuristicVRP()).run(matrix, tour, null)
+        val result = (NearestNeighborVRP<City>() + LocalSearchVRP()).run(matrix, tour, null)
+
+        assertTrue(matrix.distance(result) < matrix.distance(expected) * 1.05) {
+            "${matrix.distance(result)} vs ${matrix.distance(expected)}"
+        }
+    }
+
+    @Test
+    fun `bound is compared with directed length of tour`() = runTest {
+        val tour = IntArray(cities.size) { it }.apply { shuffle(Random(4)) }
+        val lastCity = cities[tour.last()]
+        // leaving last city is never walked, but averaged in both directions it would make tour look too long
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) + if (a == lastCity) 1_000_000.0 else 0.0 }
+
+        val result = LocalSearchVRP<City>().run(matrix, tour, listOf(0, cities.lastIndex), bound = { matrix.distance(tour) })
+
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+    }
+}
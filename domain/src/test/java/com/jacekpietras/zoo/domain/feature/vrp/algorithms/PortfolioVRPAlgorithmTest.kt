@@ -0,0 +1,150 @@
+package com.jacekpietras.zoo.domain.feature.vrp.algorithms
+
+import com.jacekpietras.zoo.domain.feature.vrp.MatrixVRPWithFixedStagesAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.PortfolioVRPAlgorithm
+import com.jacekpietras.zoo.domain.feature.vrp.PortfolioVRPAlgorithm.Member
+import com.jacekpietras.zoo.domain.feature.vrp.cannotBeat
+import com.jacekpietras.zoo.domain.feature.vrp.model.DistanceMatrix
+import com.jacekpietras.zoo.domain.feature.vrp.plus
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.coroutines.coroutineContext
+import kotlin.random.Random
+
+internal class PortfolioVRPAlgorithmTest {
+
+    private val cities = Random(5).let { random ->
+        List(100) { City(random.nextInt(1000), random.nextInt(1000)) }
+    }
+
+    @Test
+    fun `best tour of all members is returned and its member is recorded`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+        val improving = NearestNeighborVRP<City>(Random(1)) + LocalSearchVRP()
+        val expected = improving.run(matrix, tour, null)
+        val portfolio = PortfolioVRPAlgorithm(
+            members = listOf(
+                Member("unchanged", unchanged),
+                Member("nn + local", NearestNeighborVRP<City>(Random(1)) + LocalSearchVRP()),
+                Member("nn", NearestNeighborVRP(Random(2))),
+            ),
+            deadlineMillis = 10_000,
+            parallelism = 2,
+        )
+
+        val result = portfolio.run(matrix, tour, null)
+
+        assertArrayEquals(expected, result)
+        assertEquals(mapOf("nn + local" to 1), portfolio.statistics.wins())
+    }
+
+    @Test
+    fun `running members are cancelled at deadline`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+        val endless = Endless()
+        val portfolio = PortfolioVRPAlgorithm(
+            members = listOf(
+                Member("nn", NearestNeighborVRP(Random(1))),
+                Member("endless", endless),
+            ),
+            deadlineMillis = 200,
+            parallelism = 2,
+        )
+
+        val start = System.currentTimeMillis()
+        val result = portfolio.run(matrix, tour, null)
+
+        assertTrue(System.currentTimeMillis() - start < 2000)
+        assertTrue(endless.stopped)
+        assertTrue(matrix.distance(result) < matrix.distance(tour))
+        assertEquals(mapOf("nn" to 1), portfolio.statistics.wins())
+    }
+
+    @Test
+    fun `running member gives up when better tour was found by other member`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+        val good = (NearestNeighborVRP<City>(Random(1)) + LocalSearchVRP()).run(matrix, tour, null)
+        val waiting = WaitingForBound()
+        val portfolio = PortfolioVRPAlgorithm(
+            members = listOf(
+                Member("waiting", waiting),
+                Member("good", object : MatrixVRPWithFixedStagesAlgorithm<City> {
+                    override suspend fun run(matrix: DistanceMatrix, tour: IntArray, immutablePositions: List<Int>?): IntArray =
+                        good
+                }),
+            ),
+            deadlineMillis = 10_000,
+            parallelism = 2,
+        )
+
+        val start = System.currentTimeMillis()
+        val result = portfolio.run(matrix, tour, null)
+
+        assertTrue(System.currentTimeMillis() - start < 2000)
+        assertTrue(waiting.gaveUp)
+        assertArrayEquals(good, result)
+    }
+
+    @Test
+    fun `local searches give up when they can't beat bound`() = runTest {
+        val matrix = DistanceMatrix.of(cities) { a, b -> a.distanceToCity(b) }
+        val tour = IntArray(cities.size) { it }
+        val bound = matrix.distance(tour) / 2
+
+        assertArrayEquals(tour, LocalSearchVRP<City>().run(matrix, tour, null) { bound })
+        assertArrayEquals(tour, LinKernighanVRP<City>().run(matrix, tour, null) { bound })
+        assertTrue(matrix.distance(LocalSearchVRP<City>().run(matrix, tour, null)) < bound)
+    }
+
+    private val unchanged = object : MatrixVRPWithFixedStagesAlgorithm<City> {
+        override suspend fun run(matrix: DistanceMatrix, tour: IntArray, immutablePositions: List<Int>?): IntArray =
+            tour
+    }
+
+    private class WaitingForBound : MatrixVRPWithFixedStagesAlgorithm<City> {
+
+        @Volatile
+        var gaveUp = false
+
+        override suspend fun run(matrix: DistanceMatrix, tour: IntArray, immutablePositions: List<Int>?): IntArray =
+            run(matrix, tour, immutablePositions) { Double.MAX_VALUE }
+
+        override suspend fun run(
+            matrix: DistanceMatrix,
+            tour: IntArray,
+            immutablePositions: List<Int>?,
+            bound: () -> Double,
+        ): IntArray {
+            while (!cannotBeat(matrix.distance(tour), bound())) {
+                coroutineContext.ensureActive()
+                Thread.sleep(10)
+            }
+            gaveUp = true
+            return tour
+        }
+    }
+
+    private class Endless : MatrixVRPWithFixedStagesAlgorithm<City> {
+
+        @Volatile
+        var stopped = false
+
+        override suspend fun run(matrix: DistanceMatrix, tour: IntArray, immutablePositions: List<Int>?): IntArray {
+            try {
+                while (true) {
+                    coroutineContext.ensureActive()
+                    Thread.sleep(10)
+                }
+            } finally {
+                stopped = true
+            }
+        }
+    }
+}
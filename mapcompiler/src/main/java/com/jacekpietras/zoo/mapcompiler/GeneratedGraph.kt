@@ -0,0 +1,38 @@
+package com.jacekpietras.zoo.mapcompiler
+
+import com.jacekpietras.geometry.PointD
+import kotlin.math.sqrt
+import kotlin.random.Random
+
+// Same graphs as ShortestPathInGeneratedGraphTest.generateGraph makes for given seed,
+// test sources are not on this classpath, so generator is repeated here step by step.
+internal fun generateRoads(
+    random: Random,
+    numberOfCities: Int,
+    connections: Int,
+): List<List<PointD>> {
+    val points = MutableList(numberOfCities) { generateCity(random) }.toSet().toList()
+    val c = points.associateWith { mutableListOf<PointD>() }
+
+    return (0 until connections).mapNotNull {
+        val next = points[random.nextInt(points.lastIndex)]
+        points
+            .filter { it != next && c[next]?.contains(it) == false }
+            .minByOrNull { it.distanceToCity(next) }
+            ?.let { closest ->
+                c[next]!!.add(closest)
+                c[closest]!!.add(next)
+
+                listOf(next, closest)
+            }
+    }.toSet().toList()
+}
+
+private fun generateCity(random: Random): PointD =
+    PointD(
+        x = ((random.nextDouble() * 360).toInt() - 180).toDouble(),
+        y = ((random.nextDouble() * 180).toInt() - 90).toDouble(),
+    )
+
+private fun PointD.distanceToCity(city: PointD): Double =
+    sqrt((x - city.x) * (x - city.x) + (y - city.y) * (y - city.y))
@@ -0,0 +1,92 @@
+package com.jacekpietras.zoo.mapcompiler
+
+import com.jacekpietras.zoo.data.parser.SvgParser
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.ChainDijkstra
+import com.jacekpietras.zoo.domain.feature.pathfinder.ChainGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.ContractionHierarchy
+import com.jacekpietras.zoo.domain.feature.pathfinder.ContractionHierarchyDijkstra
+import com.jacekpietras.zoo.domain.feature.pathfinder.Dijkstra
+import com.jacekpietras.zoo.domain.feature.pathfinder.NodeSetFactory
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.RoadGraph
+import com.jacekpietras.zoo.domain.feature.pathfinder.model.SnappedOn.SnappedOnNode
+import org.kxml2.io.KXmlParser
+import java.io.File
+import kotlin.random.Random
+import kotlin.system.measureNanoTime
+
+// compares routing engines on real map, run with: gradlew :mapcompiler:benchmarkPathfinder
+// or on generated graphs of ShortestPathInGeneratedGraphTest, run with: gradlew :mapcompiler:benchmarkPathfinderGenerated
+fun main(args: Array<String>) {
+    if (args.firstOrNull() == GENERATED) {
+        require(args.size == 4) { "Usage: $GENERATED <seed> <cities> <connections>" }
+        val roads = generateRoads(Random(args[1].toLong()), numberOfCities = args[2].toInt(), connections = args[3].toInt())
+        benchmark(RoadGraph.from(NodeSetFactory(roads.map(::PathEntity), emptyList()).create()))
+        return
+    }
+
+    require(args.size == 1) { "Usage: <map.xml>" }
+    val parser = File(args[0]).reader().use { reader ->
+        SvgParser(KXmlParser().apply { setInput(reader) })
+    }
+    benchmark(
+        RoadGraph.from(
+            NodeSetFactory(
+                parser.getPointsByGroup("paths").map(::PathEntity),
+                parser.getPointsByGroup("technical").map(::PathEntity),
+            ).create()
+        )
+    )
+}
+
+private fun benchmark(graph: RoadGraph) {
+    println("Graph with ${graph.size} nodes, ${graph.edgeTargets.size} edges")
+
+    listOf(false, true).forEach { technicalAllowed ->
+        val random = Random(1)
+        val queries = List(QUERIES) {
+            val start = random.nextInt(graph.size)
+            val end = random.nextInt(graph.size)
+            SnappedOnNode(start, graph.point(start)) to SnappedOnNode(end, graph.point(end))
+        }
+
+        val hierarchy: ContractionHierarchy
+        val preprocessing = measureNanoTime { hierarchy = ContractionHierarchy.build(graph, technicalAllowed) }
+        val supported = queries.filter { (start, _) -> hierarchy.canStartFrom(start) }
+        val dijkstra = Dijkstra(graph, technicalAllowed)
+        val tested = ContractionHierarchyDijkstra(hierarchy)
+
+        repeat(WARM_UP) {
+            supported.forEach { (start, end) ->
+                dijkstra.calculate(start, end)
+                tested.calculate(start, end)
+            }
+        }
+        val dijkstraTime = measureNanoTime { supported.forEach { (start, end) -> dijkstra.calculate(start, end) } }
+        val testedTime = measureNanoTime { supported.forEach { (start, end) -> tested.calculate(start, end) } }
+
+        println("Technical allowed: $technicalAllowed, ${supported.size} of ${queries.size} queries answered by hierarchy")
+        println("  Dijkstra: ${dijkstraTime / supported.size / 1000} us per query")
+        println("  Contraction hierarchies: ${testedTime / supported.size / 1000} us per query, preprocessing ${preprocessing / 1_000_000} ms")
+
+        val chains = ChainGraph(graph, technicalAllowed)
+        val chainDijkstra = ChainDijkstra(chains)
+        val chainSupported = queries.filter { (start, end) -> chainDijkstra.canCalculate(start, end) }
+        repeat(WARM_UP) {
+            chainSupported.forEach { (start, end) ->
+                dijkstra.calculate(start, end)
+                chainDijkstra.calculate(start, end)
+            }
+        }
+        val plainTime = measureNanoTime { chainSupported.forEach { (start, end) -> dijkstra.calculate(start, end) } }
+        val chainTime = measureNanoTime { chainSupported.forEach { (start, end) -> chainDijkstra.calculate(start, end) } }
+
+        println("  ${chains.size} junctions, ${chainSupported.size} of ${queries.size} queries answered on junctions")
+        println("  Dijkstra: ${plainTime / chainSupported.size / 1000} us per query")
+        println("  Dijkstra on junctions: ${chainTime / chainSupported.size / 1000} us per query")
+    }
+}
+
+private const val GENERATED = "--generated"
+private const val QUERIES = 10_000
+private const val WARM_UP = 3
@@ -0,0 +1,50 @@
+package com.jacekpietras.zoo.mapcompiler
+
+import com.jacekpietras.zoo.data.parser.SvgParser
+import com.jacekpietras.zoo.data.regiondistances.RegionDistanceTable
+import com.jacekpietras.zoo.domain.feature.map.model.MapItemEntity.PathEntity
+import com.jacekpietras.zoo.domain.feature.pathfinder.GraphAnalyzer
+import kotlinx.coroutines.runBlocking
+import org.kxml2.io.KXmlParser
+import java.io.File
+
+fun main(args: Array<String>) {
+    require(args.size == 2) { "Usage: <map.xml> <output.bin>" }
+    val mapFile = File(args[0])
+    val outputFile = File(args[1])
+
+    val parser = mapFile.reader().use { reader ->
+        SvgParser(KXmlParser().apply { setInput(reader) })
+    }
+    // solver looks for first region with given id, same is used here
+    val regions = parser.regions.distinctBy { (region, _) -> region.id }
+    val centers = regions.map { (_, polygon) -> polygon.findCenter() }
+
+    val graphAnalyzer = GraphAnalyzer()
+    graphAnalyzer.initialize(
+        roads = parser.getPointsByGroup("paths").map(::PathEntity),
+        technical = parser.getPointsByGroup("technical").map(::PathEntity),
+    )
+
+    val writer = RegionDistanceTable.Writer(regions.map { (region, _) -> region.id.id })
+    // one search from each region gives paths from all other regions into it, same as solver calculates them
+    runBlocking {
+        centers.forEachIndexed { next, nextCenter ->
+            val paths = graphAnalyzer.getShortestPaths(
+                nextCenter,
+                centers,
+                technicalAllowedAtStart = false,
+                technicalAllowedAtEnd = false,
+            )
+            for (prev in centers.indices) {
+                if (prev != next) {
+                    writer.put(prev, next, paths.distance(prev), paths.path(prev).reversed())
+                }
+            }
+        }
+    }
+
+    outputFile.parentFile?.mkdirs()
+    outputFile.outputStream().use(writer::write)
+    println("Written ${regions.size} regions to $outputFile")
+}
@@ -0,0 +1,27 @@
+package com.jacekpietras.mapview.logic
+
+// Growable list of ints, cleared and filled again without allocating once it is big enough.
+internal class IntList(capacity: Int = INITIAL_CAPACITY) {
+
+    private var array = IntArray(capacity)
+
+    var size: Int = 0
+        private set
+
+    operator fun get(index: Int): Int =
+        array[index]
+
+    fun add(value: Int) {
+        if (size == array.size) array = array.copyOf(size * 2 + 1)
+        array[size++] = value
+    }
+
+    fun clear() {
+        size = 0
+    }
+
+    private companion object {
+
+        const val INITIAL_CAPACITY = 8
+    }
+}
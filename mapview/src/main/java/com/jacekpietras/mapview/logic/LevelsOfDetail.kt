@@ -0,0 +1,131 @@
+package com.jacekpietras.mapview.logic
+
+import kotlin.math.abs
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+// Zoom range is split into few buckets, every path and polygon has its shape simplified for each of them.
+// Douglas-Peucker drops vertices lying closer to simplified shape than fraction of pixel at the most zoomed in
+// end of bucket, so they wouldn't be seen anyway.
+internal class LevelsOfDetail(
+    minZoom: Double,
+    private val maxZoom: Double,
+    val count: Int = LEVELS,
+    private val simplified: Boolean = true,
+) {
+
+    private val thresholds = DoubleArray(count) { level ->
+        minZoom * (maxZoom / minZoom).pow(level / count.toDouble())
+    }
+
+    fun levelFor(zoom: Double): Int {
+        var level = 0
+        while (level + 1 < count && zoom >= thresholds[level + 1]) level++
+        return level
+    }
+
+    // the most zoomed in end of bucket
+    fun zoomOf(level: Int): Double =
+        thresholds[level]
+
+    // item is shown while zoom is smaller than its min zoom, in bucket it can be shown in whole, in part or not at all
+    fun isShownInWhole(level: Int, minZoom: Float?): Boolean =
+        when {
+            minZoom == null -> true
+            level + 1 < count -> minZoom >= thresholds[level + 1]
+            else -> minZoom > maxZoom
+        }
+
+    fun isShownInPart(level: Int, minZoom: Float?): Boolean =
+        minZoom != null && minZoom > thresholds[level] && !isShownInWhole(level, minZoom)
+
+    fun simplifyPath(shape: DoubleArray): List<DoubleArray> =
+        List(count) { level -> if (simplified) simplify(shape, tolerance(level)) else shape }
+
+    // polygon too small to keep its shape is left whole, it is then smaller than pixel anyway
+    fun simplifyPolygon(shape: DoubleArray): List<DoubleArray> =
+        List(count) { level ->
+            if (simplified) {
+                simplify(shape, tolerance(level)).takeIf { it.size >= MIN_POLYGON_SIZE } ?: shape
+            } else {
+                shape
+            }
+        }
+
+    // zoom is half of visible width, so this is small part of pixel on screen of any phone
+    private fun tolerance(level: Int): Double =
+        thresholds[level] / PIXELS_PER_ZOOM
+
+    private fun simplify(shape: DoubleArray, tolerance: Double): DoubleArray {
+        val points = shape.size / 2
+        if (points <= 2) return shape
+
+        val keep = BooleanArray(points)
+        keep[0] = true
+        keep[points - 1] = true
+        var kept = 2
+        val stack = IntArray(points * 2)
+        var top = 0
+        stack[top++] = 0
+        stack[top++] = points - 1
+        while (top > 0) {
+            val last = stack[--top]
+            val first = stack[--top]
+            var farthest = -1
+            var farthestDistance = tolerance
+            for (i in first + 1 until last) {
+                val distance = distanceToSegment(shape, i, first, last)
+                if (distance > farthestDistance) {
+                    farthest = i
+                    farthestDistance = distance
+                }
+            }
+            if (farthest != -1) {
+                keep[farthest] = true
+                kept++
+                stack[top++] = first
+                stack[top++] = farthest
+                stack[top++] = farthest
+                stack[top++] = last
+            }
+        }
+        if (kept == points) return shape
+
+        val result = DoubleArray(kept * 2)
+        var j = 0
+        for (i in 0 until points) {
+            if (keep[i]) {
+                result[j++] = shape[i * 2]
+                result[j++] = shape[i * 2 + 1]
+            }
+        }
+        return result
+    }
+
+    private fun distanceToSegment(shape: DoubleArray, i: Int, first: Int, last: Int): Double {
+        val x = shape[i * 2]
+        val y = shape[i * 2 + 1]
+        val x1 = shape[first * 2]
+        val y1 = shape[first * 2 + 1]
+        val dx = shape[last * 2] - x1
+        val dy = shape[last * 2 + 1] - y1
+        val length = dx * dx + dy * dy
+        if (length == 0.0) return maxOf(abs(x - x1), abs(y - y1))
+
+        val t = (((x - x1) * dx + (y - y1) * dy) / length).coerceIn(0.0, 1.0)
+        val px = x1 + t * dx - x
+        val py = y1 + t * dy - y
+        return sqrt(px * px + py * py)
+    }
+
+    companion object {
+
+        private const val LEVELS = 4
+        private const val PIXELS_PER_ZOOM = 1500.0
+        private const val MIN_POLYGON_SIZE = 6
+
+        // before world bounds are known there is no zoom range to simplify for, so shapes are kept whole
+        fun unsimplified(): LevelsOfDetail =
+            LevelsOfDetail(minZoom = 1.0, maxZoom = 1.0, simplified = false)
+    }
+}
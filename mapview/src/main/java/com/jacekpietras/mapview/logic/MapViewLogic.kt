@@ -1,14 +1,11 @@
 package com.jacekpietras.mapview.logic
 
 import android.graphics.Matrix
+import android.os.Handler
+import android.os.Looper
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.geometry.RectD
-import com.jacekpietras.mapview.logic.ItemVisibility.TO_CHECK
-import com.jacekpietras.mapview.logic.PreparedItem.PreparedBitmapItem
-import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedCircleItem
-import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedPathItem
-import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedPolygonItem
-import com.jacekpietras.mapview.logic.PreparedItem.PreparedIconItem
+import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem
 import com.jacekpietras.mapview.model.RenderItem
 import com.jacekpietras.mapview.model.ViewCoordinates
 import com.jacekpietras.mapview.ui.LastMapUpdate
@@ -32,8 +29,19 @@ class MapViewLogic<T>(
     private var onStopCentering: (() -> Unit)? = null,
     private var onStartCentering: (() -> Unit)? = null,
     var setOnPointPlacedListener: ((PointD) -> Unit)? = null,
+    tileRasterizer: TileRasterizer<T>? = null,
 ) {
 
+    // without rasterizer every frame is made from shapes
+    private val tileRenderer = tileRasterizer?.let { rasterizer ->
+        val mainThread = Handler(Looper.getMainLooper())
+        TileRenderer(
+            rasterizer = rasterizer,
+            bakeDimension = { paintBaker.bakeDimension(it) },
+            onTilesReady = { mainThread.post(::cutOutNotVisible) },
+        )
+    }
+
     var worldData: WorldData = WorldData()
         set(value) {
             field = value
@@ -43,11 +51,22 @@ class MapViewLogic<T>(
             }
             maxZoom = min(abs(value.bounds.width()), abs(value.bounds.height())) / 1.6
             minZoom = maxZoom / 10
+            levelsOfDetail = LevelsOfDetail(minZoom, maxZoom)
 
             val measured = measureTimeMillis {
-                worldPreparedList = worldPreparedListMaker.toPreparedItems(value.objectList)
+                worldPreparedList = worldPreparedListMaker.toPreparedItems(value.objectList, levelsOfDetail)
+                worldIndex = QuadTree(worldPreparedList) { it.bounds() }
+                overTilesIndexes = List(levelsOfDetail.count) { level ->
+                    val overTiles = worldPreparedList.filter {
+                        it !is PreparedColoredItem || levelsOfDetail.isShownInPart(level, it.minZoom)
+                    }
+                    QuadTree(overTiles) { it.bounds() }
+                }
+                // user data could come before world and was kept whole, now it is simplified for real zoom range
+                volatilePreparedList = volatilePreparedListMaker.toPreparedItems(userData.objectList, levelsOfDetail)
             }
             Timber.d("Perf: toPreparedItems $measured ms (world)")
+            resetTiles()
 
             cutOutNotVisible()
 
@@ -55,6 +74,9 @@ class MapViewLogic<T>(
         }
     private val worldBounds: RectD get() = worldData.bounds
     private var worldPreparedList: List<PreparedItem<T>> = emptyList()
+    private var worldIndex: QuadTree<PreparedItem<T>> = QuadTree(emptyList()) { it.bounds() }
+    // items not drawn in tiles of level, icons and items hidden in part of its zoom range
+    private var overTilesIndexes: List<QuadTree<PreparedItem<T>>> = emptyList()
     private val worldPreparedListMaker = PreparedListMaker(paintBaker)
 
     var userData: UserData = UserData()
@@ -62,7 +84,7 @@ class MapViewLogic<T>(
             field = value
 
             val measured = measureTimeMillis {
-                volatilePreparedList = volatilePreparedListMaker.toPreparedItems(value.objectList)
+                volatilePreparedList = volatilePreparedListMaker.toPreparedItems(value.objectList, levelsOfDetail)
             }
             Timber.d("Perf: toPreparedItems $measured ms (user)")
 
@@ -94,6 +116,8 @@ class MapViewLogic<T>(
                 zoom = maxZoom / 3
             }
         }
+    private var levelsOfDetail = LevelsOfDetail.unsimplified()
+    private var levelOfDetail = 0
     private lateinit var visibleGpsCoordinate: ViewCoordinates
     private var prevVisibleGpsCoordinate: ViewCoordinates? = null
     private var prevVisibleGpsCoordinateForBigDiff: ViewCoordinates? = null
@@ -118,6 +142,9 @@ class MapViewLogic<T>(
             field = value
         }
     private val cuttingOutNow = AtomicBoolean(false)
+    private var visibilityGeneration = 1
+    private val renderListMaker = RenderListMaker<T> { paintBaker.bakeDimension(it) }
+    private val worldItems = ArrayList<PreparedItem<T>>()
 
     fun centerAtPoint(desiredPosition: PointD) {
         centeringAtUser = false
@@ -171,10 +198,16 @@ class MapViewLogic<T>(
         }
     }
 
+    // should be called when owner of logic is destroyed
+    fun release() {
+        tileRenderer?.release()
+    }
+
     fun onSizeChanged(width: Int, height: Int) {
         if (currentHeight != height || currentWidth != width) {
             currentHeight = height
             currentWidth = width
+            resetTiles()
             cutOutNotVisible()
         }
     }
@@ -332,6 +365,19 @@ class MapViewLogic<T>(
         return result
     }
 
+    // tiles are drawn at scale depending on width of view
+    private fun resetTiles() {
+        if (currentWidth == 0 || worldBounds.notInitialized()) return
+
+        tileRenderer?.setWorld(
+            index = worldIndex,
+            items = worldData.objectList,
+            levelsOfDetail = levelsOfDetail,
+            center = PointD(worldBounds.centerX(), worldBounds.centerY()),
+            viewWidth = currentWidth,
+        )
+    }
+
     private fun cutOutNotVisible() {
         cutoS = System.nanoTime()
 
@@ -349,25 +395,39 @@ class MapViewLogic<T>(
         val worldMovedALot = worldMoved && (prevVisibleGpsCoordinateForBigDiff?.printDiff(visibleGpsCoordinate) ?: true)
         if (worldMovedALot) {
             Timber.d("Perf: moved a lot")
-            clearHiddenPreparedItems()
+            visibilityGeneration++
             prevVisibleGpsCoordinateForBigDiff = visibleGpsCoordinate
-        } else if (worldMoved) {
-            clearCachedPreparedItems()
         }
         prevVisibleGpsCoordinate = visibleGpsCoordinate
 
+        // shapes of other level are checked and transformed again
+        val level = levelsOfDetail.levelFor(zoom)
+        if (level != levelOfDetail) {
+            levelOfDetail = level
+            visibilityGeneration++
+        }
+
         moveE = System.nanoTime()
 
-        RenderListMaker<T>(
+        // colored world items come in tiles, until they are ready they are drawn as shapes
+        val visibleRect = visibleGpsCoordinate.visibleRectRotated
+        val tiles = tileRenderer?.tilesFor(visibleRect, levelOfDetail)
+        // only world items around visible part are looked at, however big is the map
+        (if (tiles != null) overTilesIndexes[levelOfDetail] else worldIndex).query(visibleRect, worldItems)
+
+        renderListMaker.translate(
             visibleGpsCoordinate = visibleGpsCoordinate,
             worldRotation = worldRotation,
             currentWidth = currentWidth,
             currentHeight = currentHeight,
             zoom = zoom,
             centerGpsCoordinate = centerGpsCoordinate,
-            bakeDimension = paintBaker::bakeDimension,
+            visibilityGeneration = visibilityGeneration,
+            levelOfDetail = levelOfDetail,
+            tiles = tiles.orEmpty(),
+            worldItems,
+            volatilePreparedList,
         )
-            .translate(worldPreparedList, volatilePreparedList)
             .also {
                 LastMapUpdate.mergE = System.nanoTime()
                 invalidate(it)
@@ -377,55 +437,4 @@ class MapViewLogic<T>(
 
         cuttingOutNow.set(false)
     }
-
-    private fun clearCachedPreparedItems() {
-        listOf(worldPreparedList, volatilePreparedList)
-            .forEach { preparedItems ->
-                preparedItems.forEach { item ->
-                    when (item) {
-                        is PreparedPolygonItem -> {
-                            item.cache = null
-                        }
-                        is PreparedBitmapItem -> {
-                            item.cache = null
-                        }
-                        is PreparedCircleItem -> {
-                            item.cache = null
-                        }
-                        is PreparedPathItem -> {
-                            item.cache = null
-                        }
-                        is PreparedIconItem -> {
-                            item.cache = null
-                        }
-                    }
-                }
-            }
-    }
-
-    private fun clearHiddenPreparedItems() {
-        listOf(worldPreparedList, volatilePreparedList)
-            .forEach { preparedItems ->
-                preparedItems.forEach { item ->
-                    when (item) {
-                        is PreparedPolygonItem -> {
-                            item.cache = null
-                        }
-                        is PreparedBitmapItem -> {
-                            item.cache = null
-                        }
-                        is PreparedCircleItem -> {
-                            item.cache = null
-                        }
-                        is PreparedPathItem -> {
-                            item.cache = null
-                        }
-                        is PreparedIconItem -> {
-                            item.cache = null
-                        }
-                    }
-                    item.visibility = TO_CHECK
-                }
-            }
-    }
 }
@@ -3,6 +3,7 @@ package com.jacekpietras.mapview.logic
 import android.graphics.Bitmap
 import androidx.annotation.DrawableRes
 import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.RectD
 import com.jacekpietras.mapview.logic.ItemVisibility.TO_CHECK
 import com.jacekpietras.mapview.model.MapDimension
 import com.jacekpietras.mapview.model.PaintHolder
@@ -13,6 +14,15 @@ internal sealed class PreparedItem<T>(
     open var visibility: ItemVisibility,
 ) {
 
+    // view generation in which visibility was checked, older ones are not valid
+    var visibilityGeneration: Int = 0
+
+    // view transform generation in which visible shape was transformed, older vertices are not valid
+    var transformGeneration: Int = 0
+
+    // vertices of visible shape transformed for view, visible parts of path one after another
+    var transformedVertices: FloatArray = NO_VERTICES
+
     internal sealed class PreparedColoredItem<T>(
         open val paintHolder: PaintHolder<T>,
         open val outerPaintHolder: PaintHolder<T>?,
@@ -20,22 +30,24 @@ internal sealed class PreparedItem<T>(
         override var visibility: ItemVisibility,
     ) : PreparedItem<T>(minZoom, visibility) {
 
+        // shapes are simplified for every level of detail, first one is the most detailed
         class PreparedPathItem<T>(
-            val shape: DoubleArray,
+            val shapes: List<DoubleArray>,
             override val paintHolder: PaintHolder<T>,
             override val outerPaintHolder: PaintHolder<T>? = null,
             override val minZoom: Float? = null,
-            var cache: List<FloatArray>? = null,
-            var cacheRaw: List<DoubleArray>? = null,
             override var visibility: ItemVisibility = TO_CHECK,
-        ) : PreparedColoredItem<T>(paintHolder, outerPaintHolder, minZoom, visibility)
+        ) : PreparedColoredItem<T>(paintHolder, outerPaintHolder, minZoom, visibility) {
+
+            // ranges of vertices found visible when visibility was checked
+            val visibleParts = IntList()
+        }
 
         class PreparedPolygonItem<T>(
-            val shape: DoubleArray,
+            val shapes: List<DoubleArray>,
             override val paintHolder: PaintHolder<T>,
             override val outerPaintHolder: PaintHolder<T>? = null,
             override val minZoom: Float? = null,
-            var cache: FloatArray? = null,
             override var visibility: ItemVisibility = TO_CHECK,
         ) : PreparedColoredItem<T>(paintHolder, outerPaintHolder, minZoom, visibility)
 
@@ -45,7 +57,6 @@ internal sealed class PreparedItem<T>(
             override val paintHolder: PaintHolder<T>,
             override val outerPaintHolder: PaintHolder<T>? = null,
             override val minZoom: Float? = null,
-            var cache: FloatArray? = null,
             override var visibility: ItemVisibility = TO_CHECK,
         ) : PreparedColoredItem<T>(paintHolder, outerPaintHolder, minZoom, visibility)
     }
@@ -54,7 +65,6 @@ internal sealed class PreparedItem<T>(
         val point: PointD,
         @DrawableRes val icon: Int,
         override val minZoom: Float? = null,
-        var cache: FloatArray? = null,
         override var visibility: ItemVisibility = TO_CHECK,
         val pivot: Pivot,
     ) : PreparedItem<T>(minZoom, visibility)
@@ -63,12 +73,36 @@ internal sealed class PreparedItem<T>(
         val point: PointD,
         val bitmap: Bitmap,
         override val minZoom: Float? = null,
-        var cache: FloatArray? = null,
         override var visibility: ItemVisibility = TO_CHECK,
         val pivot: Pivot,
     ) : PreparedItem<T>(minZoom, visibility)
 }
 
+private val NO_VERTICES = FloatArray(0)
+
+internal fun PreparedItem<*>.bounds(): RectD =
+    when (this) {
+        is PreparedItem.PreparedColoredItem.PreparedPathItem -> shapes.first().bounds()
+        is PreparedItem.PreparedColoredItem.PreparedPolygonItem -> shapes.first().bounds()
+        is PreparedItem.PreparedColoredItem.PreparedCircleItem -> RectD(point.x, point.y, point.x, point.y)
+        is PreparedItem.PreparedIconItem -> RectD(point.x, point.y, point.x, point.y)
+        is PreparedItem.PreparedBitmapItem -> RectD(point.x, point.y, point.x, point.y)
+    }
+
+private fun DoubleArray.bounds(): RectD {
+    var left = Double.MAX_VALUE
+    var top = Double.MAX_VALUE
+    var right = -Double.MAX_VALUE
+    var bottom = -Double.MAX_VALUE
+    for (i in indices step 2) {
+        left = minOf(left, this[i])
+        right = maxOf(right, this[i])
+        top = minOf(top, this[i + 1])
+        bottom = maxOf(bottom, this[i + 1])
+    }
+    return RectD(left, top, right, bottom)
+}
+
 enum class ItemVisibility{
     TO_CHECK,
     VISIBLE,
@@ -13,7 +13,7 @@ internal class PreparedListMaker<T>(
     private val innerPaints = mutableMapOf<MapPaint, PaintHolder<T>>()
     private val borderPaints = mutableMapOf<MapPaint, PaintHolder<T>?>()
 
-    fun toPreparedItems(list: List<MapItem>): List<PreparedItem<T>> =
+    fun toPreparedItems(list: List<MapItem>, levelsOfDetail: LevelsOfDetail): List<PreparedItem<T>> =
         list.map { item ->
             when (item) {
                 is MapItem.MapColoredItem -> {
@@ -26,13 +26,13 @@ internal class PreparedListMaker<T>(
 
                     when (item) {
                         is MapItem.MapColoredItem.PathMapItem -> PreparedItem.PreparedColoredItem.PreparedPathItem(
-                            pointsToDoubleArray(item.path.vertices),
+                            levelsOfDetail.simplifyPath(pointsToDoubleArray(item.path.vertices)),
                             inner,
                             border,
                             item.minZoom,
                         )
                         is MapItem.MapColoredItem.PolygonMapItem -> PreparedItem.PreparedColoredItem.PreparedPolygonItem(
-                            pointsToDoubleArray(item.polygon.vertices),
+                            levelsOfDetail.simplifyPolygon(pointsToDoubleArray(item.polygon.vertices)),
                             inner,
                             border,
                             item.minZoom,
@@ -0,0 +1,145 @@
+package com.jacekpietras.mapview.logic
+
+import com.jacekpietras.geometry.RectD
+import kotlin.math.max
+import kotlin.math.min
+
+// Index of bounding boxes of items which never move, built once and then only queried.
+// Item is kept in smallest node containing whole of it, so every query finds it at most once.
+// Query gives items in their starting order, because order of items is order of drawing.
+internal class QuadTree<E>(
+    private val items: List<E>,
+    bounds: (E) -> RectD,
+) {
+
+    private val minX = DoubleArray(items.size)
+    private val minY = DoubleArray(items.size)
+    private val maxX = DoubleArray(items.size)
+    private val maxY = DoubleArray(items.size)
+    private val root: Node
+    private var found = IntArray(INITIAL_FOUND)
+    private var foundCount = 0
+
+    init {
+        items.forEachIndexed { i, item ->
+            val rect = bounds(item)
+            minX[i] = min(rect.left, rect.right)
+            maxX[i] = max(rect.left, rect.right)
+            minY[i] = min(rect.top, rect.bottom)
+            maxY[i] = max(rect.top, rect.bottom)
+        }
+        root = Node(
+            minX = minX.minOrNull() ?: 0.0,
+            minY = minY.minOrNull() ?: 0.0,
+            maxX = maxX.maxOrNull() ?: 0.0,
+            maxY = maxY.maxOrNull() ?: 0.0,
+            depth = 0,
+        )
+        items.indices.forEach(root::insert)
+    }
+
+    // rect can have its sides in any order, like view rect of map with reversed axis
+    fun query(rect: RectD): List<E> =
+        ArrayList<E>().also { query(rect, it) }
+
+    // found items replace content of given list, so it can be reused every frame
+    // tiles are drawn on other thread than frames, so queries are made one at a time
+    @Synchronized
+    fun query(rect: RectD, into: MutableList<E>) {
+        foundCount = 0
+        root.query(
+            min(rect.left, rect.right),
+            min(rect.top, rect.bottom),
+            max(rect.left, rect.right),
+            max(rect.top, rect.bottom),
+        )
+        found.sort(0, foundCount)
+        into.clear()
+        for (k in 0 until foundCount) into.add(items[found[k]])
+    }
+
+    private fun found(i: Int) {
+        if (foundCount == found.size) found = found.copyOf(foundCount * 2)
+        found[foundCount++] = i
+    }
+
+    private inner class Node(
+        private val minX: Double,
+        private val minY: Double,
+        private val maxX: Double,
+        private val maxY: Double,
+        private val depth: Int,
+    ) {
+
+        private var contained = IntArray(CAPACITY)
+        private var size = 0
+        private var children: Array<Node>? = null
+
+        private val centerX = (minX + maxX) / 2
+        private val centerY = (minY + maxY) / 2
+
+        fun insert(i: Int) {
+            val child = children?.let { findChild(it, i) }
+            if (child != null) {
+                child.insert(i)
+                return
+            }
+            add(i)
+            if (children == null && size > CAPACITY && depth < MAX_DEPTH) split()
+        }
+
+        fun query(left: Double, top: Double, right: Double, bottom: Double) {
+            if (left > maxX || right < minX || top > maxY || bottom < minY) return
+
+            for (k in 0 until size) {
+                val i = contained[k]
+                if (left <= this@QuadTree.maxX[i] && right >= this@QuadTree.minX[i] &&
+                    top <= this@QuadTree.maxY[i] && bottom >= this@QuadTree.minY[i]
+                ) {
+                    found(i)
+                }
+            }
+            children?.forEach { it.query(left, top, right, bottom) }
+        }
+
+        private fun add(i: Int) {
+            if (size == contained.size) contained = contained.copyOf(size * 2)
+            contained[size++] = i
+        }
+
+        // items lying across center stay in this node
+        private fun split() {
+            val created = arrayOf(
+                Node(minX, minY, centerX, centerY, depth + 1),
+                Node(centerX, minY, maxX, centerY, depth + 1),
+                Node(minX, centerY, centerX, maxY, depth + 1),
+                Node(centerX, centerY, maxX, maxY, depth + 1),
+            )
+            children = created
+            val old = contained.copyOf(size)
+            size = 0
+            old.forEach { i -> findChild(created, i)?.insert(i) ?: add(i) }
+        }
+
+        private fun findChild(children: Array<Node>, i: Int): Node? {
+            val west = this@QuadTree.maxX[i] <= centerX
+            val east = this@QuadTree.minX[i] >= centerX
+            val south = this@QuadTree.maxY[i] <= centerY
+            val north = this@QuadTree.minY[i] >= centerY
+            return when {
+                west && south -> children[0]
+                east && south -> children[1]
+                west && north -> children[2]
+                east && north -> children[3]
+                else -> null
+            }
+        }
+    }
+
+    private companion object {
+
+        const val CAPACITY = 8
+        const val MAX_DEPTH = 10
+        const val INITIAL_FOUND = 64
+    }
+}
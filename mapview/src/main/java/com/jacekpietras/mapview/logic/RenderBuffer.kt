@@ -0,0 +1,198 @@
+package com.jacekpietras.mapview.logic
+
+import android.graphics.Bitmap
+import androidx.annotation.DrawableRes
+import com.jacekpietras.mapview.model.Pivot
+import com.jacekpietras.mapview.model.RenderItem
+import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderBitmapItem
+import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderCircleItem
+import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderIconItem
+import com.jacekpietras.mapview.model.RenderItem.RenderPathItem
+import com.jacekpietras.mapview.model.RenderItem.RenderPolygonItem
+import com.jacekpietras.mapview.model.RenderItem.RenderTileItem
+import java.util.concurrent.atomic.AtomicInteger
+
+// Storage of one frame, its vertices and render items are reused every time this frame is made again.
+// Vertices of all shapes are kept in one array, items point to their part of it.
+// When array has to grow, items made before keep the old one, it still has their vertices.
+// Buffer is either written or read by one thread at a time, frame number tells if it still has given snapshot.
+internal class RenderBuffer<T> {
+
+    private val state = AtomicInteger(FREE)
+
+    @Volatile
+    var frame: Long = 0
+        private set
+
+    val items = ArrayList<RenderItem<T>>()
+    var vertices = FloatArray(INITIAL_VERTICES)
+        private set
+    private var verticesSize = 0
+
+    private val paths = ArrayList<RenderPathItem<T>>()
+    private var pathsUsed = 0
+    private val polygons = ArrayList<RenderPolygonItem<T>>()
+    private var polygonsUsed = 0
+    private val circles = ArrayList<RenderCircleItem<T>>()
+    private var circlesUsed = 0
+    private val icons = ArrayList<RenderIconItem<T>>()
+    private var iconsUsed = 0
+    private val bitmaps = ArrayList<RenderBitmapItem<T>>()
+    private var bitmapsUsed = 0
+    private val tiles = ArrayList<RenderTileItem<T>>()
+    private var tilesUsed = 0
+
+    // false when buffer is being read, then other one has to be used
+    fun startWriting(): Boolean {
+        if (!state.compareAndSet(FREE, WRITING)) return false
+
+        frame++
+        clear()
+        return true
+    }
+
+    fun finishWriting() {
+        state.set(FREE)
+    }
+
+    // false when buffer is being written or has other frame already, then newer snapshot should be read
+    fun startReading(frame: Long): Boolean {
+        if (!state.compareAndSet(FREE, READING)) return false
+        if (this.frame != frame) {
+            state.set(FREE)
+            return false
+        }
+        return true
+    }
+
+    fun finishReading() {
+        state.set(FREE)
+    }
+
+    fun clear() {
+        items.clear()
+        verticesSize = 0
+        pathsUsed = 0
+        polygonsUsed = 0
+        circlesUsed = 0
+        iconsUsed = 0
+        bitmapsUsed = 0
+        tilesUsed = 0
+    }
+
+    // offset in vertices, where given number of floats can be written
+    fun reserve(length: Int): Int {
+        if (verticesSize + length > vertices.size) {
+            vertices = vertices.copyOf(maxOf(vertices.size * 2, verticesSize + length))
+        }
+        return verticesSize.also { verticesSize += length }
+    }
+
+    fun path(offset: Int, length: Int, paint: T): RenderPathItem<T> =
+        if (pathsUsed < paths.size) {
+            paths[pathsUsed].apply {
+                shape = vertices
+                this.offset = offset
+                this.length = length
+                this.paint = paint
+            }
+        } else {
+            RenderPathItem(vertices, paint, offset, length).also(paths::add)
+        }.also { pathsUsed++ }
+
+    fun polygon(offset: Int, length: Int, paint: T): RenderPolygonItem<T> =
+        if (polygonsUsed < polygons.size) {
+            polygons[polygonsUsed].apply {
+                shape = vertices
+                this.offset = offset
+                this.length = length
+                this.paint = paint
+            }
+        } else {
+            RenderPolygonItem(vertices, paint, offset, length).also(polygons::add)
+        }.also { polygonsUsed++ }
+
+    fun circle(cX: Float, cY: Float, radius: Float, paint: T): RenderCircleItem<T> =
+        if (circlesUsed < circles.size) {
+            circles[circlesUsed].apply {
+                this.cX = cX
+                this.cY = cY
+                this.radius = radius
+                this.paint = paint
+            }
+        } else {
+            RenderCircleItem(cX, cY, radius, paint).also(circles::add)
+        }.also { circlesUsed++ }
+
+    fun icon(cX: Float, cY: Float, @DrawableRes iconRes: Int, pivot: Pivot): RenderIconItem<T> =
+        if (iconsUsed < icons.size) {
+            icons[iconsUsed].apply {
+                this.cX = cX
+                this.cY = cY
+                this.iconRes = iconRes
+                this.pivot = pivot
+            }
+        } else {
+            RenderIconItem<T>(cX, cY, iconRes, pivot).also(icons::add)
+        }.also { iconsUsed++ }
+
+    fun bitmap(cX: Float, cY: Float, bitmap: Bitmap, pivot: Pivot): RenderBitmapItem<T> =
+        if (bitmapsUsed < bitmaps.size) {
+            bitmaps[bitmapsUsed].apply {
+                this.cX = cX
+                this.cY = cY
+                this.bitmap = bitmap
+                this.pivot = pivot
+            }
+        } else {
+            RenderBitmapItem<T>(cX, cY, bitmap, pivot).also(bitmaps::add)
+        }.also { bitmapsUsed++ }
+
+    fun tile(bitmap: Bitmap, left: Float, top: Float, scaleX: Float, scaleY: Float, rotation: Float): RenderTileItem<T> =
+        if (tilesUsed < tiles.size) {
+            tiles[tilesUsed].apply {
+                this.bitmap = bitmap
+                this.left = left
+                this.top = top
+                this.scaleX = scaleX
+                this.scaleY = scaleY
+                this.rotation = rotation
+            }
+        } else {
+            RenderTileItem<T>(bitmap, left, top, scaleX, scaleY, rotation).also(tiles::add)
+        }.also { tilesUsed++ }
+
+    private companion object {
+
+        const val INITIAL_VERTICES = 4096
+        const val FREE = 0
+        const val WRITING = 1
+        const val READING = 2
+    }
+}
+
+// Frame handed to view, new one is made every time, so it is never equal to the one shown before,
+// even when it comes from the same buffer.
+// Views drawing on main thread can just read it, other threads have to hold it first.
+internal class RenderSnapshot<T>(
+    private val buffer: RenderBuffer<T>,
+) : AbstractList<RenderItem<T>>() {
+
+    private val frame = buffer.frame
+
+    override val size: Int get() = buffer.items.size
+
+    override fun get(index: Int): RenderItem<T> = buffer.items[index]
+
+    // false when newer snapshot replaced this one, it won't be changed until released
+    fun hold(): Boolean =
+        buffer.startReading(frame)
+
+    fun release() {
+        buffer.finishReading()
+    }
+
+    override fun equals(other: Any?): Boolean = this === other
+
+    override fun hashCode(): Int = System.identityHashCode(this)
+}
@@ -2,6 +2,7 @@ package com.jacekpietras.mapview.logic
 
 import android.graphics.Matrix
 import com.jacekpietras.geometry.PointD
+import com.jacekpietras.mapview.BuildConfig
 import com.jacekpietras.mapview.logic.ItemVisibility.HIDDEN
 import com.jacekpietras.mapview.logic.ItemVisibility.TO_CHECK
 import com.jacekpietras.mapview.logic.ItemVisibility.VISIBLE
@@ -17,257 +18,323 @@ import com.jacekpietras.mapview.model.ViewCoordinates
 import com.jacekpietras.mapview.ui.LastMapUpdate
 import timber.log.Timber
 
+// Frames are made alternately in two buffers, so the one shown is not changed while next one is made.
+// When other thread still draws from older one, third buffer is made.
+// Everything used for making frame is kept between frames, moving map doesn't allocate memory for items.
+// Shapes transformed for view are kept by items, frame made for the same view only copies them into buffer.
 internal class RenderListMaker<T>(
-    private val visibleGpsCoordinate: ViewCoordinates,
-    private val worldRotation: Float,
-    private val currentWidth: Int,
-    private val currentHeight: Int,
-    private val zoom: Double,
-    private val centerGpsCoordinate: PointD,
     private val bakeDimension: (MapDimension) -> ((Double, PointD, Int) -> Float),
 ) {
 
-    private val borders = mutableListOf<RenderItem<T>>()
-    private val insides = mutableListOf<RenderItem<T>>()
-    private val icons = mutableListOf<RenderItem.PointItem<T>>()
-    private val dynamicPaints = mutableMapOf<PaintHolder.Dynamic<T>, T>()
-    private val dynamicDimensions = mutableMapOf<MapDimension, Float>()
+    private val buffers = mutableListOf(RenderBuffer<T>(), RenderBuffer<T>())
+    private var buffer = buffers[0]
+    private var published: RenderBuffer<T>? = null
+
+    private val borders = ArrayList<RenderItem<T>>()
+    private val insides = ArrayList<RenderItem<T>>()
+    private val icons = ArrayList<RenderItem.PointItem<T>>()
+    private val transformed = FloatArray(2)
     private val matrix = Matrix()
-        .apply {
-            setRotate(
-                -worldRotation,
-                currentWidth / 2.toFloat(),
-                currentHeight / 2.toFloat(),
-            )
-        }
+
+    // dynamic paints and dimensions are made again only when zoom or size of view changed
+    private val dynamicPaints = HashMap<PaintHolder.Dynamic<T>, T>()
+    private val dynamicDimensions = HashMap<MapDimension, Float>()
+    private var dynamicZoom = Double.NaN
+    private var dynamicWidth = 0
+
+    private lateinit var visibleGpsCoordinate: ViewCoordinates
+    private var worldRotation: Float = 0f
+    private var currentWidth: Int = 0
+    private var zoom: Double = 0.0
+    private var centerGpsCoordinate: PointD = PointD()
+    private var visibilityGeneration: Int = 0
+    private var levelOfDetail: Int = 0
+
+    // view for which items have their shapes transformed
+    private var transformGeneration: Int = 0
+    private var transformView: ViewCoordinates? = null
+    private var transformRotation: Float = Float.NaN
+    private var transformWidth: Int = 0
+    private var transformHeight: Int = 0
+    private var transformLevel: Int = -1
 
     private var calculated: Int = 0
     private var skipped: Int = 0
     private var hidden: Int = 0
 
-    fun translate(vararg preparedLists: List<PreparedItem<T>>): List<RenderItem<T>> {
-        preparedLists.forEach(::addToRenderItems)
-        Timber.d("Perf: skipped: $skipped, hidden: $hidden, calculated $calculated")
+    fun translate(
+        visibleGpsCoordinate: ViewCoordinates,
+        worldRotation: Float,
+        currentWidth: Int,
+        currentHeight: Int,
+        zoom: Double,
+        centerGpsCoordinate: PointD,
+        visibilityGeneration: Int,
+        levelOfDetail: Int,
+        tiles: List<TileRenderer.Tile>,
+        vararg preparedLists: List<PreparedItem<T>>,
+    ): List<RenderItem<T>> {
+        startFrame(visibleGpsCoordinate, worldRotation, currentWidth, currentHeight, zoom, centerGpsCoordinate)
+        this.visibilityGeneration = visibilityGeneration
+        this.levelOfDetail = levelOfDetail
+        refreshTransformGeneration(currentHeight)
+
+        for (i in tiles.indices) addToRenderItems(tiles[i])
+        for (preparedList in preparedLists) addToRenderItems(preparedList)
+        if (BuildConfig.DEBUG) Timber.d("Perf: skipped: $skipped, hidden: $hidden, calculated $calculated")
         LastMapUpdate.sortS = System.nanoTime()
-        icons.sortBy { it.cY }
+        sortIcons()
         LastMapUpdate.sortE = System.nanoTime()
-        return borders + insides + icons
+
+        val items = buffer.items
+        for (i in borders.indices) items.add(borders[i])
+        for (i in insides.indices) items.add(insides[i])
+        for (i in icons.indices) items.add(icons[i])
+        buffer.finishWriting()
+        published = buffer
+        return RenderSnapshot(buffer)
+    }
+
+    // newest frame is never overwritten, it may be not drawn yet
+    private fun takeBuffer(): RenderBuffer<T> {
+        for (i in buffers.indices) {
+            val candidate = buffers[i]
+            if (candidate !== published && candidate.startWriting()) return candidate
+        }
+        return RenderBuffer<T>()
+            .also { buffers.add(it) }
+            .also { it.startWriting() }
+    }
+
+    private fun startFrame(
+        visibleGpsCoordinate: ViewCoordinates,
+        worldRotation: Float,
+        currentWidth: Int,
+        currentHeight: Int,
+        zoom: Double,
+        centerGpsCoordinate: PointD,
+    ) {
+        this.visibleGpsCoordinate = visibleGpsCoordinate
+        this.worldRotation = worldRotation
+        this.currentWidth = currentWidth
+        this.zoom = zoom
+        this.centerGpsCoordinate = centerGpsCoordinate
+        matrix.setRotate(
+            -worldRotation,
+            currentWidth / 2.toFloat(),
+            currentHeight / 2.toFloat(),
+        )
+        if (zoom != dynamicZoom || currentWidth != dynamicWidth) {
+            dynamicPaints.clear()
+            dynamicDimensions.clear()
+            dynamicZoom = zoom
+            dynamicWidth = currentWidth
+        }
+
+        buffer = takeBuffer()
+        borders.clear()
+        insides.clear()
+        icons.clear()
+        calculated = 0
+        skipped = 0
+        hidden = 0
+    }
+
+    // frames made again without moving map, e.g. only for changed user data, reuse transformed shapes
+    private fun refreshTransformGeneration(currentHeight: Int) {
+        if (
+            visibleGpsCoordinate != transformView ||
+            worldRotation != transformRotation ||
+            currentWidth != transformWidth ||
+            currentHeight != transformHeight ||
+            levelOfDetail != transformLevel
+        ) {
+            transformGeneration++
+            transformView = visibleGpsCoordinate
+            transformRotation = worldRotation
+            transformWidth = currentWidth
+            transformHeight = currentHeight
+            transformLevel = levelOfDetail
+        }
+    }
+
+    private fun addToRenderItems(tile: TileRenderer.Tile) {
+        transformPoint(tile.corner)
+        buffer.items.add(
+            buffer.tile(
+                bitmap = tile.bitmap,
+                left = transformed[0],
+                top = transformed[1],
+                scaleX = (visibleGpsCoordinate.horizontalScale / tile.scaleX).toFloat(),
+                scaleY = (visibleGpsCoordinate.verticalScale / tile.scaleY).toFloat(),
+                rotation = -worldRotation,
+            )
+        )
     }
 
     private fun addToRenderItems(preparedList: List<PreparedItem<T>>) {
-        preparedList.forEach { item ->
+        for (i in preparedList.indices) {
+            val item = preparedList[i]
             if (!item.minZoom.isBiggerThanZoom()) {
-                return@forEach
+                continue
             }
+            item.refreshGeneration()
 
-            if (item.visibility != HIDDEN) {
-                when (item) {
-                    is PreparedPolygonItem -> {
-                        item.cache
-                            ?.let {
-                                item.addToRender(it)
-                                skipped++
-                            }
-                            ?: run {
-                                item.shape
-                                    .takeIf { item.visibility == VISIBLE || visibleGpsCoordinate.isPolygonVisible(it) }
-                                    ?.let(visibleGpsCoordinate::transformPolygon)
-                                    ?.withMatrix(matrix, worldRotation)
-                                    ?.let { polygon ->
-                                        item.visibility = VISIBLE
-                                        calculated++
-                                        item.addToRender(polygon)
-                                        item.cache = polygon
-                                    }
-                                    ?: run { item.visibility = HIDDEN }
-                            }
+            if (item.visibility == HIDDEN) {
+                hidden++
+                continue
+            }
+            when (item) {
+                is PreparedPolygonItem -> {
+                    val shape = item.shapes[levelOfDetail]
+                    if (item.visibility == VISIBLE || visibleGpsCoordinate.isPolygonVisible(shape)) {
+                        item.visibility = VISIBLE
+                        item.addToRender(item.transformShape(shape, 0, shape.size, 0), shape.size)
+                        item.transformGeneration = transformGeneration
+                    } else {
+                        item.visibility = HIDDEN
                     }
-                    is PreparedPathItem -> {
-                        item.cache
-                            ?.forEach {
-                                item.addToRender(it)
-                                skipped++
-                            }
-                            ?: run {
-                                if (item.visibility == TO_CHECK) {
-                                    visibleGpsCoordinate.getVisiblePath(item.shape)
-                                        .also { item.cacheRaw = it }
-                                } else {
-                                    item.cacheRaw
-                                }
-                                    ?.let(visibleGpsCoordinate::transformPath)
-                                    ?.map { path ->
-                                        item.visibility = VISIBLE
-                                        calculated++
-                                        path.withMatrix(matrix, worldRotation)
-                                            .also { item.addToRender(it) }
-                                    }
-                                    ?.also { item.cache = it }
-                                    ?: run { item.visibility = HIDDEN }
-                            }
+                }
+                is PreparedPathItem -> {
+                    val shape = item.shapes[levelOfDetail]
+                    val parts = item.visibleParts
+                    if (item.visibility == TO_CHECK) {
+                        visibleGpsCoordinate.getVisibleParts(shape, parts)
                     }
-                    is PreparedCircleItem -> {
-                        item.cache
-                            ?.let {
-                                item.addToRender(it)
-                                skipped++
-                            }
-                            ?: run {
-                                item.point
-                                    .takeIf { item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(it) }
-                                    ?.let(visibleGpsCoordinate::transformPoint)
-                                    ?.withMatrix(matrix, worldRotation)
-                                    ?.let { point ->
-                                        item.visibility = VISIBLE
-                                        calculated++
-                                        item.addToRender(point)
-                                        item.cache = point
-                                    }
-                                    ?: run { item.visibility = HIDDEN }
-                            }
+                    if (parts.size > 0) {
+                        item.visibility = VISIBLE
+                        var cached = 0
+                        var k = 0
+                        while (k < parts.size) {
+                            val from = parts[k]
+                            val to = parts[k + 1]
+                            item.addToRender(item.transformShape(shape, from, to, cached), to - from)
+                            cached += to - from
+                            k += 2
+                        }
+                        item.transformGeneration = transformGeneration
+                    } else {
+                        item.visibility = HIDDEN
                     }
-                    is PreparedIconItem -> {
-                        item.cache
-                            ?.let {
-                                item.addToRender(it)
-                                skipped++
-                            }
-                            ?: run {
-                                item.point
-                                    .takeIf { item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(it) }
-                                    ?.let(visibleGpsCoordinate::transformPoint)
-                                    ?.withMatrix(matrix, worldRotation)
-                                    ?.let { point ->
-                                        item.visibility = VISIBLE
-                                        calculated++
-                                        item.addToRender(point)
-                                        item.cache = point
-                                    }
-                                    ?: run { item.visibility = HIDDEN }
-                            }
+                }
+                is PreparedCircleItem -> {
+                    if (item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(item.point)) {
+                        item.visibility = VISIBLE
+                        item.transformItemPoint(item.point)
+                        item.addToRender()
+                    } else {
+                        item.visibility = HIDDEN
                     }
-                    is PreparedBitmapItem -> {
-                        item.cache
-                            ?.let {
-                                item.addToRender(it)
-                                skipped++
-                            }
-                            ?: run {
-                                item.point
-                                    .takeIf { item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(it) }
-                                    ?.let(visibleGpsCoordinate::transformPoint)
-                                    ?.withMatrix(matrix, worldRotation)
-                                    ?.let { point ->
-                                        item.visibility = VISIBLE
-                                        calculated++
-                                        item.addToRender(point)
-                                        item.cache = point
-                                    }
-                                    ?: run { item.visibility = HIDDEN }
-                            }
+                }
+                is PreparedIconItem -> {
+                    if (item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(item.point)) {
+                        item.visibility = VISIBLE
+                        item.transformItemPoint(item.point)
+                        icons.add(buffer.icon(transformed[0], transformed[1], item.icon, item.pivot))
+                    } else {
+                        item.visibility = HIDDEN
+                    }
+                }
+                is PreparedBitmapItem -> {
+                    if (item.visibility == VISIBLE || visibleGpsCoordinate.isPointVisible(item.point)) {
+                        item.visibility = VISIBLE
+                        item.transformItemPoint(item.point)
+                        icons.add(buffer.bitmap(transformed[0], transformed[1], item.bitmap, item.pivot))
+                    } else {
+                        item.visibility = HIDDEN
                     }
                 }
-            } else {
-                hidden++
             }
         }
     }
 
+    // items are reset only when they are looked at, not all of them after every move
+    private fun PreparedItem<T>.refreshGeneration() {
+        if (visibilityGeneration != this@RenderListMaker.visibilityGeneration) {
+            visibility = TO_CHECK
+            visibilityGeneration = this@RenderListMaker.visibilityGeneration
+            // visible parts of path are found again, so transformed ones don't match them
+            transformGeneration = 0
+        }
+    }
+
     private fun Float?.isBiggerThanZoom(): Boolean =
         this == null || this > zoom
 
-    private fun FloatArray.withMatrix(matrix: Matrix, worldRotation: Float): FloatArray {
+    // offset of transformed shape in vertices of buffer, shape kept by item from given offset is copied when still valid
+    private fun PreparedItem<T>.transformShape(shape: DoubleArray, from: Int, to: Int, cachedOffset: Int): Int {
+        val length = to - from
+        val offset = buffer.reserve(length)
+        val vertices = buffer.vertices
+        if (transformGeneration == this@RenderListMaker.transformGeneration) {
+            System.arraycopy(transformedVertices, cachedOffset, vertices, offset, length)
+            skipped++
+            return offset
+        }
+
+        visibleGpsCoordinate.transform(shape, from, to, vertices, offset)
         if (worldRotation != 0f) {
-            matrix.mapPoints(this)
+            matrix.mapPoints(vertices, offset, vertices, offset, length / 2)
         }
-        return this
+        if (transformedVertices.size < cachedOffset + length) {
+            transformedVertices = transformedVertices.copyOf(maxOf(cachedOffset + length, shape.size))
+        }
+        System.arraycopy(vertices, offset, transformedVertices, cachedOffset, length)
+        calculated++
+        return offset
     }
 
-    private fun PreparedPolygonItem<T>.addToRender(
-        array: FloatArray,
-    ) {
-        insides.add(
-            RenderItem.RenderPolygonItem(
-                array,
-                paintHolder.takePaint(),
-            )
-        )
-        if (outerPaintHolder != null) {
-            borders.add(
-                RenderItem.RenderPolygonItem(
-                    array,
-                    outerPaintHolder.takePaint(),
-                )
-            )
+    private fun PreparedItem<T>.transformItemPoint(p: PointD) {
+        if (transformGeneration == this@RenderListMaker.transformGeneration) {
+            transformed[0] = transformedVertices[0]
+            transformed[1] = transformedVertices[1]
+            skipped++
+            return
+        }
+
+        transformPoint(p)
+        if (transformedVertices.size < 2) {
+            transformedVertices = FloatArray(2)
         }
+        transformedVertices[0] = transformed[0]
+        transformedVertices[1] = transformed[1]
+        transformGeneration = this@RenderListMaker.transformGeneration
     }
 
-    private fun PreparedPathItem<T>.addToRender(
-        array: FloatArray,
-    ) {
-        insides.add(
-            RenderItem.RenderPathItem(
-                array,
-                paintHolder.takePaint(),
-            )
-        )
-        if (outerPaintHolder != null) {
-            borders.add(
-                RenderItem.RenderPathItem(
-                    array,
-                    outerPaintHolder.takePaint(),
-                )
-            )
+    private fun transformPoint(p: PointD) {
+        visibleGpsCoordinate.transform(p, transformed, 0)
+        if (worldRotation != 0f) {
+            matrix.mapPoints(transformed)
         }
     }
 
-    private fun PreparedCircleItem<T>.addToRender(
-        array: FloatArray,
-    ) {
-        insides.add(
-            RenderItem.PointItem.RenderCircleItem(
-                array[0],
-                array[1],
-                radius.takeDimension(),
-                paintHolder.takePaint(),
-            )
-        )
-        if (outerPaintHolder != null) {
-            borders.add(
-                RenderItem.PointItem.RenderCircleItem(
-                    array[0],
-                    array[1],
-                    radius.takeDimension(),
-                    outerPaintHolder.takePaint(),
-                )
-            )
+    // icons lower on screen are drawn over higher ones, insertion sort keeps equal ones in order without allocating
+    private fun sortIcons() {
+        for (i in 1 until icons.size) {
+            val icon = icons[i]
+            var j = i - 1
+            while (j >= 0 && icons[j].cY > icon.cY) {
+                icons[j + 1] = icons[j]
+                j--
+            }
+            icons[j + 1] = icon
         }
     }
 
-    private fun PreparedIconItem<T>.addToRender(
-        array: FloatArray,
-    ) {
-        icons.add(
-            RenderItem.PointItem.RenderIconItem(
-                array[0],
-                array[1],
-                icon,
-                pivot,
-            )
-        )
+    private fun PreparedPolygonItem<T>.addToRender(offset: Int, length: Int) {
+        insides.add(buffer.polygon(offset, length, paintHolder.takePaint()))
+        outerPaintHolder?.let { borders.add(buffer.polygon(offset, length, it.takePaint())) }
     }
 
-    private fun PreparedBitmapItem<T>.addToRender(
-        array: FloatArray,
-    ) {
-        icons.add(
-            RenderItem.PointItem.RenderBitmapItem(
-                array[0],
-                array[1],
-                bitmap,
-                pivot,
-            )
-        )
+    private fun PreparedPathItem<T>.addToRender(offset: Int, length: Int) {
+        insides.add(buffer.path(offset, length, paintHolder.takePaint()))
+        outerPaintHolder?.let { borders.add(buffer.path(offset, length, it.takePaint())) }
+    }
+
+    private fun PreparedCircleItem<T>.addToRender() {
+        val radius = radius.takeDimension()
+        insides.add(buffer.circle(transformed[0], transformed[1], radius, paintHolder.takePaint()))
+        outerPaintHolder?.let { borders.add(buffer.circle(transformed[0], transformed[1], radius, it.takePaint())) }
     }
 
     private fun MapDimension.takeDimension(): Float =
@@ -286,4 +353,4 @@ internal class RenderListMaker<T>(
                         .also { dynamicPaints[this] = it }
             }
         }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.jacekpietras.mapview.logic
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.RectD
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+
+// Square tiles of one level of detail, lying on world axes, so they don't depend on rotation of view.
+// Scales are tile pixels per world unit, vertical one is negative like in view, where y grows to the south.
+internal class TileGrid(
+    val scaleX: Double,
+    val scaleY: Double,
+    val size: Int = TILE_SIZE,
+) {
+
+    fun columns(rect: RectD): IntRange =
+        cell(min(rect.left * scaleX, rect.right * scaleX))..cell(max(rect.left * scaleX, rect.right * scaleX))
+
+    fun rows(rect: RectD): IntRange =
+        cell(min(rect.top * scaleY, rect.bottom * scaleY))..cell(max(rect.top * scaleY, rect.bottom * scaleY))
+
+    // world point drawn at top left corner of tile
+    fun corner(column: Int, row: Int): PointD =
+        PointD(column * size / scaleX, row * size / scaleY)
+
+    // margin in pixels is added at every side, so strokes reaching into tile from outside are found too
+    fun bounds(column: Int, row: Int, margin: Double = 0.0): RectD {
+        val left = column.toDouble() * size - margin
+        val top = row.toDouble() * size - margin
+        val right = (column + 1).toDouble() * size + margin
+        val bottom = (row + 1).toDouble() * size + margin
+        return RectD(left / scaleX, top / scaleY, right / scaleX, bottom / scaleY)
+    }
+
+    fun toPixels(shape: DoubleArray, column: Int, row: Int): FloatArray {
+        val left = column.toDouble() * size
+        val top = row.toDouble() * size
+        return FloatArray(shape.size) { i ->
+            if (i % 2 == 0) {
+                (shape[i] * scaleX - left).toFloat()
+            } else {
+                (shape[i] * scaleY - top).toFloat()
+            }
+        }
+    }
+
+    fun toPixels(point: PointD, column: Int, row: Int): FloatArray =
+        toPixels(doubleArrayOf(point.x, point.y), column, row)
+
+    private fun cell(pixel: Double): Int =
+        floor(pixel / size).toInt()
+
+    companion object {
+
+        const val TILE_SIZE = 256
+    }
+}
@@ -0,0 +1,10 @@
+package com.jacekpietras.mapview.logic
+
+import android.graphics.Bitmap
+import com.jacekpietras.mapview.model.RenderItem
+
+interface TileRasterizer<T> {
+
+    // items are already in pixels of tile, bitmap is square of given size
+    fun rasterize(size: Int, items: List<RenderItem<T>>): Bitmap
+}
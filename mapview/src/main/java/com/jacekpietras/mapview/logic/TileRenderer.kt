@@ -0,0 +1,226 @@
+package com.jacekpietras.mapview.logic
+
+import android.graphics.Bitmap
+import android.util.LruCache
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.RectD
+import com.jacekpietras.geometry.haversine
+import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem
+import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedCircleItem
+import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedPathItem
+import com.jacekpietras.mapview.logic.PreparedItem.PreparedColoredItem.PreparedPolygonItem
+import com.jacekpietras.mapview.model.MapDimension
+import com.jacekpietras.mapview.model.MapItem
+import com.jacekpietras.mapview.model.MapItem.MapColoredItem.CircleMapItem
+import com.jacekpietras.mapview.model.MapPaint
+import com.jacekpietras.mapview.model.PaintHolder
+import com.jacekpietras.mapview.model.RenderItem
+import timber.log.Timber
+import java.util.concurrent.Executors
+
+// Static world layers are drawn into bitmap tiles, so moving map only places few bitmaps instead of all shapes.
+// Tiles of level of detail are drawn at scale of the most zoomed in end of its bucket, and are scaled when shown.
+// Missing tiles are drawn on own thread, until they are ready frames are made from shapes.
+// Prepared items are only read here, their caches belong to frames made from shapes.
+// Items hidden in part of bucket are left out of tiles, they are drawn as shapes over them.
+internal class TileRenderer<T>(
+    private val rasterizer: TileRasterizer<T>,
+    private val bakeDimension: (MapDimension) -> ((Double, PointD, Int) -> Float),
+    private val onTilesReady: () -> Unit,
+    memoryBudget: Int = (Runtime.getRuntime().maxMemory() / MEMORY_PART).toInt(),
+) {
+
+    private val tiles = object : LruCache<TileKey, Bitmap>(memoryBudget) {
+        override fun sizeOf(key: TileKey, value: Bitmap): Int = value.byteCount
+    }
+    private val executor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "map tiles").apply { isDaemon = true }
+    }
+    private val scheduled = mutableSetOf<TileKey>()
+
+    @Volatile
+    private var world: World<T>? = null
+
+    // old tiles are not valid after world or width of view changed, version keeps them from being used
+    // widest stroke of world items tells how far from tile item can be and still be drawn in it
+    fun setWorld(
+        index: QuadTree<PreparedItem<T>>,
+        items: List<MapItem>,
+        levelsOfDetail: LevelsOfDetail,
+        center: PointD,
+        viewWidth: Int,
+    ) {
+        val colored = items.filterIsInstance<MapItem.MapColoredItem>()
+        val paints = colored.mapTo(HashSet()) { it.paint }
+        val radii = colored.mapNotNullTo(HashSet()) { (it as? CircleMapItem)?.radius }
+        val version = (world?.version ?: 0) + 1
+        tiles.evictAll()
+        world = World(
+            version = version,
+            index = index,
+            levelsOfDetail = levelsOfDetail,
+            center = center,
+            viewWidth = viewWidth,
+            zooms = DoubleArray(levelsOfDetail.count, levelsOfDetail::zoomOf),
+            margins = DoubleArray(levelsOfDetail.count) { level ->
+                val zoom = levelsOfDetail.zoomOf(level)
+                val toPixels = { dimension: MapDimension -> bakeDimension(dimension).invoke(zoom, center, viewWidth) }
+                maxOf(
+                    paints.maxOfOrNull { it.reach(toPixels) } ?: 0f,
+                    radii.maxOfOrNull(toPixels) ?: 0f,
+                ).toDouble()
+            },
+            grids = List(levelsOfDetail.count) { level ->
+                val zoom = levelsOfDetail.zoomOf(level)
+                val scaleX = viewWidth / (2 * zoom)
+                TileGrid(scaleX, -scaleX / haversineCorrection(center, zoom))
+            },
+        )
+    }
+
+    // tiles covering given part of world, or null when some of them are not ready yet
+    // ring of tiles around is drawn too, so they are ready before map is moved over them
+    fun tilesFor(rect: RectD, level: Int): List<Tile>? {
+        val world = world ?: return null
+        val grid = world.grids[level]
+        val columns = grid.columns(rect)
+        val rows = grid.rows(rect)
+        // when they wouldn't fit in memory together, they would be pushing each other out forever
+        val around = (columns.count() + 2).toLong() * (rows.count() + 2)
+        if (around * grid.size * grid.size * BYTES_PER_PIXEL > tiles.maxSize()) return null
+
+        val result = mutableListOf<Tile>()
+        val missing = mutableListOf<TileKey>()
+        val missingAround = mutableListOf<TileKey>()
+        for (column in columns.first - 1..columns.last + 1) {
+            for (row in rows.first - 1..rows.last + 1) {
+                val key = TileKey(world.version, level, column, row)
+                val bitmap = tiles[key]
+                when {
+                    column !in columns || row !in rows -> if (bitmap == null) missingAround += key
+                    bitmap != null -> result += Tile(bitmap, grid.corner(column, row), grid.scaleX, grid.scaleY)
+                    else -> missing += key
+                }
+            }
+        }
+        schedule(world, missing + missingAround)
+
+        return result.takeIf { missing.isEmpty() }
+    }
+
+    // thread and bitmaps are not kept after owner is gone, tiles are not drawn anymore
+    fun release() {
+        world = null
+        executor.shutdownNow()
+        tiles.evictAll()
+    }
+
+    private fun schedule(world: World<T>, keys: List<TileKey>) {
+        val toDraw = synchronized(scheduled) { keys.filter(scheduled::add) }
+        if (toDraw.isEmpty() || executor.isShutdown) return
+
+        executor.execute {
+            try {
+                toDraw.forEach { key ->
+                    if (this.world?.version == world.version) {
+                        tiles.put(key, draw(world, key))
+                    }
+                }
+            } catch (e: Exception) {
+                Timber.w(e, "Map tiles not drawn")
+            } finally {
+                synchronized(scheduled) { scheduled.removeAll(toDraw.toSet()) }
+            }
+            if (this.world?.version == world.version) onTilesReady()
+        }
+    }
+
+    // borders go first, so insides of neighbouring items are drawn over them, same as in frames
+    private fun draw(world: World<T>, key: TileKey): Bitmap {
+        val grid = world.grids[key.level]
+        val zoom = world.zooms[key.level]
+        val paints = mutableMapOf<PaintHolder<T>, T>()
+        fun PaintHolder<T>.take(): T =
+            when (this) {
+                is PaintHolder.Static<T> -> paint
+                is PaintHolder.Dynamic<T> -> paints.getOrPut(this) { block(zoom, world.center, world.viewWidth) }
+            }
+
+        val borders = mutableListOf<RenderItem<T>>()
+        val insides = mutableListOf<RenderItem<T>>()
+        world.index.query(grid.bounds(key.column, key.row, world.margins[key.level])).forEach { item ->
+            if (item !is PreparedColoredItem || !world.levelsOfDetail.isShownInWhole(key.level, item.minZoom)) return@forEach
+
+            when (item) {
+                is PreparedPathItem -> {
+                    val shape = grid.toPixels(item.shapes[key.level], key.column, key.row)
+                    insides += RenderItem.RenderPathItem(shape, item.paintHolder.take())
+                    item.outerPaintHolder?.let { borders += RenderItem.RenderPathItem(shape, it.take()) }
+                }
+                is PreparedPolygonItem -> {
+                    val shape = grid.toPixels(item.shapes[key.level], key.column, key.row)
+                    insides += RenderItem.RenderPolygonItem(shape, item.paintHolder.take())
+                    item.outerPaintHolder?.let { borders += RenderItem.RenderPolygonItem(shape, it.take()) }
+                }
+                is PreparedCircleItem -> {
+                    val point = grid.toPixels(item.point, key.column, key.row)
+                    val radius = bakeDimension(item.radius).invoke(zoom, world.center, world.viewWidth)
+                    insides += RenderItem.PointItem.RenderCircleItem(point[0], point[1], radius, item.paintHolder.take())
+                    item.outerPaintHolder?.let {
+                        borders += RenderItem.PointItem.RenderCircleItem(point[0], point[1], radius, it.take())
+                    }
+                }
+            }
+        }
+        return rasterizer.rasterize(grid.size, borders + insides)
+    }
+
+    // pixels from shape to outer edge of what is drawn with paint
+    private fun MapPaint.reach(toPixels: (MapDimension) -> Float): Float =
+        when (this) {
+            is MapPaint.Stroke -> toPixels(width) / 2
+            is MapPaint.DashedStroke -> toPixels(width) / 2
+            is MapPaint.StrokeWithBorder -> toPixels(width) / 2 + toPixels(borderWidth)
+            is MapPaint.FillWithBorder -> toPixels(borderWidth)
+            is MapPaint.Circle -> toPixels(radius)
+            is MapPaint.Fill -> 0f
+        }
+
+    // same correction as in view, so tiles have the same proportions as shapes drawn directly
+    private fun haversineCorrection(center: PointD, zoom: Double): Double {
+        val haversineH = haversine(center.x, center.y + zoom, center.x, center.y - zoom)
+        val haversineW = haversine(center.x - zoom, center.y, center.x + zoom, center.y)
+        return haversineW / haversineH
+    }
+
+    class Tile(
+        val bitmap: Bitmap,
+        val corner: PointD,
+        val scaleX: Double,
+        val scaleY: Double,
+    )
+
+    private data class TileKey(
+        val version: Int,
+        val level: Int,
+        val column: Int,
+        val row: Int,
+    )
+
+    private class World<T>(
+        val version: Int,
+        val index: QuadTree<PreparedItem<T>>,
+        val levelsOfDetail: LevelsOfDetail,
+        val center: PointD,
+        val viewWidth: Int,
+        val zooms: DoubleArray,
+        val margins: DoubleArray,
+        val grids: List<TileGrid>,
+    )
+
+    private companion object {
+
+        const val MEMORY_PART = 8
+        const val BYTES_PER_PIXEL = 4
+    }
+}
@@ -2,57 +2,123 @@ package com.jacekpietras.mapview.model
 
 import android.graphics.Bitmap
 import androidx.annotation.DrawableRes
-import androidx.compose.runtime.Immutable
 
+// Items are reused between frames, they are changed only when frame they belong to is made again.
 sealed class RenderItem<T> {
 
-    @Immutable
+    // shape is part of array, from offset, of given length
     class RenderPathItem<T>(
-        val shape: FloatArray,
-        val paint: T,
-    ) : RenderItem<T>()
+        shape: FloatArray,
+        paint: T,
+        offset: Int = 0,
+        length: Int = shape.size,
+    ) : RenderItem<T>() {
+
+        var shape: FloatArray = shape
+            internal set
+        var paint: T = paint
+            internal set
+        var offset: Int = offset
+            internal set
+        var length: Int = length
+            internal set
+    }
 
-    @Immutable
     class RenderPolygonItem<T>(
-        val shape: FloatArray,
-        val paint: T,
-    ) : RenderItem<T>()
+        shape: FloatArray,
+        paint: T,
+        offset: Int = 0,
+        length: Int = shape.size,
+    ) : RenderItem<T>() {
+
+        var shape: FloatArray = shape
+            internal set
+        var paint: T = paint
+            internal set
+        var offset: Int = offset
+            internal set
+        var length: Int = length
+            internal set
+    }
+
+    // bitmap of world tile, drawn from its top left corner, scaled and then rotated around that corner
+    class RenderTileItem<T>(
+        bitmap: Bitmap,
+        left: Float,
+        top: Float,
+        scaleX: Float,
+        scaleY: Float,
+        rotation: Float,
+    ) : RenderItem<T>() {
+
+        var bitmap: Bitmap = bitmap
+            internal set
+        var left: Float = left
+            internal set
+        var top: Float = top
+            internal set
+        var scaleX: Float = scaleX
+            internal set
+        var scaleY: Float = scaleY
+            internal set
+        var rotation: Float = rotation
+            internal set
+    }
 
     sealed class PointItem<T>(
-        open val cX: Float,
-        open val cY: Float,
+        cX: Float,
+        cY: Float,
     ) : RenderItem<T>() {
 
-        @Immutable
+        var cX: Float = cX
+            internal set
+        var cY: Float = cY
+            internal set
+
         class RenderCircleItem<T>(
-            override val cX: Float,
-            override val cY: Float,
-            val radius: Float,
-            val paint: T,
-        ) : PointItem<T>(cX, cY)
+            cX: Float,
+            cY: Float,
+            radius: Float,
+            paint: T,
+        ) : PointItem<T>(cX, cY) {
+
+            var radius: Float = radius
+                internal set
+            var paint: T = paint
+                internal set
+        }
 
-        @Immutable
         class RenderIconItem<T>(
-            override val cX: Float,
-            override val cY: Float,
-            @DrawableRes val iconRes: Int,
-            val pivot: Pivot,
+            cX: Float,
+            cY: Float,
+            @DrawableRes iconRes: Int,
+            pivot: Pivot,
         ) : PointItem<T>(cX, cY) {
 
+            @DrawableRes
+            var iconRes: Int = iconRes
+                internal set
+            var pivot: Pivot = pivot
+                internal set
+
             val width: Int get() = 24
             val height: Int get() = 24
         }
 
-        @Immutable
         class RenderBitmapItem<T>(
-            override val cX: Float,
-            override val cY: Float,
-            val bitmap: Bitmap,
-            val pivot: Pivot,
+            cX: Float,
+            cY: Float,
+            bitmap: Bitmap,
+            pivot: Pivot,
         ) : PointItem<T>(cX, cY) {
 
+            var bitmap: Bitmap = bitmap
+                internal set
+            var pivot: Pivot = pivot
+                internal set
+
             val width: Int get() = bitmap.width
             val height: Int get() = bitmap.height
         }
     }
-}
\ No newline at end of file
+}
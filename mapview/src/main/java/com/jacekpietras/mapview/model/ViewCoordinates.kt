@@ -5,6 +5,7 @@ import com.jacekpietras.geometry.RectD
 import com.jacekpietras.geometry.containsLine
 import com.jacekpietras.geometry.haversine
 import com.jacekpietras.geometry.polygonContains
+import com.jacekpietras.mapview.logic.IntList
 import kotlin.math.abs
 import kotlin.math.pow
 import kotlin.math.sqrt
@@ -17,7 +18,7 @@ internal class ViewCoordinates(
 ) {
 
     val visibleRect: RectD
-    private val visibleRectRotated: RectD
+    val visibleRectRotated: RectD
     val horizontalScale: Double
     val verticalScale: Double
 
@@ -53,28 +54,17 @@ internal class ViewCoordinates(
         verticalScale = viewHeight / visibleRect.height()
     }
 
-    fun getVisiblePath(array: DoubleArray): List<DoubleArray>? {
+    // visible parts of path are written as pairs of first and after last index in array
+    fun getVisibleParts(array: DoubleArray, parts: IntList) {
         val rectF = visibleRectRotated
-        val result = mutableListOf<DoubleArray>()
-        var pos = 0
+        parts.clear()
+        var from = -1
         var skip = 0
 
-        if (part.size < array.size) {
-            part = DoubleArray(array.size + 16)
-        }
-
         for (i in 0 until (array.size - 2) step 2) {
             if (skip > 0 || rectF.containsLine(array[i], array[i + 1], array[i + 2], array[i + 3])) {
-                if (pos == 0) {
-                    part[0] = array[i]
-                    part[1] = array[i + 1]
-                    part[2] = array[i + 2]
-                    part[3] = array[i + 3]
-                    pos = 4
-                } else {
-                    part[pos] = array[i + 2]
-                    part[pos + 1] = array[i + 3]
-                    pos += 2
+                if (from == -1) {
+                    from = i
                 }
                 if (skip == 0) {
                     // takes next few segments even if they are not in the screen,
@@ -83,19 +73,17 @@ internal class ViewCoordinates(
                 } else {
                     skip--
                 }
-            } else {
-                if (pos != 0) {
-                    result.add(part.copyOfRange(0, pos))
-                }
-                pos = 0
+            } else if (from != -1) {
+                parts.add(from)
+                parts.add(i + 2)
+                from = -1
             }
         }
 
-        if (pos != 0) {
-            result.add(part.copyOfRange(0, pos))
+        if (from != -1) {
+            parts.add(from)
+            parts.add(array.size)
         }
-
-        return result.takeIf(MutableList<DoubleArray>::isNotEmpty)
     }
 
     fun isPolygonVisible(array: DoubleArray): Boolean =
@@ -104,17 +92,18 @@ internal class ViewCoordinates(
     fun isPointVisible(p: PointD): Boolean =
         visibleRectRotated.contains(p)
 
-    fun transformPath(list: List<DoubleArray>): List<FloatArray> =
-        list.map(::transformPolygon)
-
-    fun transformPolygon(array: DoubleArray): FloatArray =
-        FloatArray(array.size) { i ->
-            if (i % 2 == 0) {
-                array[i].transformX()
-            } else {
-                array[i].transformY()
-            }
+    // writes transformed part of shape into array, from given offset
+    fun transform(shape: DoubleArray, from: Int, to: Int, into: FloatArray, offset: Int) {
+        for (i in from until to step 2) {
+            into[offset + i - from] = shape[i].transformX()
+            into[offset + i - from + 1] = shape[i + 1].transformY()
         }
+    }
+
+    fun transform(p: PointD, into: FloatArray, offset: Int) {
+        into[offset] = p.x.transformX()
+        into[offset + 1] = p.y.transformY()
+    }
 
     fun transformPoint(p: PointD): FloatArray =
         FloatArray(2) { i ->
@@ -216,9 +205,4 @@ internal class ViewCoordinates(
 //        )
         return result
     }
-
-    private companion object {
-
-        var part: DoubleArray = DoubleArray(512)
-    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.jacekpietras.mapview.ui.compose
+
+import android.graphics.Bitmap
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.geometry.Size
+import androidx.compose.ui.graphics.Canvas
+import androidx.compose.ui.graphics.ImageBitmap
+import androidx.compose.ui.graphics.Path
+import androidx.compose.ui.graphics.asAndroidBitmap
+import androidx.compose.ui.graphics.drawscope.CanvasDrawScope
+import androidx.compose.ui.unit.Density
+import androidx.compose.ui.unit.LayoutDirection
+import com.jacekpietras.mapview.logic.TileRasterizer
+import com.jacekpietras.mapview.model.ComposablePaint
+import com.jacekpietras.mapview.model.RenderItem
+import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderCircleItem
+import com.jacekpietras.mapview.model.RenderItem.RenderPathItem
+import com.jacekpietras.mapview.model.RenderItem.RenderPolygonItem
+
+// tiles are drawn by the same functions as map on screen, outside of composition
+class ComposableTileRasterizer : TileRasterizer<ComposablePaint> {
+
+    override fun rasterize(size: Int, items: List<RenderItem<ComposablePaint>>): Bitmap {
+        val bitmap = ImageBitmap(size, size)
+        val path = Path()
+        CanvasDrawScope().draw(
+            density = Density(1f),
+            layoutDirection = LayoutDirection.Ltr,
+            canvas = Canvas(bitmap),
+            size = Size(size.toFloat(), size.toFloat()),
+        ) {
+            items.forEach {
+                when (it) {
+                    is RenderPathItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, false)
+                    is RenderPolygonItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, true)
+                    is RenderCircleItem -> drawCircleSafe(it.paint.color, it.radius, Offset(it.cX, it.cY))
+                    else -> Unit
+                }
+            }
+        }
+        return bitmap.asAndroidBitmap()
+    }
+}
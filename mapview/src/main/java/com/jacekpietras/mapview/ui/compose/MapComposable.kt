@@ -12,6 +12,7 @@ import androidx.compose.material.Icon
 import androidx.compose.material.MaterialTheme.colors
 import androidx.compose.material.Text
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.remember
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.composed
@@ -22,6 +23,7 @@ import androidx.compose.ui.graphics.Path
 import androidx.compose.ui.graphics.asImageBitmap
 import androidx.compose.ui.graphics.drawscope.DrawScope
 import androidx.compose.ui.graphics.drawscope.Fill
+import androidx.compose.ui.graphics.drawscope.withTransform
 import androidx.compose.ui.input.pointer.pointerInput
 import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.res.painterResource
@@ -35,6 +37,7 @@ import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderCircleItem
 import com.jacekpietras.mapview.model.RenderItem.PointItem.RenderIconItem
 import com.jacekpietras.mapview.model.RenderItem.RenderPathItem
 import com.jacekpietras.mapview.model.RenderItem.RenderPolygonItem
+import com.jacekpietras.mapview.model.RenderItem.RenderTileItem
 import com.jacekpietras.mapview.ui.LastMapUpdate
 import com.jacekpietras.mapview.ui.LastMapUpdate.cutoE
 import com.jacekpietras.mapview.ui.LastMapUpdate.cutoS
@@ -58,6 +61,8 @@ fun MapComposable(
     mapList: List<RenderItem<ComposablePaint>>,
 ) {
     rendS = System.nanoTime()
+    // one path is reused for all shapes, canvas keeps its own copy of what is drawn
+    val path = remember { Path() }
 
     Box {
         Canvas(
@@ -75,9 +80,10 @@ fun MapComposable(
 
             mapList.forEach {
                 when (it) {
-                    is RenderPathItem -> drawPath(it.shape, it.paint, false)
-                    is RenderPolygonItem -> drawPath(it.shape, it.paint, true)
+                    is RenderPathItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, false)
+                    is RenderPolygonItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, true)
                     is RenderCircleItem -> drawCircleSafe(it.paint.color, it.radius, Offset(it.cX, it.cY))
+                    is RenderTileItem -> drawTile(it)
                     else -> Unit
                 }
             }
@@ -202,7 +208,17 @@ private fun <T> Modifier.offset(item: RenderBitmapItem<T>): Modifier =
         }
     }
 
-private fun DrawScope.drawCircleSafe(
+private fun DrawScope.drawTile(tile: RenderTileItem<ComposablePaint>) {
+    withTransform({
+        translate(tile.left, tile.top)
+        rotate(tile.rotation, pivot = Offset.Zero)
+        scale(tile.scaleX, tile.scaleY, pivot = Offset.Zero)
+    }) {
+        drawImage(tile.bitmap.asImageBitmap())
+    }
+}
+
+internal fun DrawScope.drawCircleSafe(
     color: Color,
     radius: Float,
     center: Offset,
@@ -247,13 +263,20 @@ private fun Modifier.addOnClick(onClick: ((Float, Float) -> Unit)?): Modifier {
     }
 }
 
-private fun DrawScope.drawPath(polygon: FloatArray, paint: ComposablePaint, close: Boolean = false) {
-    val toDraw = Path()
+internal fun DrawScope.drawPath(
+    toDraw: Path,
+    polygon: FloatArray,
+    offset: Int,
+    length: Int,
+    paint: ComposablePaint,
+    close: Boolean = false,
+) {
+    toDraw.reset()
 
-    if (polygon.size >= 4) {
-        toDraw.moveTo(polygon[0], polygon[1])
+    if (length >= 4) {
+        toDraw.moveTo(polygon[offset], polygon[offset + 1])
 
-        for (i in 2 until polygon.size step 2)
+        for (i in offset + 2 until offset + length step 2)
             toDraw.lineTo(polygon[i], polygon[i + 1])
 
         if (close) toDraw.close()
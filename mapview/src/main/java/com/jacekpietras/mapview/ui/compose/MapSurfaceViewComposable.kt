@@ -33,7 +33,7 @@ fun MapSurfaceViewComposable(
                 this.onClick = onClick
                 this.onTransform = onTransform
                 this.mapList = mapList
-                this.setBackgroundColor(backgroundColor.toArgb())
+                this.mapBackgroundColor = backgroundColor.toArgb()
                 mapView = this
             }
         },
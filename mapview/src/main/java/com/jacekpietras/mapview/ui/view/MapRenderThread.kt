@@ -0,0 +1,118 @@
+package com.jacekpietras.mapview.ui.view
+
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
+import android.view.Choreographer
+import android.view.SurfaceHolder
+import com.jacekpietras.mapview.logic.RenderSnapshot
+import com.jacekpietras.mapview.model.RenderItem
+import com.jacekpietras.mapview.utils.drawMapObjects
+
+// Map is drawn on own thread into surface, at most once per display frame.
+// Main thread only hands over newest list of items, so gestures and layout don't wait for drawing.
+internal class MapRenderThread(
+    private val holder: SurfaceHolder,
+) : Choreographer.FrameCallback {
+
+    @Volatile
+    var mapList: List<RenderItem<Paint>> = emptyList()
+        set(value) {
+            field = value
+            requestFrame()
+        }
+
+    @Volatile
+    var backgroundColor: Int = Color.WHITE
+        set(value) {
+            field = value
+            requestRedraw()
+        }
+
+    private val thread = HandlerThread("map render").apply { start() }
+    private val handler = Handler(thread.looper)
+    private val surfaceLock = Any()
+    private var surfaceReady = false
+
+    // used only on render thread, missing when quit came before thread got to create it
+    private var choreographer: Choreographer? = null
+    private var frameRequested = false
+    private var drawn: List<RenderItem<Paint>>? = null
+
+    private val postFrame = Runnable {
+        if (!frameRequested) {
+            frameRequested = true
+            choreographer?.postFrameCallback(this)
+        }
+    }
+    private val postRedraw = Runnable {
+        drawn = null
+        postFrame.run()
+    }
+
+    init {
+        handler.post { choreographer = Choreographer.getInstance() }
+    }
+
+    fun onSurfaceCreated() {
+        synchronized(surfaceLock) { surfaceReady = true }
+        requestRedraw()
+    }
+
+    fun onSurfaceChanged() {
+        requestRedraw()
+    }
+
+    // after it returns, surface is not touched anymore
+    fun onSurfaceDestroyed() {
+        synchronized(surfaceLock) { surfaceReady = false }
+    }
+
+    fun quit() {
+        handler.removeCallbacksAndMessages(null)
+        handler.post { choreographer?.removeFrameCallback(this) }
+        thread.quitSafely()
+    }
+
+    private fun requestFrame() {
+        handler.post(postFrame)
+    }
+
+    private fun requestRedraw() {
+        handler.post(postRedraw)
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        frameRequested = false
+        val list = mapList
+        if (list === drawn) return
+        // when snapshot was replaced in meantime, view gets newer one and asks for frame again
+        if (list is RenderSnapshot<*> && !list.hold()) return
+
+        try {
+            synchronized(surfaceLock) {
+                if (!surfaceReady) return
+                val canvas = lockCanvas() ?: return
+                try {
+                    canvas.drawColor(backgroundColor)
+                    canvas.drawMapObjects(list)
+                } finally {
+                    holder.unlockCanvasAndPost(canvas)
+                }
+                drawn = list
+            }
+        } finally {
+            if (list is RenderSnapshot<*>) list.release()
+        }
+    }
+
+    private fun lockCanvas(): Canvas? =
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            holder.lockHardwareCanvas()
+        } else {
+            holder.lockCanvas()
+        }
+}
@@ -2,18 +2,18 @@ package com.jacekpietras.mapview.ui.view
 
 import android.annotation.SuppressLint
 import android.content.Context
-import android.graphics.Canvas
+import android.graphics.Color
 import android.graphics.Paint
 import android.util.AttributeSet
 import android.view.MotionEvent
+import android.view.SurfaceHolder
 import android.view.SurfaceView
 import com.jacekpietras.mapview.model.RenderItem
 import com.jacekpietras.mapview.utils.ViewGestures
-import com.jacekpietras.mapview.utils.drawMapObjects
 
 class MapSurfaceView @JvmOverloads constructor(
     context: Context, attrs: AttributeSet? = null, defStyleAttr: Int = 0
-) : SurfaceView(context, attrs, defStyleAttr) {
+) : SurfaceView(context, attrs, defStyleAttr), SurfaceHolder.Callback {
 
     var onSizeChanged: ((width: Int, height: Int) -> Unit)? = null
     var onClick: ((Float, Float) -> Unit)? = null
@@ -21,9 +21,18 @@ class MapSurfaceView @JvmOverloads constructor(
     var mapList: List<RenderItem<Paint>> = emptyList()
         set(value) {
             field = value
-            invalidate()
+            renderThread?.mapList = value
         }
 
+    // background of view would cover surface, so it is drawn into surface with map
+    var mapBackgroundColor: Int = Color.WHITE
+        set(value) {
+            field = value
+            renderThread?.backgroundColor = value
+        }
+
+    private var renderThread: MapRenderThread? = null
+
     private val viewGestures = object : ViewGestures(context) {
 
         override fun onTransform(cX: Float, cY: Float, scale: Float, rotate: Float, vX: Float, vY: Float) {
@@ -36,27 +45,44 @@ class MapSurfaceView @JvmOverloads constructor(
     }
 
     init {
+        holder.addCallback(this)
         onSizeChanged?.invoke(width, height)
     }
 
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
+        renderThread = MapRenderThread(holder).also {
+            it.backgroundColor = mapBackgroundColor
+            it.mapList = mapList
+        }
         onSizeChanged?.invoke(width, height)
     }
 
+    override fun onDetachedFromWindow() {
+        renderThread?.quit()
+        renderThread = null
+        super.onDetachedFromWindow()
+    }
+
     override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
         onSizeChanged?.invoke(width, height)
     }
 
+    override fun surfaceCreated(holder: SurfaceHolder) {
+        renderThread?.onSurfaceCreated()
+    }
+
+    override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {
+        renderThread?.onSurfaceChanged()
+    }
+
+    override fun surfaceDestroyed(holder: SurfaceHolder) {
+        renderThread?.onSurfaceDestroyed()
+    }
+
     @SuppressLint("ClickableViewAccessibility")
     override fun onTouchEvent(event: MotionEvent): Boolean {
         viewGestures.onTouchEvent(event)
         return true
     }
-
-    override fun onDraw(canvas: Canvas) {
-        super.onDraw(canvas)
-
-        canvas.drawMapObjects(mapList)
-    }
 }
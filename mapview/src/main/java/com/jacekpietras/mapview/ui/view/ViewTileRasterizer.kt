@@ -0,0 +1,15 @@
+package com.jacekpietras.mapview.ui.view
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import com.jacekpietras.mapview.logic.TileRasterizer
+import com.jacekpietras.mapview.model.RenderItem
+import com.jacekpietras.mapview.utils.drawMapObjects
+
+class ViewTileRasterizer : TileRasterizer<Paint> {
+
+    override fun rasterize(size: Int, items: List<RenderItem<Paint>>): Bitmap =
+        Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)
+            .also { Canvas(it).drawMapObjects(items) }
+}
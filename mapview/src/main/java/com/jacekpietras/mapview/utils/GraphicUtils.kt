@@ -5,11 +5,14 @@ import android.graphics.Paint
 import android.graphics.Path
 import com.jacekpietras.mapview.model.RenderItem
 
+// one path is reused for all shapes, canvas keeps its own copy of what is drawn
 internal fun Canvas.drawMapObjects(list:List<RenderItem<Paint>>){
-    list.forEach {
-        when (it) {
-            is RenderItem.RenderPathItem -> drawPath(it.shape, it.paint, false)
-            is RenderItem.RenderPolygonItem -> drawPath(it.shape, it.paint, true)
+    val path = Path()
+    for (i in list.indices) {
+        when (val it = list[i]) {
+            is RenderItem.RenderPathItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, false)
+            is RenderItem.RenderPolygonItem -> drawPath(path, it.shape, it.offset, it.length, it.paint, true)
+            is RenderItem.RenderTileItem -> drawTile(it)
             is RenderItem.PointItem.RenderCircleItem -> drawCircle(it.cX, it.cY, it.radius, it.paint)
             is RenderItem.PointItem.RenderIconItem -> {
                 // TODO("draw image on canvas")
@@ -21,13 +24,31 @@ internal fun Canvas.drawMapObjects(list:List<RenderItem<Paint>>){
     }
 }
 
-private fun Canvas.drawPath(polygon: FloatArray, paint: Paint, close: Boolean = false) {
-    val toDraw = Path()
+private val tilePaint = Paint(Paint.FILTER_BITMAP_FLAG)
 
-    if (polygon.size >= 4) {
-        toDraw.moveTo(polygon[0], polygon[1])
+private fun Canvas.drawTile(tile: RenderItem.RenderTileItem<Paint>) {
+    save()
+    translate(tile.left, tile.top)
+    rotate(tile.rotation)
+    scale(tile.scaleX, tile.scaleY)
+    drawBitmap(tile.bitmap, 0f, 0f, tilePaint)
+    restore()
+}
+
+private fun Canvas.drawPath(
+    toDraw: Path,
+    polygon: FloatArray,
+    offset: Int,
+    length: Int,
+    paint: Paint,
+    close: Boolean = false,
+) {
+    toDraw.rewind()
+
+    if (length >= 4) {
+        toDraw.moveTo(polygon[offset], polygon[offset + 1])
 
-        for (i in 2 until polygon.size step 2)
+        for (i in offset + 2 until offset + length step 2)
             toDraw.lineTo(polygon[i], polygon[i + 1])
 
         if (close) toDraw.close()
@@ -0,0 +1,93 @@
+package com.jacekpietras.mapview.logic
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.math.sin
+
+class LevelsOfDetailTest {
+
+    private val tested = LevelsOfDetail(minZoom = 0.001, maxZoom = 0.01)
+
+    @Test
+    fun `levels grow with zoom`() {
+        assertEquals(0, tested.levelFor(0.001))
+        assertEquals(1, tested.levelFor(0.002))
+        assertEquals(tested.count - 1, tested.levelFor(0.01))
+        assertEquals(tested.count - 1, tested.levelFor(1.0))
+    }
+
+    @Test
+    fun `item hidden inside of bucket is shown only in part of it`() {
+        val level = tested.levelFor(0.002)
+        val inside = ((tested.zoomOf(level) + tested.zoomOf(level + 1)) / 2).toFloat()
+
+        assertTrue(tested.isShownInPart(level, inside))
+        assertFalse(tested.isShownInWhole(level, inside))
+        assertTrue(tested.isShownInWhole(level, null))
+        assertTrue(tested.isShownInWhole(level, tested.zoomOf(level + 1).toFloat() * 1.01f))
+        assertFalse(tested.isShownInPart(level, tested.zoomOf(level).toFloat() * 0.99f))
+        assertFalse(tested.isShownInWhole(level, tested.zoomOf(level).toFloat() * 0.99f))
+    }
+
+    @Test
+    fun `points on straight line are dropped`() {
+        val shape = DoubleArray(200) { i -> if (i % 2 == 0) i * 0.001 else 50.0 + i * 0.002 }
+
+        val levels = tested.simplifyPath(shape)
+
+        levels.forEach { level ->
+            assertArrayEquals(doubleArrayOf(0.0, 50.002, 0.198, 50.398), level, 1e-9)
+        }
+    }
+
+    @Test
+    fun `less detailed levels have fewer vertices`() {
+        val shape = wave(1000)
+
+        val sizes = tested.simplifyPath(shape).map { it.size }
+
+        assertTrue(sizes.first() < shape.size) { "$sizes" }
+        sizes.zipWithNext().forEach { (more, fewer) -> assertTrue(more >= fewer) { "$sizes" } }
+        assertTrue(sizes.last() < sizes.first()) { "$sizes" }
+    }
+
+    @Test
+    fun `ends of path are kept`() {
+        val shape = wave(300)
+
+        tested.simplifyPath(shape).forEach { level ->
+            assertEquals(shape[0], level[0])
+            assertEquals(shape[1], level[1])
+            assertEquals(shape[shape.size - 2], level[level.size - 2])
+            assertEquals(shape[shape.size - 1], level[level.size - 1])
+        }
+    }
+
+    @Test
+    fun `tiny polygon is not collapsed`() {
+        val shape = doubleArrayOf(19.0, 50.0, 19.0000001, 50.0, 19.0000001, 50.0000001, 19.0, 50.0000001)
+
+        tested.simplifyPolygon(shape).forEach { level ->
+            assertTrue(level.size >= 6)
+        }
+    }
+
+    @Test
+    fun `shapes are kept whole before zoom range is known`() {
+        val shape = wave(1000)
+
+        val levels = LevelsOfDetail.unsimplified()
+
+        levels.simplifyPath(shape).forEach { level -> assertArrayEquals(shape, level) }
+        levels.simplifyPolygon(shape).forEach { level -> assertArrayEquals(shape, level) }
+    }
+
+    private fun wave(points: Int): DoubleArray =
+        DoubleArray(points * 2) { i ->
+            val x = (i / 2) * 0.00002
+            if (i % 2 == 0) 19.0 + x else 50.0 + sin(x * 2000) * 0.0005 + sin(x * 100_000) * 0.000001
+        }
+}
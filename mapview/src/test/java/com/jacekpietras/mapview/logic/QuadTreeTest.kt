@@ -0,0 +1,55 @@
+package com.jacekpietras.mapview.logic
+
+import com.jacekpietras.geometry.RectD
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class QuadTreeTest {
+
+    private val random = Random(7)
+    private val boxes = List(2000) {
+        val x = random.nextDouble(19.0, 20.0)
+        val y = random.nextDouble(50.0, 51.0)
+        val size = if (it % 10 == 0) random.nextDouble(0.0, 0.5) else random.nextDouble(0.0, 0.01)
+        RectD(x, y + size, x + size, y)
+    }
+    private val tested = QuadTree(boxes) { it }
+
+    @Test
+    fun `finds same boxes as checking all of them, in starting order`() {
+        repeat(100) {
+            val x = random.nextDouble(18.9, 20.1)
+            val y = random.nextDouble(49.9, 51.1)
+            val size = random.nextDouble(0.0, 0.3)
+            val rect = RectD(x, y + size, x + size, y)
+
+            val expected = boxes.filter { it.intersects(rect) }
+
+            assertEquals(expected, tested.query(rect))
+        }
+    }
+
+    @Test
+    fun `rect sides can be in any order`() {
+        val rect = RectD(19.2, 50.2, 19.4, 50.4)
+        val reversed = RectD(19.4, 50.4, 19.2, 50.2)
+
+        assertEquals(tested.query(rect), tested.query(reversed))
+    }
+
+    @Test
+    fun `points are found`() {
+        val points = listOf(RectD(1.0, 1.0, 1.0, 1.0), RectD(2.0, 2.0, 2.0, 2.0), RectD(1.0, 1.0, 1.0, 1.0))
+
+        val found = QuadTree(points) { it }.query(RectD(0.5, 0.5, 1.5, 1.5))
+
+        assertEquals(listOf(points[0], points[2]), found)
+    }
+
+    private fun RectD.intersects(other: RectD): Boolean =
+        minOf(left, right) <= maxOf(other.left, other.right) &&
+                maxOf(left, right) >= minOf(other.left, other.right) &&
+                minOf(top, bottom) <= maxOf(other.top, other.bottom) &&
+                maxOf(top, bottom) >= minOf(other.top, other.bottom)
+}
@@ -0,0 +1,70 @@
+package com.jacekpietras.mapview.logic
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class RenderBufferTest {
+
+    private val tested = RenderBuffer<String>()
+
+    @Test
+    fun `items are reused in next frame`() {
+        val first = tested.path(tested.reserve(4), 4, "first")
+        tested.clear()
+
+        val second = tested.path(tested.reserve(4), 4, "second")
+
+        assertSame(first, second)
+        assertEquals("second", second.paint)
+    }
+
+    @Test
+    fun `vertices are reused in next frame`() {
+        val offset = tested.reserve(4)
+        tested.clear()
+
+        assertEquals(offset, tested.reserve(4))
+    }
+
+    @Test
+    fun `vertices written before growing are kept`() {
+        val offset = tested.reserve(4)
+        floatArrayOf(1f, 2f, 3f, 4f).copyInto(tested.vertices, offset)
+        val item = tested.polygon(offset, 4, "paint")
+
+        tested.reserve(100_000)
+
+        assertNotSame(item.shape, tested.vertices)
+        assertArrayEquals(floatArrayOf(1f, 2f, 3f, 4f), item.shape.copyOfRange(item.offset, item.offset + item.length))
+    }
+
+    @Test
+    fun `held snapshot is not written`() {
+        tested.startWriting()
+        tested.finishWriting()
+        val snapshot = RenderSnapshot(tested)
+
+        assertTrue(snapshot.hold())
+        assertFalse(tested.startWriting())
+
+        snapshot.release()
+        assertTrue(tested.startWriting())
+    }
+
+    @Test
+    fun `snapshot replaced by newer frame is not held`() {
+        tested.startWriting()
+        tested.finishWriting()
+        val snapshot = RenderSnapshot(tested)
+        tested.startWriting()
+        tested.finishWriting()
+
+        assertFalse(snapshot.hold())
+        assertTrue(RenderSnapshot(tested).hold())
+    }
+}
@@ -0,0 +1,65 @@
+package com.jacekpietras.mapview.logic
+
+import com.jacekpietras.geometry.PointD
+import com.jacekpietras.geometry.RectD
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TileGridTest {
+
+    private val tested = TileGrid(scaleX = 100_000.0, scaleY = -150_000.0)
+
+    @Test
+    fun `corner of tile is at its top left pixel`() {
+        val column = tested.columns(RectD(19.9, 50.0, 19.9, 50.0)).first
+        val row = tested.rows(RectD(19.9, 50.0, 19.9, 50.0)).first
+
+        val pixels = tested.toPixels(tested.corner(column, row), column, row)
+
+        assertArrayEquals(floatArrayOf(0f, 0f), pixels, 0.01f)
+    }
+
+    @Test
+    fun `point is drawn inside of tile found for it`() {
+        val point = PointD(19.93217, 50.01345)
+        val rect = RectD(point.x, point.y, point.x, point.y)
+        val column = tested.columns(rect).single()
+        val row = tested.rows(rect).single()
+
+        val pixels = tested.toPixels(point, column, row)
+
+        pixels.forEach { assertTrue(it in 0f..tested.size.toFloat()) { pixels.toList().toString() } }
+    }
+
+    @Test
+    fun `tiles cover whole rect`() {
+        val rect = RectD(19.93, 50.02, 19.94, 50.01)
+        val columns = tested.columns(rect)
+        val rows = tested.rows(rect)
+
+        val covered = columns.flatMap { column -> rows.map { row -> tested.bounds(column, row) } }
+
+        assertEquals(columns.count() * rows.count(), covered.size)
+        assertTrue(covered.minOf { minOf(it.left, it.right) } <= rect.left)
+        assertTrue(covered.maxOf { maxOf(it.left, it.right) } >= rect.right)
+        assertTrue(covered.minOf { minOf(it.top, it.bottom) } <= rect.bottom)
+        assertTrue(covered.maxOf { maxOf(it.top, it.bottom) } >= rect.top)
+    }
+
+    @Test
+    fun `path next to tile edge is found with stroke margin`() {
+        val column = tested.columns(RectD(19.93, 50.01, 19.93, 50.01)).first
+        val row = tested.rows(RectD(19.93, 50.01, 19.93, 50.01)).first
+        val corner = tested.corner(column, row)
+        val bottom = tested.corner(column, row + 1)
+        // vertical path lying 3 pixels to the left of tile
+        val x = corner.x - 3 / tested.scaleX
+        val path = RectD(x, corner.y, x, bottom.y)
+        val index = QuadTree(listOf(path)) { it }
+
+        assertTrue(index.query(tested.bounds(column, row)).isEmpty())
+        assertEquals(listOf(path), index.query(tested.bounds(column, row, margin = 5.0)))
+    }
+}
@@ -2,6 +2,7 @@ package com.jacekpietras.mapview.model
 
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.geometry.containsLine
+import com.jacekpietras.mapview.logic.IntList
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertTrue
@@ -92,4 +93,15 @@ class ViewCoordinatesTest {
 
         assertTrue(polygon.intersects(tested.visibleRect))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `only visible part of path is taken`() {
+        val xs = listOf(19.93, 19.94, 19.9445, 19.95, 19.96, 19.97, 19.98, 19.99, 20.00, 20.01, 20.02)
+        val path = xs.flatMap { listOf(it, center.y) }.toDoubleArray()
+        val parts = IntList()
+
+        tested.getVisibleParts(path, parts)
+
+        assertEquals(listOf(2, 16), List(parts.size) { parts[it] })
+    }
+}
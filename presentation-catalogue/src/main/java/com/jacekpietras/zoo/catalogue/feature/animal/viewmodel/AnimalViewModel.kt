@@ -5,6 +5,7 @@ import androidx.lifecycle.ViewModel
 import com.jacekpietras.geometry.PointD
 import com.jacekpietras.mapview.model.ComposablePaint
 import com.jacekpietras.mapview.ui.compose.ComposablePaintBaker
+import com.jacekpietras.mapview.ui.compose.ComposableTileRasterizer
 import com.jacekpietras.mapview.logic.MapViewLogic
 import com.jacekpietras.mapview.logic.WorldData
 import com.jacekpietras.mapview.model.RenderItem
@@ -164,6 +165,11 @@ internal class AnimalViewModel(
                 state.reduce { copy(isFavorite = isFavorite) }
             }
 
+    override fun onCleared() {
+        super.onCleared()
+        mapLogic.release()
+    }
+
     fun fillColors(colors: MapColors) {
         mapList.value = emptyList()
         mapper.setColors(colors)
@@ -189,7 +195,8 @@ internal class AnimalViewModel(
 
     private fun makeComposableMapLogic() = MapViewLogic(
         invalidate = { mapList.value = it },
-        paintBaker = paintBaker
+        paintBaker = paintBaker,
+        tileRasterizer = ComposableTileRasterizer(),
     )
 
     private fun MapViewLogic<ComposablePaint>.updateMap(viewState: AnimalViewState?) {
@@ -8,6 +8,7 @@ import com.jacekpietras.mapview.model.ComposablePaint
 import com.jacekpietras.mapview.model.RenderItem
 import com.jacekpietras.mapview.ui.LastMapUpdate.trans
 import com.jacekpietras.mapview.ui.compose.ComposablePaintBaker
+import com.jacekpietras.mapview.ui.compose.ComposableTileRasterizer
 import com.jacekpietras.zoo.core.dispatcher.flowOnBackground
 import com.jacekpietras.zoo.core.dispatcher.flowOnMain
 import com.jacekpietras.zoo.core.dispatcher.launchInBackground
@@ -212,6 +213,7 @@ internal class MapViewModel(
     override fun onCleared() {
         super.onCleared()
         bitmapLibrary.value?.recycle()
+        mapLogic.release()
     }
 
     private fun String?.toAnimalId(): AnimalId? =
@@ -521,6 +523,7 @@ internal class MapViewModel(
         setOnPointPlacedListener = ::onPointPlaced,
         onStopCentering = ::onStopCentering,
         onStartCentering = ::onStartCentering,
+        tileRasterizer = ComposableTileRasterizer(),
     )
 
     private fun centerAtUserPosition() {